@@ -4,6 +4,7 @@ import android.Manifest;
 import android.content.Context;
 import android.content.pm.PackageManager;
 import android.os.Bundle;
+import android.os.Looper;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.v4.app.ActivityCompat;
@@ -31,6 +32,8 @@ public class AndroidLocationProvider implements LocationProvider, LocationListen
     private final Context context;
     /** Used to work with fused location service from Google. */
     private GoogleApiClient googleApiClient;
+    /** Location updates policy. */
+    private volatile Policy policy = Policy.DEFAULT;
 
     public AndroidLocationProvider(Context context) {
         this.context = context.getApplicationContext();
@@ -55,18 +58,26 @@ public class AndroidLocationProvider implements LocationProvider, LocationListen
         if (!googleApiClient.isConnected() && !googleApiClient.isConnecting()) {
             googleApiClient.connect();
         } else {
+            emitLastLocation();
             requestLocationUpdates();
         }
     }
 
+    @SuppressWarnings("MissingPermission")
+    private void emitLastLocation() {
+        onLocationChanged(LocationServices.FusedLocationApi.getLastLocation(googleApiClient));
+    }
+
     @SuppressWarnings("MissingPermission")
     private void requestLocationUpdates() {
         final LocationRequest request = LocationRequest.create()
-                .setPriority(LocationRequest.PRIORITY_HIGH_ACCURACY)
-                .setFastestInterval(5000L);
-        onLocationChanged(LocationServices.FusedLocationApi.getLastLocation(googleApiClient));
+                .setPriority(toPriority(policy.getPriority()))
+                .setInterval(policy.getInterval())
+                .setFastestInterval(policy.getFastestInterval())
+                .setMaxWaitTime(policy.getMaxWaitTime());
+        // policy could be changed from any thread, so updates are bound to main looper
         LocationServices.FusedLocationApi.requestLocationUpdates(
-                googleApiClient, request, this);
+                googleApiClient, request, this, Looper.getMainLooper());
     }
 
     @Override
@@ -83,17 +94,43 @@ public class AndroidLocationProvider implements LocationProvider, LocationListen
         return locationSubject;
     }
 
+    @Override
+    public void setPolicy(Policy policy) {
+        if (this.policy.equals(policy)) {
+            return;
+        }
+        Log.d(TAG, "setPolicy: " + policy);
+        this.policy = policy;
+        if (googleApiClient.isConnected()) {
+            // request with the same listener replaces previous one
+            requestLocationUpdates();
+        }
+    }
+
+    private static int toPriority(Policy.Priority priority) {
+        switch (priority) {
+            case LOW_POWER:
+                return LocationRequest.PRIORITY_LOW_POWER;
+            case BALANCED:
+                return LocationRequest.PRIORITY_BALANCED_POWER_ACCURACY;
+            default:
+                return LocationRequest.PRIORITY_HIGH_ACCURACY;
+        }
+    }
+
     @Override
     public void onLocationChanged(android.location.Location location) {
         Log.d(TAG, "onLocationChanged: " + location);
         if (location != null) {
-            locationSubject.onNext(new Location(location.getLatitude(), location.getLongitude()));
+            locationSubject.onNext(new Location(location.getLatitude(), location.getLongitude(),
+                    location.getAccuracy(), location.getTime()));
         }
     }
 
     @Override
     public void onConnected(@Nullable Bundle bundle) {
         Log.d(TAG, "onConnected: " + bundle);
+        emitLastLocation();
         requestLocationUpdates();
     }
 
@@ -6,13 +6,32 @@ import android.content.Intent;
 import android.content.IntentFilter;
 import android.net.ConnectivityManager;
 import android.net.NetworkInfo;
+import android.net.wifi.ScanResult;
 import android.net.wifi.WifiManager;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import io.reactivex.Observable;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.schedulers.Schedulers;
 import io.reactivex.subjects.BehaviorSubject;
+import io.reactivex.subjects.PublishSubject;
 
-/** Android implementation of {@link WifiInfoProvider}. */
+/**
+ * Android implementation of {@link WifiInfoProvider}. Reports connected SSID along with access
+ * points found by the latest WiFi scan. Scans are requested by system and other applications,
+ * provider requests one on start only.
+ * <p>
+ * Bursts of system events are debounced and WiFi state is read on I/O thread once burst is
+ * over, see {@link WifiInfoUpdates}.
+ */
 public class AndroidWifiInfoProvider implements WifiInfoProvider {
+    private static final String TAG = AndroidWifiInfoProvider.class.getSimpleName();
+
     /** Used to register Wifi state reciever. */
     private final Context context;
     /** Used to lantern for system events about Wifi state changes. */
@@ -20,12 +39,27 @@ public class AndroidWifiInfoProvider implements WifiInfoProvider {
 
     /** Used to proxy WIfi state updates. */
     private final BehaviorSubject<WifiInfo> wifiInfoSubject = BehaviorSubject.create();
+    /** Used to pass system events off main thread. */
+    private final PublishSubject<Intent> events = PublishSubject.create();
+    /** Time in milliseconds system events are debounced for. */
+    private final long window;
 
     /** Indicates whether provider is started already. */
     private boolean isStarted;
+    /** Reads WiFi state on system events. */
+    private Disposable subscription;
 
     public AndroidWifiInfoProvider(Context context) {
+        this(context, WifiInfoUpdates.DEFAULT_WINDOW);
+    }
+
+    /**
+     * @param context context to register receiver with
+     * @param window time in milliseconds system events are debounced for
+     */
+    public AndroidWifiInfoProvider(Context context, long window) {
         this.context = context;
+        this.window = window;
     }
 
     @Override
@@ -35,14 +69,21 @@ public class AndroidWifiInfoProvider implements WifiInfoProvider {
         }
         final IntentFilter filter = new IntentFilter();
         filter.addAction(ConnectivityManager.CONNECTIVITY_ACTION);
+        filter.addAction(WifiManager.SCAN_RESULTS_AVAILABLE_ACTION);
+        subscription = WifiInfoUpdates.read(events, this::readWifiInfo,
+                window, TimeUnit.MILLISECONDS, Schedulers.io())
+                .subscribe(wifiInfoSubject::onNext,
+                        error -> Log.e(TAG, "WiFi state updates failed", error));
         context.registerReceiver(receiver, filter);
         isStarted = true;
+        getWifiManager().startScan();
     }
 
     @Override
     public void stop() {
         if (isStarted) {
             context.unregisterReceiver(receiver);
+            subscription.dispose();
         }
         isStarted = false;
     }
@@ -52,19 +93,53 @@ public class AndroidWifiInfoProvider implements WifiInfoProvider {
         return wifiInfoSubject;
     }
 
+    private WifiManager getWifiManager() {
+        return (WifiManager) context.getApplicationContext().getSystemService(
+                Context.WIFI_SERVICE);
+    }
+
     private WifiInfo readWifiInfo() {
+        try {
+            return readWifiInfoUnsafe();
+        } catch (RuntimeException e) {
+            // system services may fail while WiFi is toggled, failed read changes nothing
+            Log.w(TAG, "Failed to read WiFi state", e);
+            final WifiInfo last = wifiInfoSubject.getValue();
+            return last != null ? last : new WifiInfo(false);
+        }
+    }
+
+    private WifiInfo readWifiInfoUnsafe() {
         final ConnectivityManager connManager = (ConnectivityManager) context.getSystemService(
                 Context.CONNECTIVITY_SERVICE);
         final NetworkInfo netInfo = connManager.getActiveNetworkInfo();
+        final WifiManager wifiManager = getWifiManager();
+        final List<AccessPoint> accessPoints = readAccessPoints(wifiManager);
         if (netInfo != null && netInfo.getType() == ConnectivityManager.TYPE_WIFI) {
-            WifiManager wifiManager = (WifiManager) context.getApplicationContext().getSystemService(
-                    Context.WIFI_SERVICE);
             android.net.wifi.WifiInfo info = wifiManager.getConnectionInfo();
-            String ssid  = info.getSSID().replaceAll("\"", "");
-            return new WifiInfo(true, ssid);
+            String ssid  = info.getSSID().replace("\"", "");
+            return new WifiInfo(true, ssid, info.getBSSID(), accessPoints);
         } else {
-            return new WifiInfo(false);
+            return new WifiInfo(false, null, accessPoints);
+        }
+    }
+
+    private static List<AccessPoint> readAccessPoints(WifiManager wifiManager) {
+        final List<ScanResult> scanResults;
+        try {
+            scanResults = wifiManager.getScanResults();
+        } catch (SecurityException e) {
+            // location permission is not granted yet
+            return Collections.emptyList();
+        }
+        if (scanResults == null || scanResults.isEmpty()) {
+            return Collections.emptyList();
+        }
+        final List<AccessPoint> result = new ArrayList<>(scanResults.size());
+        for (ScanResult scanResult : scanResults) {
+            result.add(new AccessPoint(scanResult.BSSID, scanResult.level));
         }
+        return result;
     }
 
     /** Used to listen for system events about Wifi state changes. */
@@ -72,11 +147,7 @@ public class AndroidWifiInfoProvider implements WifiInfoProvider {
 
         @Override
         public void onReceive(Context context, Intent intent) {
-            final WifiInfo lastWifiInfo = wifiInfoSubject.getValue();
-            final WifiInfo newWifiInfo = readWifiInfo();
-            if (lastWifiInfo == null || !lastWifiInfo.equals(newWifiInfo)) {
-                wifiInfoSubject.onNext(newWifiInfo);
-            }
+            events.onNext(intent);
         }
     }
 
@@ -4,24 +4,37 @@ import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
 import android.provider.BaseColumns;
+import android.util.Log;
 
 import com.squareup.sqlbrite.BriteDatabase;
 import com.squareup.sqlbrite.SqlBrite;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.regex.PatternSyntaxException;
 
 import hu.akarnokd.rxjava.interop.RxJavaInterop;
 import io.reactivex.Observable;
+import io.reactivex.subjects.PublishSubject;
 import rx.schedulers.Schedulers;
 
 /**
  * SQLite implementaion of {@link GeofenceStorage}.
  */
 public class SqliteGeofenceStorage implements GeofenceStorage {
+    private static final String TAG = SqliteGeofenceStorage.class.getSimpleName();
+
     /**
      * Opened DB.
      */
@@ -30,6 +43,22 @@ public class SqliteGeofenceStorage implements GeofenceStorage {
      * Query to get geofences.
      */
     private final Observable<SqlBrite.Query> select;
+    /**
+     * Used to proxy geofence changes.
+     */
+    private final PublishSubject<GeofenceChange> changesSubject = PublishSubject.create();
+    /**
+     * Used to emit changes in the same order they are written.
+     */
+    private final Object changesLock = new Object();
+    /**
+     * Stored geofences cache. Loaded on first read, kept in sync with writes afterwards.
+     */
+    private final GeofenceRegistry registry = new GeofenceRegistry();
+    /**
+     * Indicates whether {@link #registry} is loaded.
+     */
+    private volatile boolean loaded;
 
     public SqliteGeofenceStorage(Context context) {
         final SqlBrite sqlBrite = new SqlBrite.Builder().build();
@@ -46,25 +75,228 @@ public class SqliteGeofenceStorage implements GeofenceStorage {
         });
     }
 
+    @Override
+    public Observable<GeofenceChange> getGeofenceChanges() {
+        return Observable.<GeofenceChange>create(emitter -> {
+            // hold lock so no change is written between reading and subscription
+            synchronized (changesLock) {
+                emitter.onNext(GeofenceChange.reset(getGeofences()));
+                emitter.setDisposable(changesSubject.subscribe(emitter::onNext, emitter::onError));
+            }
+        }).subscribeOn(io.reactivex.schedulers.Schedulers.io());
+    }
+
     @Override
     public List<Geofence> getGeofences() {
-        return read(db.query(GeofenceDb.SELECT));
+        return registry().getSnapshot().getGeofences();
+    }
+
+    @Override
+    public List<Geofence> getGeofences(BoundingBox box) {
+        final String minLat = String.valueOf(box.getMinLat());
+        final String maxLat = String.valueOf(box.getMaxLat());
+        final String minLng = String.valueOf(box.getMinLng());
+        final String maxLng = String.valueOf(box.getMaxLng());
+        // R*Tree keeps rounded bounds, so candidates are checked by exact ones
+        return read(db.query(GeofenceDb.SELECT_BOUNDS,
+                minLat, maxLat, minLng, maxLng, minLat, maxLat, minLng, maxLng));
     }
 
     @Override
     public void add(Geofence geofence) {
-        final ContentValues values = new ContentValues(5);
+        final BoundingBox box = BoundingBox.of(geofence);
+        final ContentValues values = new ContentValues(11);
         values.put(GeofenceDb.UUID, geofence.getUuid());
         values.put(GeofenceDb.LAT, geofence.getPoint().getLat());
         values.put(GeofenceDb.LNG, geofence.getPoint().getLng());
         values.put(GeofenceDb.RADIUS, geofence.getRadius());
         values.put(GeofenceDb.SSID, geofence.getSsid());
-        db.insert(GeofenceDb.TABLE, values);
+        values.put(GeofenceDb.MIN_LAT, box.getMinLat());
+        values.put(GeofenceDb.MAX_LAT, box.getMaxLat());
+        values.put(GeofenceDb.MIN_LNG, box.getMinLng());
+        values.put(GeofenceDb.MAX_LNG, box.getMaxLng());
+        values.put(GeofenceDb.SHAPE, toBlob(geofence.getPolygon()));
+        values.put(GeofenceDb.FINGERPRINT, toBlob(geofence.getFingerprint()));
+        synchronized (changesLock) {
+            // registry is loaded before write, so change is computed from previous content
+            registry();
+            db.insert(GeofenceDb.TABLE, values, SQLiteDatabase.CONFLICT_REPLACE);
+            changesSubject.onNext(registry.addAll(Collections.singletonList(geofence)));
+        }
     }
 
     @Override
     public void remove(Geofence geofence) {
-        db.delete(GeofenceDb.TABLE, GeofenceDb.UUID + " = '" + geofence.getUuid() + "'");
+        synchronized (changesLock) {
+            registry();
+            final int count = db.delete(GeofenceDb.TABLE, GeofenceDb.UUID + " = ?",
+                    geofence.getUuid());
+            if (count > 0) {
+                changesSubject.onNext(registry.removeAll(Collections.singletonList(geofence)));
+            }
+        }
+    }
+
+    @Override
+    public void addAll(Collection<Geofence> geofences) {
+        synchronized (changesLock) {
+            registry();
+            final BriteDatabase.Transaction transaction = db.newTransaction();
+            try {
+                final SQLiteStatement insert = db.getWritableDatabase()
+                        .compileStatement(GeofenceDb.INSERT);
+                for (Geofence geofence : geofences) {
+                    insert.clearBindings();
+                    bind(insert, geofence);
+                    db.executeInsert(GeofenceDb.TABLE, insert);
+                }
+                transaction.markSuccessful();
+            } finally {
+                transaction.end();
+            }
+            changesSubject.onNext(registry.addAll(geofences));
+        }
+    }
+
+    @Override
+    public void removeAll(Collection<Geofence> geofences) {
+        synchronized (changesLock) {
+            registry();
+            final List<Geofence> removed = new ArrayList<>(geofences.size());
+            final BriteDatabase.Transaction transaction = db.newTransaction();
+            try {
+                final SQLiteStatement delete = db.getWritableDatabase()
+                        .compileStatement(GeofenceDb.DELETE);
+                for (Geofence geofence : geofences) {
+                    delete.bindString(1, geofence.getUuid());
+                    if (db.executeUpdateDelete(GeofenceDb.TABLE, delete) > 0) {
+                        removed.add(geofence);
+                    }
+                }
+                transaction.markSuccessful();
+            } finally {
+                transaction.end();
+            }
+            if (!removed.isEmpty()) {
+                changesSubject.onNext(registry.removeAll(removed));
+            }
+        }
+    }
+
+    @Override
+    public void replaceAll(Collection<Geofence> geofences) {
+        synchronized (changesLock) {
+            final BriteDatabase.Transaction transaction = db.newTransaction();
+            try {
+                db.delete(GeofenceDb.TABLE, null);
+                final SQLiteStatement insert = db.getWritableDatabase()
+                        .compileStatement(GeofenceDb.INSERT);
+                for (Geofence geofence : geofences) {
+                    insert.clearBindings();
+                    bind(insert, geofence);
+                    db.executeInsert(GeofenceDb.TABLE, insert);
+                }
+                transaction.markSuccessful();
+            } finally {
+                transaction.end();
+            }
+            // no need to load content which is replaced anyway
+            final GeofenceChange change = registry.replaceAll(geofences);
+            loaded = true;
+            changesSubject.onNext(change);
+        }
+    }
+
+    /**
+     * @return registry loaded with stored geofences.
+     */
+    private GeofenceRegistry registry() {
+        if (!loaded) {
+            synchronized (changesLock) {
+                if (!loaded) {
+                    registry.replaceAll(read(db.query(GeofenceDb.SELECT)));
+                    loaded = true;
+                }
+            }
+        }
+        return registry;
+    }
+
+    private static void bind(SQLiteStatement statement, Geofence geofence) {
+        final BoundingBox box = BoundingBox.of(geofence);
+        statement.bindString(1, geofence.getUuid());
+        statement.bindDouble(2, geofence.getPoint().getLat());
+        statement.bindDouble(3, geofence.getPoint().getLng());
+        statement.bindLong(4, geofence.getRadius());
+        statement.bindString(5, geofence.getSsid());
+        statement.bindDouble(6, box.getMinLat());
+        statement.bindDouble(7, box.getMaxLat());
+        statement.bindDouble(8, box.getMinLng());
+        statement.bindDouble(9, box.getMaxLng());
+        final byte[] shape = toBlob(geofence.getPolygon());
+        if (shape == null) {
+            statement.bindNull(10);
+        } else {
+            statement.bindBlob(10, shape);
+        }
+        final byte[] fingerprint = toBlob(geofence.getFingerprint());
+        if (fingerprint == null) {
+            statement.bindNull(11);
+        } else {
+            statement.bindBlob(11, fingerprint);
+        }
+    }
+
+    /**
+     * @param polygon polygon to serialize
+     * @return serialized polygon or {@code null} for circle geofence.
+     */
+    private static byte[] toBlob(GeofencePolygon polygon) {
+        if (polygon == null) {
+            return null;
+        }
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            polygon.write(new DataOutputStream(out));
+        } catch (IOException e) {
+            // memory stream doesn't throw
+            throw new IllegalStateException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private static GeofencePolygon fromBlob(byte[] blob) {
+        try {
+            return GeofencePolygon.read(new DataInputStream(new ByteArrayInputStream(blob)));
+        } catch (IOException e) {
+            throw new IllegalStateException("Broken geofence shape", e);
+        }
+    }
+
+    /**
+     * @param fingerprint fingerprint to serialize
+     * @return serialized fingerprint or {@code null} if there is no fingerprint.
+     */
+    private static byte[] toBlob(WifiFingerprint fingerprint) {
+        if (fingerprint == null) {
+            return null;
+        }
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            fingerprint.write(new DataOutputStream(out));
+        } catch (IOException e) {
+            // memory stream doesn't throw
+            throw new IllegalStateException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private static WifiFingerprint fingerprintFromBlob(byte[] blob) {
+        try {
+            return WifiFingerprint.read(new DataInputStream(new ByteArrayInputStream(blob)));
+        } catch (IOException e) {
+            throw new IllegalStateException("Broken geofence fingerprint", e);
+        }
     }
 
     private List<Geofence> read(Cursor cursor) {
@@ -78,18 +310,28 @@ public class SqliteGeofenceStorage implements GeofenceStorage {
             final int idxLng = cursor.getColumnIndex(GeofenceDb.LNG);
             final int idxRadius = cursor.getColumnIndex(GeofenceDb.RADIUS);
             final int idxSsid = cursor.getColumnIndex(GeofenceDb.SSID);
+            final int idxShape = cursor.getColumnIndex(GeofenceDb.SHAPE);
+            final int idxFingerprint = cursor.getColumnIndex(GeofenceDb.FINGERPRINT);
             while (cursor.moveToNext()) {
                 final String uuid = cursor.getString(idxUuid);
                 final double lat = cursor.getDouble(idxLat);
                 final double lng = cursor.getDouble(idxLng);
                 final int radius = cursor.getInt(idxRadius);
                 final String ssid = cursor.getString(idxSsid);
-                final Geofence geofence = new Geofence(
-                        uuid,
-                        new LocationProvider.Location(lat, lng),
-                        radius,
-                        ssid
-                );
+                final WifiFingerprint fingerprint = cursor.isNull(idxFingerprint)
+                        ? null : fingerprintFromBlob(cursor.getBlob(idxFingerprint));
+                final Geofence geofence;
+                try {
+                    geofence = cursor.isNull(idxShape)
+                            ? new Geofence(uuid, new LocationProvider.Location(lat, lng), radius,
+                                    ssid, fingerprint)
+                            : new Geofence(uuid, fromBlob(cursor.getBlob(idxShape)), ssid,
+                                    fingerprint);
+                } catch (PatternSyntaxException e) {
+                    // stored by older version, skip it instead of breaking all geofences
+                    Log.w(TAG, "Skip geofence " + uuid + " with invalid SSID", e);
+                    continue;
+                }
                 geofences.add(geofence);
             }
             return geofences;
@@ -109,7 +351,7 @@ public class SqliteGeofenceStorage implements GeofenceStorage {
         /**
          * DB version.
          */
-        private static final int VERSION = 1;
+        private static final int VERSION = 5;
 
         DbHeper(Context context) {
             super(context, NAME, null, VERSION);
@@ -118,11 +360,102 @@ public class SqliteGeofenceStorage implements GeofenceStorage {
         @Override
         public void onCreate(SQLiteDatabase db) {
             db.execSQL(GeofenceDb.CREATE);
-
+            db.execSQL(GeofenceDb.CREATE_UUID_INDEX);
+            createBoxTable(db);
         }
 
         @Override
         public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+            if (oldVersion < 2) {
+                upgradeToVersion2(db);
+            }
+            if (oldVersion < 3) {
+                upgradeToVersion3(db);
+            }
+            if (oldVersion < 4) {
+                upgradeToVersion4(db);
+            }
+            if (oldVersion < 5) {
+                upgradeToVersion5(db);
+            }
+        }
+
+        /**
+         * Moves geofence bounding boxes index to R*Tree, composite index narrows by minimal
+         * latitude only.
+         */
+        private static void upgradeToVersion5(SQLiteDatabase db) {
+            db.execSQL("DROP INDEX IF EXISTS " + GeofenceDb.TABLE + "_bounds");
+            createBoxTable(db);
+            db.execSQL("INSERT INTO " + GeofenceDb.BOX_TABLE + " SELECT " + GeofenceDb._ID + ", "
+                    + GeofenceDb.MIN_LAT + ", " + GeofenceDb.MAX_LAT + ", " + GeofenceDb.MIN_LNG
+                    + ", " + GeofenceDb.MAX_LNG + " FROM " + GeofenceDb.TABLE);
+        }
+
+        /**
+         * Creates bounding boxes table kept in sync with geofences table by triggers. It is
+         * R*Tree if SQLite is built with it, plain indexed table otherwise.
+         */
+        private static void createBoxTable(SQLiteDatabase db) {
+            try {
+                db.execSQL(GeofenceDb.CREATE_BOX_RTREE);
+            } catch (SQLiteException e) {
+                Log.w(TAG, "R*Tree is not available, bounding boxes are indexed by B-tree", e);
+                db.execSQL(GeofenceDb.CREATE_BOX_TABLE);
+                db.execSQL(GeofenceDb.CREATE_BOX_INDEX);
+            }
+            db.execSQL(GeofenceDb.CREATE_BOX_REPLACE_TRIGGER);
+            db.execSQL(GeofenceDb.CREATE_BOX_INSERT_TRIGGER);
+            db.execSQL(GeofenceDb.CREATE_BOX_UPDATE_TRIGGER);
+            db.execSQL(GeofenceDb.CREATE_BOX_DELETE_TRIGGER);
+        }
+
+        /**
+         * Adds geofence WiFi fingerprint column. Existing geofences have no fingerprints.
+         */
+        private static void upgradeToVersion4(SQLiteDatabase db) {
+            db.execSQL("ALTER TABLE " + GeofenceDb.TABLE + " ADD COLUMN " + GeofenceDb.FINGERPRINT + " BLOB");
+        }
+
+        /**
+         * Adds geofence shape column. Existing geofences are circles.
+         */
+        private static void upgradeToVersion3(SQLiteDatabase db) {
+            db.execSQL("ALTER TABLE " + GeofenceDb.TABLE + " ADD COLUMN " + GeofenceDb.SHAPE + " BLOB");
+        }
+
+        /**
+         * Adds geofence bounding box columns and indexes.
+         */
+        private static void upgradeToVersion2(SQLiteDatabase db) {
+            db.execSQL("ALTER TABLE " + GeofenceDb.TABLE + " ADD COLUMN " + GeofenceDb.MIN_LAT + " REAL");
+            db.execSQL("ALTER TABLE " + GeofenceDb.TABLE + " ADD COLUMN " + GeofenceDb.MAX_LAT + " REAL");
+            db.execSQL("ALTER TABLE " + GeofenceDb.TABLE + " ADD COLUMN " + GeofenceDb.MIN_LNG + " REAL");
+            db.execSQL("ALTER TABLE " + GeofenceDb.TABLE + " ADD COLUMN " + GeofenceDb.MAX_LNG + " REAL");
+            // UUID was not unique before, keep the latest record only
+            db.execSQL("DELETE FROM " + GeofenceDb.TABLE + " WHERE " + GeofenceDb._ID
+                    + " NOT IN (SELECT MAX(" + GeofenceDb._ID + ") FROM " + GeofenceDb.TABLE
+                    + " GROUP BY " + GeofenceDb.UUID + ")");
+            final SQLiteStatement update = db.compileStatement(GeofenceDb.UPDATE_BOUNDS);
+            final Cursor cursor = db.rawQuery("SELECT " + GeofenceDb._ID + ", " + GeofenceDb.LAT
+                    + ", " + GeofenceDb.LNG + ", " + GeofenceDb.RADIUS
+                    + " FROM " + GeofenceDb.TABLE, null);
+            try {
+                while (cursor.moveToNext()) {
+                    final BoundingBox box = BoundingBox.around(
+                            cursor.getDouble(1), cursor.getDouble(2), cursor.getInt(3));
+                    update.bindDouble(1, box.getMinLat());
+                    update.bindDouble(2, box.getMaxLat());
+                    update.bindDouble(3, box.getMinLng());
+                    update.bindDouble(4, box.getMaxLng());
+                    update.bindLong(5, cursor.getLong(0));
+                    update.executeUpdateDelete();
+                }
+            } finally {
+                cursor.close();
+            }
+            db.execSQL(GeofenceDb.CREATE_UUID_INDEX);
+            db.execSQL(GeofenceDb.CREATE_BOUNDS_INDEX);
         }
     }
 
@@ -136,9 +469,38 @@ public class SqliteGeofenceStorage implements GeofenceStorage {
         static final String LNG = "lng";
         static final String RADIUS = "radius";
         static final String SSID = "ssid";
+        static final String MIN_LAT = "min_lat";
+        static final String MAX_LAT = "max_lat";
+        static final String MIN_LNG = "min_lng";
+        static final String MAX_LNG = "max_lng";
+        static final String SHAPE = "shape";
+        static final String FINGERPRINT = "fingerprint";
 
         static final String SELECT = "SELECT * FROM " + GeofenceDb.TABLE;
 
+        /** Geofence bounding boxes table, row id is geofence {@link #_ID}. */
+        static final String BOX_TABLE = "geofence_box";
+        static final String BOX_ID = "id";
+
+        static final String SELECT_BOUNDS = "SELECT " + TABLE + ".* FROM " + BOX_TABLE +
+                " JOIN " + TABLE + " ON " + TABLE + "." + _ID + " = " + BOX_TABLE + "." + BOX_ID +
+                " WHERE " +
+                BOX_TABLE + "." + MAX_LAT + " >= ? AND " + BOX_TABLE + "." + MIN_LAT + " <= ? AND " +
+                BOX_TABLE + "." + MAX_LNG + " >= ? AND " + BOX_TABLE + "." + MIN_LNG + " <= ? AND " +
+                TABLE + "." + MAX_LAT + " >= ? AND " + TABLE + "." + MIN_LAT + " <= ? AND " +
+                TABLE + "." + MAX_LNG + " >= ? AND " + TABLE + "." + MIN_LNG + " <= ?";
+
+        static final String INSERT = "INSERT OR REPLACE INTO " + TABLE + " (" +
+                UUID + ", " + LAT + ", " + LNG + ", " + RADIUS + ", " + SSID + ", " +
+                MIN_LAT + ", " + MAX_LAT + ", " + MIN_LNG + ", " + MAX_LNG + ", " + SHAPE + ", " +
+                FINGERPRINT + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+        static final String UPDATE_BOUNDS = "UPDATE " + TABLE + " SET " +
+                MIN_LAT + " = ?, " + MAX_LAT + " = ?, " + MIN_LNG + " = ?, " + MAX_LNG + " = ?" +
+                " WHERE " + _ID + " = ?";
+
+        static final String DELETE = "DELETE FROM " + TABLE + " WHERE " + UUID + " = ?";
+
         static final String CREATE =
                 "CREATE TABLE " + TABLE + " (" +
                         _ID + " INTEGER PRIMARY KEY," +
@@ -146,7 +508,60 @@ public class SqliteGeofenceStorage implements GeofenceStorage {
                         LAT + " REAL," +
                         LNG + " REAL," +
                         RADIUS + " INTEGER," +
-                        SSID + " TEXT)";
+                        SSID + " TEXT," +
+                        MIN_LAT + " REAL," +
+                        MAX_LAT + " REAL," +
+                        MIN_LNG + " REAL," +
+                        MAX_LNG + " REAL," +
+                        SHAPE + " BLOB," +
+                        FINGERPRINT + " BLOB)";
+
+        static final String CREATE_UUID_INDEX =
+                "CREATE UNIQUE INDEX " + TABLE + "_" + UUID + " ON " + TABLE + " (" + UUID + ")";
+
+        static final String CREATE_BOUNDS_INDEX =
+                "CREATE INDEX " + TABLE + "_bounds ON " + TABLE + " (" +
+                        MIN_LAT + ", " + MAX_LAT + ", " + MIN_LNG + ", " + MAX_LNG + ")";
+
+        static final String CREATE_BOX_RTREE =
+                "CREATE VIRTUAL TABLE " + BOX_TABLE + " USING rtree(" + BOX_ID + ", " +
+                        MIN_LAT + ", " + MAX_LAT + ", " + MIN_LNG + ", " + MAX_LNG + ")";
+
+        static final String CREATE_BOX_TABLE =
+                "CREATE TABLE " + BOX_TABLE + " (" +
+                        BOX_ID + " INTEGER PRIMARY KEY," +
+                        MIN_LAT + " REAL," +
+                        MAX_LAT + " REAL," +
+                        MIN_LNG + " REAL," +
+                        MAX_LNG + " REAL)";
+
+        static final String CREATE_BOX_INDEX =
+                "CREATE INDEX " + BOX_TABLE + "_bounds ON " + BOX_TABLE + " (" +
+                        MIN_LAT + ", " + MAX_LAT + ", " + MIN_LNG + ", " + MAX_LNG + ")";
+
+        /** Row replaced by {@link #INSERT} doesn't fire delete trigger, so box is dropped here. */
+        static final String CREATE_BOX_REPLACE_TRIGGER =
+                "CREATE TRIGGER " + BOX_TABLE + "_replace BEFORE INSERT ON " + TABLE + " BEGIN " +
+                        "DELETE FROM " + BOX_TABLE + " WHERE " + BOX_ID + " IN (SELECT " + _ID +
+                        " FROM " + TABLE + " WHERE " + UUID + " = NEW." + UUID + "); END";
+
+        static final String CREATE_BOX_INSERT_TRIGGER =
+                "CREATE TRIGGER " + BOX_TABLE + "_insert AFTER INSERT ON " + TABLE + " BEGIN " +
+                        "INSERT INTO " + BOX_TABLE + " VALUES (NEW." + _ID + ", NEW." + MIN_LAT +
+                        ", NEW." + MAX_LAT + ", NEW." + MIN_LNG + ", NEW." + MAX_LNG + "); END";
+
+        static final String CREATE_BOX_UPDATE_TRIGGER =
+                "CREATE TRIGGER " + BOX_TABLE + "_update AFTER UPDATE OF " + MIN_LAT + ", " +
+                        MAX_LAT + ", " + MIN_LNG + ", " + MAX_LNG + " ON " + TABLE + " BEGIN " +
+                        "UPDATE " + BOX_TABLE + " SET " + MIN_LAT + " = NEW." + MIN_LAT + ", " +
+                        MAX_LAT + " = NEW." + MAX_LAT + ", " + MIN_LNG + " = NEW." + MIN_LNG +
+                        ", " + MAX_LNG + " = NEW." + MAX_LNG + " WHERE " + BOX_ID + " = NEW." +
+                        _ID + "; END";
+
+        static final String CREATE_BOX_DELETE_TRIGGER =
+                "CREATE TRIGGER " + BOX_TABLE + "_delete AFTER DELETE ON " + TABLE + " BEGIN " +
+                        "DELETE FROM " + BOX_TABLE + " WHERE " + BOX_ID + " = OLD." + _ID +
+                        "; END";
 
     }
 
@@ -12,6 +12,7 @@ import android.widget.EditText;
 
 import com.github.stevenrudenko.geofence.R;
 import com.github.stevenrudenko.geofence.core.Geofence;
+import com.github.stevenrudenko.geofence.core.GeofenceUtils;
 import com.github.stevenrudenko.geofence.core.LocationProvider;
 import com.github.stevenrudenko.geofence.ui.dialog.BaseDialogFragment;
 import com.jakewharton.rxbinding2.widget.RxTextView;
@@ -87,7 +88,8 @@ public class AddGeofenceDialogFragment extends BaseDialogFragment<AddGeofenceDia
         super.onStart();
         inputValidationDisposable = Observable.combineLatest(
                 RxTextView.textChanges(radiusInput), RxTextView.textChanges(ssidInput),
-                (radius, ssid) -> RADIUS_PATTERN.matcher(radius).matches())
+                (radius, ssid) -> RADIUS_PATTERN.matcher(radius).matches()
+                        && GeofenceUtils.isSsidValid(ssid.toString()))
                 .subscribe(correct -> {
                     final AlertDialog dialog = (AlertDialog) getDialog();
                     dialog.getButton(DialogInterface.BUTTON_POSITIVE).setEnabled(correct);
@@ -10,16 +10,23 @@ import android.support.v4.app.ActivityCompat;
 import android.support.v4.content.ContextCompat;
 import android.support.v7.app.AppCompatActivity;
 import android.support.v7.widget.Toolbar;
+import android.util.Log;
 import android.view.View;
 
 import com.github.stevenrudenko.geofence.R;
 import com.github.stevenrudenko.geofence.core.AndroidLocationProvider;
 import com.github.stevenrudenko.geofence.core.AndroidWifiInfoProvider;
 import com.github.stevenrudenko.geofence.core.Geofence;
+import com.github.stevenrudenko.geofence.core.GeofenceChange;
 import com.github.stevenrudenko.geofence.core.GeofenceModule;
+import com.github.stevenrudenko.geofence.core.GeofencePolygon;
 import com.github.stevenrudenko.geofence.core.GeofenceStorage;
+import com.github.stevenrudenko.geofence.core.GeofenceTransition;
+import com.github.stevenrudenko.geofence.core.GeofenceUtils;
 import com.github.stevenrudenko.geofence.core.LocationProvider;
+import com.github.stevenrudenko.geofence.core.PagedGeofenceStorage;
 import com.github.stevenrudenko.geofence.core.SqliteGeofenceStorage;
+import com.github.stevenrudenko.geofence.core.WifiFingerprint;
 import com.github.stevenrudenko.geofence.core.WifiInfoProvider;
 import com.github.stevenrudenko.geofence.ui.dialog.AlertDialogFragment;
 import com.github.stevenrudenko.geofence.utils.ColorUtils;
@@ -34,7 +41,10 @@ import com.google.android.gms.maps.model.CircleOptions;
 import com.google.android.gms.maps.model.LatLng;
 import com.google.android.gms.maps.model.Marker;
 import com.google.android.gms.maps.model.MarkerOptions;
+import com.google.android.gms.maps.model.Polygon;
+import com.google.android.gms.maps.model.PolygonOptions;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -75,6 +85,14 @@ public class MainActivity extends AppCompatActivity implements OnMapReadyCallbac
 
     /** Default my position zoom level. */
     private static final int DEFAULT_MY_POSITION_ZOOM_LEVEL = 16;
+    /** Distance in meters location accuracy should clear geofence boundary by. */
+    private static final float GEOFENCE_HYSTERESIS = 20f;
+    /** Number of location fixes geofence state should hold for otherwise. */
+    private static final int GEOFENCE_DEBOUNCE_FIXES = 3;
+    /** Time in milliseconds batched location fixes are coalesced for. */
+    private static final long GEOFENCE_COALESCING_WINDOW = 500;
+    /** File compiled geofences are cached in for fast start. */
+    private static final String GEOFENCE_SNAPSHOT_FILE = "geofences.snapshot";
 
     /** State to restore map point. */
     private static final String STATE_MAP_POSITION = "state:position";
@@ -86,6 +104,8 @@ public class MainActivity extends AppCompatActivity implements OnMapReadyCallbac
     /** Shows count of geofences inbound. */
     @Nullable
     private Snackbar geofenceSnaclbar;
+    /** Count of geofences inbound. */
+    private int inboundCount;
     /**
      * Map view.
      */
@@ -101,6 +121,12 @@ public class MainActivity extends AppCompatActivity implements OnMapReadyCallbac
     private GeofenceModule geofenceModule;
     /** Location provider. */
     private LocationProvider locationProvider;
+    /** WiFi state provider. */
+    private WifiInfoProvider wifiInfoProvider;
+    /** Last known device location. Used to capture WiFi fingerprint of new geofence. */
+    private LocationProvider.Location lastLocation;
+    /** Last known WiFi state. Used to capture WiFi fingerprint of new geofence. */
+    private WifiInfoProvider.WifiInfo lastWifiInfo;
     /**
      * Used to release subscriptions.
      */
@@ -110,6 +136,8 @@ public class MainActivity extends AppCompatActivity implements OnMapReadyCallbac
     private GeofenceStorage storage;
     /** Geofence marker map. */
     private Map<Marker, MarkerItem> geofenceMap = new HashMap<>();
+    /** Geofence markers mapped by geofence UUID. */
+    private Map<String, Marker> geofenceMarkers = new HashMap<>();
     /** Geofence marker used to be removed. */
     private Marker toRemove = null;
 
@@ -139,9 +167,17 @@ public class MainActivity extends AppCompatActivity implements OnMapReadyCallbac
         mapView.getMapAsync(this);
 
         locationProvider = new AndroidLocationProvider(this);
-        final WifiInfoProvider wifiInfoProvider = new AndroidWifiInfoProvider(this);
+        wifiInfoProvider = new AndroidWifiInfoProvider(this);
         storage = new SqliteGeofenceStorage(this);
-        geofenceModule = new GeofenceModule(locationProvider, wifiInfoProvider, storage);
+        // module checks only geofences around device, while map shows all of them
+        final GeofenceStorage residentStorage =
+                new PagedGeofenceStorage(storage, locationProvider.getLocationUpdates());
+        geofenceModule = new GeofenceModule(locationProvider, wifiInfoProvider, residentStorage);
+        // don't flap on noisy fixes around geofence boundary
+        geofenceModule.setHysteresis(GEOFENCE_HYSTERESIS);
+        geofenceModule.setDebounceFixes(GEOFENCE_DEBOUNCE_FIXES);
+        geofenceModule.setCoalescingWindow(GEOFENCE_COALESCING_WINDOW);
+        geofenceModule.setSnapshot(new File(getFilesDir(), GEOFENCE_SNAPSHOT_FILE));
 
         findViewById(R.id.fab).setOnClickListener(view -> showMyPostions());
     }
@@ -185,26 +221,36 @@ public class MainActivity extends AppCompatActivity implements OnMapReadyCallbac
 
     private void start() {
         geofenceModule.start();
+        inboundCount = 0;
         compositeDisposable.add(
-                geofenceModule.getInboundGeofences().subscribe(geofences -> {
-                    final int count = geofences.size();
-                    if (count == 0) {
-                        if (geofenceSnaclbar != null) {
-                            geofenceSnaclbar.dismiss();
-                        }
-                    } else {
-                        final String text = getResources().getQuantityString(
-                                R.plurals.geofences_inbound, count, count);
-                        geofenceSnaclbar = Snackbar.make(root, text, Snackbar.LENGTH_INDEFINITE);
-                        geofenceSnaclbar.show();
-                    }
-                })
+                geofenceModule.getTransitions()
+                        .filter(transition -> transition.getType() != GeofenceTransition.Type.DWELL)
+                        .observeOn(AndroidSchedulers.mainThread())
+                        .subscribe(transition -> {
+                            inboundCount += transition.getType() == GeofenceTransition.Type.ENTER
+                                    ? 1 : -1;
+                            showInboundCount(inboundCount);
+                        })
+        );
+        compositeDisposable.add(
+                geofenceModule.getErrors()
+                        .subscribe(error -> Log.e(TAG, "Geofences storage failed", error))
         );
         compositeDisposable.add(
-                storage.getGeofenceUpdates()
+                storage.getGeofenceChanges()
                         .observeOn(AndroidSchedulers.mainThread())
                         .subscribe(this::updateGeofenceMarkers)
         );
+        compositeDisposable.add(
+                locationProvider.getLocationUpdates()
+                        .observeOn(AndroidSchedulers.mainThread())
+                        .subscribe(location -> lastLocation = location)
+        );
+        compositeDisposable.add(
+                wifiInfoProvider.getWiFiInfoUpdates()
+                        .observeOn(AndroidSchedulers.mainThread())
+                        .subscribe(wifiInfo -> lastWifiInfo = wifiInfo)
+        );
         if (restorePosition == null) {
             showMyPostions();
         } else {
@@ -214,6 +260,19 @@ public class MainActivity extends AppCompatActivity implements OnMapReadyCallbac
         }
     }
 
+    private void showInboundCount(int count) {
+        if (count == 0) {
+            if (geofenceSnaclbar != null) {
+                geofenceSnaclbar.dismiss();
+            }
+        } else {
+            final String text = getResources().getQuantityString(
+                    R.plurals.geofences_inbound, count, count);
+            geofenceSnaclbar = Snackbar.make(root, text, Snackbar.LENGTH_INDEFINITE);
+            geofenceSnaclbar.show();
+        }
+    }
+
     @Override
     public void onResume() {
         mapView.onResume();
@@ -318,6 +377,16 @@ public class MainActivity extends AppCompatActivity implements OnMapReadyCallbac
 
     @Override
     public void addGeofence(Geofence geofence) {
+        // device is at the site, so it could be recognized by visible access points later
+        if (lastLocation != null && lastWifiInfo != null
+                && GeofenceUtils.isInsideArea(geofence, lastLocation)) {
+            final WifiFingerprint fingerprint = WifiFingerprint.capture(
+                    lastWifiInfo.getAccessPoints(), WifiFingerprint.DEFAULT_SIZE);
+            if (fingerprint != null) {
+                geofence = new Geofence(geofence.getUuid(), geofence.getPoint(),
+                        geofence.getRadius(), geofence.getSsid(), fingerprint);
+            }
+        }
         storage.add(geofence);
     }
 
@@ -342,29 +411,74 @@ public class MainActivity extends AppCompatActivity implements OnMapReadyCallbac
         }
     }
 
-    private void updateGeofenceMarkers(List<Geofence> geofences) {
-        googleMap.clear();
-        geofenceMap.clear();
+    private void updateGeofenceMarkers(GeofenceChange change) {
+        if (change.isReset()) {
+            googleMap.clear();
+            geofenceMap.clear();
+            geofenceMarkers.clear();
+        }
+        for (Geofence geofence : change.getRemoved()) {
+            removeGeofenceMarker(geofence);
+        }
+        for (Geofence geofence : change.getUpdated()) {
+            removeGeofenceMarker(geofence);
+            addGeofenceMarker(geofence);
+        }
+        for (Geofence geofence : change.getAdded()) {
+            addGeofenceMarker(geofence);
+        }
+    }
 
+    private void addGeofenceMarker(Geofence geofence) {
+        // storage replaces geofence with the same UUID
+        removeGeofenceMarker(geofence);
         final int strokeColor = ColorUtils.getColor(this, R.color.colorPrimary);
         final int fillColor = ColorUtils.getColor(this, R.color.colorPrimaryDim);
-        for (Geofence geofence : geofences) {
-            final LocationProvider.Location point = geofence.getPoint();
-            final LatLng latLng = new LatLng(point.getLat(), point.getLng());
+        final LocationProvider.Location point = geofence.getPoint();
+        final LatLng latLng = new LatLng(point.getLat(), point.getLng());
+        MarkerOptions marker = new MarkerOptions()
+                .icon(BitmapDescriptorFactory.fromResource(R.drawable.ic_geofence_marker))
+                .anchor(0.5f, 0.5f)
+                .flat(true)
+                .position(latLng);
+        final Marker m = googleMap.addMarker(marker);
+        final GeofencePolygon shape = geofence.getPolygon();
+        if (shape == null) {
             CircleOptions circle = new CircleOptions()
                     .center(latLng)
                     .radius(geofence.getRadius())
                     .fillColor(fillColor)
                     .strokeWidth(2f)
                     .strokeColor(strokeColor);
-            MarkerOptions marker = new MarkerOptions()
-                    .icon(BitmapDescriptorFactory.fromResource(R.drawable.ic_geofence_marker))
-                    .anchor(0.5f, 0.5f)
-                    .flat(true)
-                    .position(latLng);
-            final Circle c = googleMap.addCircle(circle);
-            final Marker m = googleMap.addMarker(marker);
-            geofenceMap.put(m, new MarkerItem(geofence, c));
+            geofenceMap.put(m, new MarkerItem(geofence, googleMap.addCircle(circle), null));
+        } else {
+            PolygonOptions polygon = new PolygonOptions()
+                    .addAll(toLatLngs(shape.getRing(0)))
+                    .fillColor(fillColor)
+                    .strokeWidth(2f)
+                    .strokeColor(strokeColor);
+            for (int ring = 1; ring < shape.getRingCount(); ++ring) {
+                polygon.addHole(toLatLngs(shape.getRing(ring)));
+            }
+            geofenceMap.put(m, new MarkerItem(geofence, null, googleMap.addPolygon(polygon)));
+        }
+        geofenceMarkers.put(geofence.getUuid(), m);
+    }
+
+    private void removeGeofenceMarker(Geofence geofence) {
+        final Marker marker = geofenceMarkers.remove(geofence.getUuid());
+        if (marker == null) {
+            return;
+        }
+        final MarkerItem item = geofenceMap.remove(marker);
+        if (item.circle != null) {
+            item.circle.remove();
+        } else {
+            item.polygon.remove();
+        }
+        marker.remove();
+        if (marker.equals(toRemove)) {
+            toRemove = null;
         }
     }
 
@@ -372,23 +486,39 @@ public class MainActivity extends AppCompatActivity implements OnMapReadyCallbac
         marker.setIcon(BitmapDescriptorFactory.fromResource(
                 selected ? R.drawable.ic_geofence_marker_selected : R.drawable.ic_geofence_marker));
         final MarkerItem item = geofenceMap.get(toRemove);
-        final Circle circle = item.circle;
         final int strokeColor = ColorUtils.getColor(this,
                 selected ? R.color.colorAccent : R.color.colorPrimary);
         final int fillColor = ColorUtils.getColor(this,
                 selected ? R.color.colorAccentDim : R.color.colorPrimaryDim);
-        circle.setStrokeColor(strokeColor);
-        circle.setFillColor(fillColor);
+        if (item.circle != null) {
+            item.circle.setStrokeColor(strokeColor);
+            item.circle.setFillColor(fillColor);
+        } else {
+            item.polygon.setStrokeColor(strokeColor);
+            item.polygon.setFillColor(fillColor);
+        }
+    }
+
+    private static List<LatLng> toLatLngs(List<LocationProvider.Location> locations) {
+        final List<LatLng> result = new ArrayList<>(locations.size());
+        for (LocationProvider.Location location : locations) {
+            result.add(new LatLng(location.getLat(), location.getLng()));
+        }
+        return result;
     }
 
-    /** Used to link geofence and circle by marker. */
+    /** Used to link geofence and its area shape by marker. */
     private static class MarkerItem {
         final Geofence geofence;
+        /** Area of circle geofence. */
         final Circle circle;
+        /** Area of polygon geofence. */
+        final Polygon polygon;
 
-        private MarkerItem(Geofence geofence, Circle circle) {
+        private MarkerItem(Geofence geofence, Circle circle, Polygon polygon) {
             this.geofence = geofence;
             this.circle = circle;
+            this.polygon = polygon;
         }
     }
 
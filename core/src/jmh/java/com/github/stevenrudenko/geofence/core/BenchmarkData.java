@@ -0,0 +1,89 @@
+package com.github.stevenrudenko.geofence.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import io.reactivex.Observable;
+
+/** Shared benchmark data. */
+final class BenchmarkData {
+    /** Area geofences are spread over. Roughly covers Europe. */
+    static final double MIN_LAT = 36.0, MAX_LAT = 70.0, MIN_LNG = -10.0, MAX_LNG = 40.0;
+    /** Geofence radius range in meters. */
+    static final int MIN_RADIUS = 50, MAX_RADIUS = 1000;
+    /** SSID used for geofences. */
+    static final String[] SSIDS = {"Office", "Hotel[-_\\d]*", "Home_\\d+", "Cafe"};
+
+    private BenchmarkData() {
+        // hide
+    }
+
+    static LocationProvider.Location randomLocation(Random random) {
+        return new LocationProvider.Location(
+                MIN_LAT + random.nextDouble() * (MAX_LAT - MIN_LAT),
+                MIN_LNG + random.nextDouble() * (MAX_LNG - MIN_LNG));
+    }
+
+    static Geofence randomGeofence(Random random) {
+        return new Geofence(
+                randomLocation(random),
+                MIN_RADIUS + random.nextInt(MAX_RADIUS - MIN_RADIUS),
+                SSIDS[random.nextInt(SSIDS.length)]);
+    }
+
+    /**
+     * Creates started module which has given number of random geofences.
+     * @param count number of geofences
+     * @param random random generator
+     * @return started geofence module.
+     */
+    static GeofenceModule createModule(int count, Random random) {
+        final List<Geofence> geofences = new ArrayList<>(count);
+        for (int i = 0; i < count; ++i) {
+            geofences.add(randomGeofence(random));
+        }
+        final MemoryGeofenceStorage storage = new MemoryGeofenceStorage();
+        storage.addAll(geofences);
+        final GeofenceModule module = new GeofenceModule(
+                new StubLocationProvider(), new StubWifiInfoProvider(), storage);
+        module.start();
+        return module;
+    }
+
+    /** Location provider which never emits. */
+    private static class StubLocationProvider implements LocationProvider {
+        @Override
+        public void start() {
+        }
+
+        @Override
+        public void stop() {
+        }
+
+        @Override
+        public Observable<Location> getLocationUpdates() {
+            return Observable.never();
+        }
+
+        @Override
+        public void setPolicy(Policy policy) {
+        }
+    }
+
+    /** WiFi info provider which never emits. */
+    private static class StubWifiInfoProvider implements WifiInfoProvider {
+        @Override
+        public void start() {
+        }
+
+        @Override
+        public void stop() {
+        }
+
+        @Override
+        public Observable<WifiInfo> getWiFiInfoUpdates() {
+            return Observable.never();
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.github.stevenrudenko.geofence.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures full geofence check throughput for different number of geofences. Run with GC
+ * profiler to get allocation rate per check.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class CheckBenchmark {
+    /** Number of random locations checks are cycled over. */
+    private static final int LOCATIONS = 1024;
+
+    /** Number of geofences. */
+    @Param({"10", "1000", "100000", "1000000"})
+    public int geofences;
+    /** SSID device connected to. Empty string means disconnected WiFi. */
+    @Param({"", "Unknown network"})
+    public String ssid;
+
+    private GeofenceModule module;
+    private GeofenceEvaluator evaluator;
+    private LocationProvider.Location[] locations;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        final Random random = new Random(42);
+        module = BenchmarkData.createModule(geofences, random);
+        evaluator = module.createEvaluator();
+        locations = new LocationProvider.Location[LOCATIONS];
+        for (int i = 0; i < LOCATIONS; ++i) {
+            locations[i] = BenchmarkData.randomLocation(random);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        module.stop();
+    }
+
+    @Benchmark
+    public ArrayList<Geofence> check() {
+        final LocationProvider.Location location = locations[next];
+        next = (next + 1) & (LOCATIONS - 1);
+        return module.findInbounds(location, ssid.isEmpty() ? null : ssid);
+    }
+
+    /** Same check done by allocation free evaluator. */
+    @Benchmark
+    public int evaluate() {
+        final LocationProvider.Location location = locations[next];
+        next = (next + 1) & (LOCATIONS - 1);
+        return evaluator.evaluate(location.getLat(), location.getLng(),
+                ssid.isEmpty() ? null : ssid);
+    }
+}
@@ -0,0 +1,90 @@
+package com.github.stevenrudenko.geofence.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/** Measures distance calculation cost for different point pairs. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DistanceBenchmark {
+    /** Geofence radius used for tiered checks. */
+    private static final int RADIUS = 500;
+    /** Number of vertices of polygon which approximates geofence circle. */
+    private static final int VERTICES = 500;
+
+    /** Points pair kind. */
+    @Param({"near", "far", "antipodal"})
+    public String pair;
+
+    private double fromLat, fromLng, toLat, toLng;
+    private final DistanceEngine engine = new DistanceEngine();
+    private GeofencePolygon polygon;
+
+    @Setup
+    public void setUp() {
+        // Kyiv
+        fromLat = 50.45;
+        fromLng = 30.523333;
+        switch (pair) {
+            case "near":
+                // ~300 m away
+                toLat = 50.4527;
+                toLng = 30.5234;
+                break;
+            case "far":
+                // Lviv
+                toLat = 49.83;
+                toLng = 24.014167;
+                break;
+            case "antipodal":
+                toLat = -50.45;
+                toLng = -149.476667;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown pair: " + pair);
+        }
+        final List<LocationProvider.Location> ring = new ArrayList<>(VERTICES);
+        final double latDelta = BoundingBox.latitudeDelta(RADIUS);
+        final double lngDelta = BoundingBox.longitudeDelta(fromLat, RADIUS);
+        for (int i = 0; i < VERTICES; ++i) {
+            final double angle = 2 * Math.PI * i / VERTICES;
+            ring.add(new LocationProvider.Location(fromLat + Math.sin(angle) * latDelta,
+                    fromLng + Math.cos(angle) * lngDelta));
+        }
+        polygon = new GeofencePolygon(ring,
+                Collections.<List<LocationProvider.Location>>emptyList());
+    }
+
+    @Benchmark
+    public float vincenty() {
+        return GeofenceUtils.distance(fromLat, fromLng, toLat, toLng);
+    }
+
+    @Benchmark
+    public double haversine() {
+        return DistanceEngine.haversine(fromLat, fromLng, toLat, toLng);
+    }
+
+    @Benchmark
+    public boolean tiered() {
+        return engine.isWithin(fromLat, fromLng, toLat, toLng, RADIUS);
+    }
+
+    /** Containment check of polygon with the same area as {@link #tiered()} circle. */
+    @Benchmark
+    public boolean polygon() {
+        return polygon.contains(toLat, toLng);
+    }
+}
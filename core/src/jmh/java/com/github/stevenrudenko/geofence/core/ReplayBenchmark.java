@@ -0,0 +1,82 @@
+package com.github.stevenrudenko.geofence.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures end to end module throughput by replaying synthetic trace as fast as possible. Trace
+ * is random walk with speed of a car, so most of records are too close to be evaluated again.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class ReplayBenchmark {
+    /** Number of trace records. */
+    private static final int RECORDS = 10000;
+    /** Trace records interval in milliseconds. */
+    private static final long INTERVAL = 1000;
+    /** Max step between records in degrees. Roughly 30 meters. */
+    private static final double STEP = 0.0003;
+
+    /** Number of geofences. */
+    @Param({"1000", "100000"})
+    public int geofences;
+
+    private MemoryGeofenceStorage storage;
+    private File trace;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        final Random random = new Random(42);
+        storage = new MemoryGeofenceStorage();
+        final List<Geofence> list = new ArrayList<>(geofences);
+        for (int i = 0; i < geofences; ++i) {
+            list.add(BenchmarkData.randomGeofence(random));
+        }
+        storage.addAll(list);
+
+        final List<GeofenceTrace.Record> records = new ArrayList<>(RECORDS);
+        LocationProvider.Location location = BenchmarkData.randomLocation(random);
+        for (int i = 0; i < RECORDS; ++i) {
+            location = new LocationProvider.Location(
+                    location.getLat() + (random.nextDouble() - 0.5) * STEP,
+                    location.getLng() + (random.nextDouble() - 0.5) * STEP,
+                    10, (i + 1) * INTERVAL);
+            records.add(new GeofenceTrace.Record(location,
+                    new WifiInfoProvider.WifiInfo(false)));
+        }
+        trace = File.createTempFile("trace", ".csv");
+        try (OutputStream out = new FileOutputStream(trace)) {
+            GeofenceTrace.write(out, records);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        trace.delete();
+    }
+
+    @Benchmark
+    public TraceReplay.Report replay() throws IOException {
+        return new TraceReplay(trace, 0).run(storage);
+    }
+}
@@ -0,0 +1,59 @@
+package com.github.stevenrudenko.geofence.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/** Measures SSID pattern matching cost. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SsidMatchBenchmark {
+    /** Number of geofences matched. */
+    private static final int GEOFENCES = 10000;
+
+    /** Geofence SSID pattern. */
+    @Param({"Office", "Hotel[-_\\d]*"})
+    public String pattern;
+    /** SSID device connected to. */
+    @Param({"Office", "Hotel_200", "Unknown network"})
+    public String ssid;
+
+    private Geofence geofence;
+    private SsidMatcher<Geofence> matcher;
+
+    @Setup
+    public void setUp() {
+        geofence = new Geofence(new LocationProvider.Location(50.45, 30.523333), 100, pattern);
+        final Random random = new Random(42);
+        matcher = new SsidMatcher<>();
+        for (int i = 0; i < GEOFENCES; ++i) {
+            final Geofence geofence = BenchmarkData.randomGeofence(random);
+            matcher.add(geofence.getSsid(), geofence);
+        }
+        matcher.commit();
+    }
+
+    @Benchmark
+    public boolean matches() {
+        return GeofenceUtils.isSsidMatches(geofence, ssid);
+    }
+
+    /** Resolves SSID against all geofences at once. */
+    @Benchmark
+    public List<Geofence> matchAll() {
+        final List<Geofence> result = new ArrayList<>();
+        matcher.match(ssid, result);
+        return result;
+    }
+}
@@ -0,0 +1,110 @@
+package com.github.stevenrudenko.geofence.core;
+
+/**
+ * Latitude/longitude aligned bounding box. Used to cheaply reject points which can't be
+ * inside of geofence area.
+ */
+public final class BoundingBox {
+    /** Minimal length of one degree of latitude on WGS84 ellipsoid (at equator) in meters. */
+    static final double METERS_PER_LAT_DEGREE = 110574.0;
+    /** Length of one degree of longitude on WGS84 ellipsoid at equator in meters. */
+    static final double METERS_PER_LNG_DEGREE = 111319.0;
+    /** Extends box a bit to be safe against rounding errors. */
+    private static final double MARGIN = 1.001;
+
+    /** Box bounds in decimal degrees. */
+    private final double minLat, maxLat, minLng, maxLng;
+
+    public BoundingBox(double minLat, double maxLat, double minLng, double maxLng) {
+        this.minLat = minLat;
+        this.maxLat = maxLat;
+        this.minLng = minLng;
+        this.maxLng = maxLng;
+    }
+
+    /**
+     * Creates box which contains every point located not further than given radius from center.
+     * Boxes crossing anti-meridian are extended to cover all longitudes.
+     * @param lat center latitude
+     * @param lng center longitude
+     * @param radius radius in meters
+     * @return bounding box.
+     */
+    public static BoundingBox around(double lat, double lng, double radius) {
+        final double latDelta = latitudeDelta(radius);
+        final double minLat = Math.max(-90.0, lat - latDelta);
+        final double maxLat = Math.min(90.0, lat + latDelta);
+        final double lngDelta = longitudeDelta(lat, radius);
+        final double minLng = lng - lngDelta;
+        final double maxLng = lng + lngDelta;
+        if (minLng < -180.0 || maxLng > 180.0) {
+            return new BoundingBox(minLat, maxLat, -180.0, 180.0);
+        }
+        return new BoundingBox(minLat, maxLat, minLng, maxLng);
+    }
+
+    /**
+     * @param radius radius in meters
+     * @return maximal latitude difference in degrees for points within given radius.
+     */
+    static double latitudeDelta(double radius) {
+        return radius * MARGIN / METERS_PER_LAT_DEGREE;
+    }
+
+    /**
+     * @param lat center latitude
+     * @param radius radius in meters
+     * @return maximal longitude difference in degrees for points within given radius from
+     * center. Returns {@code 180} if all longitudes could be reached.
+     */
+    static double longitudeDelta(double lat, double radius) {
+        final double poleward = Math.abs(lat) + latitudeDelta(radius);
+        if (poleward >= 90.0) {
+            return 180.0;
+        }
+        return Math.min(180.0, radius * MARGIN
+                / (METERS_PER_LNG_DEGREE * Math.cos(Math.toRadians(poleward))));
+    }
+
+    /**
+     * @param geofence geofence to get box for
+     * @return box which contains whole geofence area.
+     */
+    public static BoundingBox of(Geofence geofence) {
+        if (geofence.getPolygon() != null) {
+            return geofence.getPolygon().getBoundingBox();
+        }
+        final LocationProvider.Location point = geofence.getPoint();
+        return around(point.getLat(), point.getLng(), geofence.getRadius());
+    }
+
+    public double getMinLat() {
+        return minLat;
+    }
+
+    public double getMaxLat() {
+        return maxLat;
+    }
+
+    public double getMinLng() {
+        return minLng;
+    }
+
+    public double getMaxLng() {
+        return maxLng;
+    }
+
+    public boolean contains(double lat, double lng) {
+        return lat >= minLat && lat <= maxLat && lng >= minLng && lng <= maxLng;
+    }
+
+    public boolean intersects(BoundingBox box) {
+        return box.maxLat >= minLat && box.minLat <= maxLat
+                && box.maxLng >= minLng && box.minLng <= maxLng;
+    }
+
+    @Override
+    public String toString() {
+        return "BoundingBox{" + minLat + ", " + minLng + " - " + maxLat + ", " + maxLng + "}";
+    }
+}
@@ -0,0 +1,24 @@
+package com.github.stevenrudenko.geofence.core;
+
+/**
+ * Geofence transition of one of devices tracked by {@link GeofenceTracker}.
+ */
+public class DeviceTransition extends GeofenceTransition {
+    /** Device identifier. */
+    private final String deviceId;
+
+    public DeviceTransition(String deviceId, Type type, Geofence geofence, long time) {
+        super(type, geofence, time);
+        this.deviceId = deviceId;
+    }
+
+    public String getDeviceId() {
+        return deviceId;
+    }
+
+    @Override
+    public String toString() {
+        return "DeviceTransition{" + deviceId + ", " + getType() + ", "
+                + getGeofence().getUuid() + ", " + getTime() + "}";
+    }
+}
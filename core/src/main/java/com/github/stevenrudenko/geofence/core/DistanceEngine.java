@@ -0,0 +1,144 @@
+package com.github.stevenrudenko.geofence.core;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tiered distance engine. Answers whether two points are within given distance doing as
+ * little math as possible:
+ * <ol>
+ *     <li>lat/lng bounding box rejects points which are obviously far away;</li>
+ *     <li>haversine estimate decides unless it is within its error bound of the radius;</li>
+ *     <li>Vincenty inverse formula ({@link GeofenceUtils#distance}) decides the rest.</li>
+ * </ol>
+ * Tiers may count how many decisions they made. Counting is opt-in, so engines shared by many
+ * threads, like {@link #getDefault()} one, don't contend on counters in the hot path.
+ */
+public class DistanceEngine {
+    /** Mean Earth radius in meters. */
+    private static final double EARTH_RADIUS = 6371008.8;
+    /**
+     * Maximal relative error of haversine distance on mean sphere comparing to geodesic
+     * distance on WGS84 ellipsoid (it is about 0.56%).
+     */
+    static final double ESTIMATE_ERROR = 0.006;
+
+    /** Shared instance, doesn't count decisions. */
+    private static final DistanceEngine DEFAULT = new DistanceEngine();
+
+    /** Indicates whether tier decisions are counted. */
+    private final boolean counting;
+
+    /** Number of decisions made by bounding box. */
+    private final AtomicLong boundingBoxHits = new AtomicLong();
+    /** Number of decisions made by haversine estimate. */
+    private final AtomicLong estimateHits = new AtomicLong();
+    /** Number of decisions made by Vincenty formula. */
+    private final AtomicLong preciseHits = new AtomicLong();
+
+    /** Creates engine which doesn't count decisions. */
+    public DistanceEngine() {
+        this(false);
+    }
+
+    /**
+     * @param counting whether decisions made by every tier should be counted
+     */
+    public DistanceEngine(boolean counting) {
+        this.counting = counting;
+    }
+
+    /**
+     * @return shared engine instance used by {@link GeofenceUtils}.
+     */
+    public static DistanceEngine getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Checks whether distance between center and point is not greater than radius.
+     * @param centerLat center latitude
+     * @param centerLng center longitude
+     * @param lat point latitude
+     * @param lng point longitude
+     * @param radius radius in meters
+     * @return {@code true} if point is within radius from center.
+     */
+    public boolean isWithin(double centerLat, double centerLng, double lat, double lng,
+                            double radius) {
+        // tier 1: bounding box
+        if (Math.abs(lat - centerLat) > BoundingBox.latitudeDelta(radius)) {
+            if (counting) {
+                boundingBoxHits.incrementAndGet();
+            }
+            return false;
+        }
+        double lngDiff = Math.abs(lng - centerLng);
+        if (lngDiff > 180.0) {
+            lngDiff = 360.0 - lngDiff;
+        }
+        if (lngDiff > BoundingBox.longitudeDelta(centerLat, radius)) {
+            if (counting) {
+                boundingBoxHits.incrementAndGet();
+            }
+            return false;
+        }
+        // tier 2: haversine estimate
+        final double estimate = haversine(centerLat, centerLng, lat, lng);
+        if (estimate * (1.0 - ESTIMATE_ERROR) > radius) {
+            if (counting) {
+                estimateHits.incrementAndGet();
+            }
+            return false;
+        }
+        if (estimate * (1.0 + ESTIMATE_ERROR) < radius) {
+            if (counting) {
+                estimateHits.incrementAndGet();
+            }
+            return true;
+        }
+        // tier 3: precise distance
+        if (counting) {
+            preciseHits.incrementAndGet();
+        }
+        return GeofenceUtils.distance(centerLat, centerLng, lat, lng) <= radius;
+    }
+
+    /**
+     * Calculates great-circle distance on mean Earth sphere.
+     * @return distance between two points in meters.
+     */
+    static double haversine(double fromLat, double fromLng, double toLat, double toLng) {
+        final double lat1 = Math.toRadians(fromLat);
+        final double lat2 = Math.toRadians(toLat);
+        final double sinLat = Math.sin((lat2 - lat1) / 2.0);
+        final double sinLng = Math.sin(Math.toRadians(toLng - fromLng) / 2.0);
+        final double h = sinLat * sinLat + Math.cos(lat1) * Math.cos(lat2) * sinLng * sinLng;
+        return 2.0 * EARTH_RADIUS * Math.asin(Math.min(1.0, Math.sqrt(h)));
+    }
+
+    /**
+     * @return {@code true} if decisions made by every tier are counted.
+     */
+    public boolean isCounting() {
+        return counting;
+    }
+
+    public long getBoundingBoxHits() {
+        return boundingBoxHits.get();
+    }
+
+    public long getEstimateHits() {
+        return estimateHits.get();
+    }
+
+    public long getPreciseHits() {
+        return preciseHits.get();
+    }
+
+    /** Resets all counters. */
+    public void resetCounters() {
+        boundingBoxHits.set(0);
+        estimateHits.set(0);
+        preciseHits.set(0);
+    }
+}
@@ -4,7 +4,8 @@ import java.util.UUID;
 import java.util.regex.Pattern;
 
 /**
- * Geofence model.
+ * Geofence model. SSID is a regular expression pattern, geofence with invalid one can't be
+ * created: {@link java.util.regex.PatternSyntaxException} is thrown.
  */
 public class Geofence {
     /**
@@ -16,28 +17,97 @@ public class Geofence {
      */
     private final LocationProvider.Location point;
     /**
-     * Radius of geofence area.
+     * Radius of geofence area. Encloses whole {@link #polygon} for polygon geofences.
      */
     private final int radius;
+    /**
+     * Geofence area polygon or {@code null} for circle geofence.
+     */
+    private final GeofencePolygon polygon;
     /**
      * Geofence SSID.
      */
     private final String ssid;
     /**
-     * Gefence SSID pattern.
+     * WiFi access points fingerprint or {@code null} if geofence has no fingerprint.
      */
-    private final Pattern pattern;
+    private final WifiFingerprint fingerprint;
+    /**
+     * Gefence SSID pattern. Regular expressions are compiled to be validated, literals and
+     * prefixes are compiled on first use, as most geofences are never matched by pattern.
+     */
+    private volatile Pattern pattern;
 
     public Geofence(LocationProvider.Location point, int radius, String ssid) {
         this(UUID.randomUUID().toString(), point, radius, ssid);
     }
 
     public Geofence(String uuid, LocationProvider.Location point, int radius, String ssid) {
+        this(uuid, point, radius, ssid, null);
+    }
+
+    /**
+     * Creates circle geofence which is also matched by WiFi fingerprint.
+     * @param uuid geofence UUID
+     * @param point geofence center
+     * @param radius geofence radius in meters
+     * @param ssid geofence SSID pattern
+     * @param fingerprint access points fingerprint or {@code null}
+     */
+    public Geofence(String uuid, LocationProvider.Location point, int radius, String ssid,
+                    WifiFingerprint fingerprint) {
+        this(uuid, point, radius, null, ssid, fingerprint);
+    }
+
+    public Geofence(GeofencePolygon polygon, String ssid) {
+        this(UUID.randomUUID().toString(), polygon, ssid);
+    }
+
+    /**
+     * Creates polygon geofence. Its center and radius describe circle which encloses polygon.
+     * @param uuid geofence UUID
+     * @param polygon geofence area
+     * @param ssid geofence SSID pattern
+     */
+    public Geofence(String uuid, GeofencePolygon polygon, String ssid) {
+        this(uuid, polygon, ssid, null);
+    }
+
+    /**
+     * Creates polygon geofence which is also matched by WiFi fingerprint.
+     * @param uuid geofence UUID
+     * @param polygon geofence area
+     * @param ssid geofence SSID pattern
+     * @param fingerprint access points fingerprint or {@code null}
+     */
+    public Geofence(String uuid, GeofencePolygon polygon, String ssid,
+                    WifiFingerprint fingerprint) {
+        this(uuid, polygon.getCenter(), polygon, ssid, fingerprint);
+    }
+
+    private Geofence(String uuid, LocationProvider.Location center, GeofencePolygon polygon,
+                     String ssid, WifiFingerprint fingerprint) {
+        this(uuid, center, polygon.getEnclosingRadius(center), polygon, ssid, fingerprint);
+    }
+
+    /**
+     * Creates geofence from already known properties. Used to restore geofences in bulk.
+     */
+    Geofence(String uuid, LocationProvider.Location point, int radius, GeofencePolygon polygon,
+             String ssid, WifiFingerprint fingerprint) {
+        if (ssid == null) {
+            throw new NullPointerException("SSID pattern is null");
+        }
         this.uuid = uuid;
         this.point = point;
         this.radius = radius;
+        this.polygon = polygon;
         this.ssid = ssid;
-        this.pattern = Pattern.compile(ssid);
+        this.fingerprint = fingerprint;
+        if (!SsidMatcher.isLiteral(ssid) && !SsidMatcher.isPrefix(ssid)) {
+            // fail fast on invalid regular expression, literals and prefixes are always valid
+            this.pattern = SsidPatternCache.getDefault().compile(ssid);
+        }
     }
 
     public String getUuid() {
@@ -52,11 +122,34 @@ public class Geofence {
         return radius;
     }
 
+    /**
+     * @return geofence area polygon or {@code null} for circle geofence.
+     */
+    public GeofencePolygon getPolygon() {
+        return polygon;
+    }
+
+    /**
+     * @return WiFi access points fingerprint or {@code null} if geofence has no fingerprint.
+     */
+    public WifiFingerprint getFingerprint() {
+        return fingerprint;
+    }
+
     public String getSsid() {
         return ssid;
     }
 
+    /**
+     * @return compiled SSID pattern. It is shared by geofences with equal SSID.
+     */
     public Pattern getSsidPattern() {
+        Pattern pattern = this.pattern;
+        if (pattern == null) {
+            // racing threads get the same cached pattern
+            pattern = SsidPatternCache.getDefault().compile(ssid);
+            this.pattern = pattern;
+        }
         return pattern;
     }
 }
\ No newline at end of file
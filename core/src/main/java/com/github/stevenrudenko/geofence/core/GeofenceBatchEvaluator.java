@@ -0,0 +1,117 @@
+package com.github.stevenrudenko.geofence.core;
+
+import java.util.Collection;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Evaluates many locations against geofences in one call. Points are split between
+ * {@link ForkJoinPool} workers. Workers share immutable grid of {@link GeofenceEvaluator}
+ * snapshot without any locking, every task evaluates its range of points with its own
+ * buffers and distance engine, so workers don't write to any shared state. Nothing is kept
+ * on pool threads after evaluation.
+ * Only location is taken into account, WiFi state is not known for batched points.
+ */
+public class GeofenceBatchEvaluator {
+    /** Number of points evaluated by single task without further splitting. */
+    private static final int THRESHOLD = 512;
+    /** Returned for points which are outside of any geofence. */
+    private static final String[] NO_GEOFENCES = new String[0];
+
+    /** Geofences snapshot shared by workers. */
+    private final GeofenceEvaluator snapshot;
+    /** Used to run evaluation tasks. */
+    private final ForkJoinPool pool;
+
+    /**
+     * @param geofences geofences to evaluate points against
+     */
+    public GeofenceBatchEvaluator(Collection<Geofence> geofences) {
+        this(new GeofenceEvaluator(geofences));
+    }
+
+    /**
+     * @param snapshot evaluator which grid is shared by workers
+     */
+    public GeofenceBatchEvaluator(GeofenceEvaluator snapshot) {
+        this(snapshot, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates evaluator over current state of given one. Changes applied to given evaluator
+     * later are not seen.
+     * @param snapshot evaluator which grid is shared by workers
+     * @param pool pool to run evaluation tasks on
+     */
+    public GeofenceBatchEvaluator(GeofenceEvaluator snapshot, ForkJoinPool pool) {
+        this.snapshot = new GeofenceEvaluator(snapshot);
+        this.pool = pool;
+    }
+
+    /**
+     * Evaluates points against geofences.
+     * @param lats points latitudes
+     * @param lngs points longitudes
+     * @return UUIDs of inbound geofences for every point.
+     */
+    public String[][] evaluate(double[] lats, double[] lngs) {
+        if (lats.length != lngs.length) {
+            throw new IllegalArgumentException("Latitudes and longitudes count mismatch: "
+                    + lats.length + " != " + lngs.length);
+        }
+        final String[][] result = new String[lats.length][];
+        if (lats.length <= THRESHOLD) {
+            evaluate(lats, lngs, 0, lats.length, result);
+        } else {
+            pool.invoke(new EvaluateTask(lats, lngs, 0, lats.length, result));
+        }
+        return result;
+    }
+
+    private void evaluate(double[] lats, double[] lngs, int from, int to, String[][] result) {
+        // buffers are allocated per range, so nothing outlives evaluation
+        final GeofenceEvaluator evaluator = new GeofenceEvaluator(snapshot, new DistanceEngine());
+        for (int i = from; i < to; ++i) {
+            final int count = evaluator.evaluate(lats[i], lngs[i], null);
+            if (count == 0) {
+                result[i] = NO_GEOFENCES;
+                continue;
+            }
+            final String[] inbounds = new String[count];
+            for (int j = 0; j < count; ++j) {
+                inbounds[j] = evaluator.getGeofence(evaluator.getInbound(j)).getUuid();
+            }
+            result[i] = inbounds;
+        }
+    }
+
+    /** Evaluates range of points splitting it in halves while it is too large. */
+    private class EvaluateTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final double[] lats;
+        private final double[] lngs;
+        private final int from;
+        private final int to;
+        private final String[][] result;
+
+        EvaluateTask(double[] lats, double[] lngs, int from, int to, String[][] result) {
+            this.lats = lats;
+            this.lngs = lngs;
+            this.from = from;
+            this.to = to;
+            this.result = result;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= THRESHOLD) {
+                evaluate(lats, lngs, from, to, result);
+                return;
+            }
+            final int middle = (from + to) >>> 1;
+            invokeAll(new EvaluateTask(lats, lngs, from, middle, result),
+                    new EvaluateTask(lats, lngs, middle, to, result));
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.github.stevenrudenko.geofence.core;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Geofence storage change set. Holds geofences which were added, removed or updated.
+ */
+public class GeofenceChange {
+    /** Indicates whether change holds whole storage content as added geofences. */
+    private final boolean reset;
+    /** Added geofences. */
+    private final List<Geofence> added;
+    /** Removed geofences. */
+    private final List<Geofence> removed;
+    /** Updated geofences. */
+    private final List<Geofence> updated;
+
+    public GeofenceChange(List<Geofence> added, List<Geofence> removed, List<Geofence> updated) {
+        this(false, added, removed, updated);
+    }
+
+    private GeofenceChange(boolean reset, List<Geofence> added, List<Geofence> removed,
+                           List<Geofence> updated) {
+        this.reset = reset;
+        this.added = Collections.unmodifiableList(added);
+        this.removed = Collections.unmodifiableList(removed);
+        this.updated = Collections.unmodifiableList(updated);
+    }
+
+    /**
+     * @param geofences whole storage content
+     * @return change which replaces any previous state.
+     */
+    public static GeofenceChange reset(List<Geofence> geofences) {
+        return new GeofenceChange(true, geofences, Collections.<Geofence>emptyList(),
+                Collections.<Geofence>emptyList());
+    }
+
+    public static GeofenceChange added(List<Geofence> geofences) {
+        return new GeofenceChange(geofences, Collections.<Geofence>emptyList(),
+                Collections.<Geofence>emptyList());
+    }
+
+    public static GeofenceChange removed(List<Geofence> geofences) {
+        return new GeofenceChange(Collections.<Geofence>emptyList(), geofences,
+                Collections.<Geofence>emptyList());
+    }
+
+    public static GeofenceChange updated(List<Geofence> geofences) {
+        return new GeofenceChange(Collections.<Geofence>emptyList(),
+                Collections.<Geofence>emptyList(), geofences);
+    }
+
+    /**
+     * @return {@code true} if {@link #getAdded()} holds whole storage content and previous
+     * state should be dropped.
+     */
+    public boolean isReset() {
+        return reset;
+    }
+
+    public List<Geofence> getAdded() {
+        return added;
+    }
+
+    public List<Geofence> getRemoved() {
+        return removed;
+    }
+
+    public List<Geofence> getUpdated() {
+        return updated;
+    }
+
+    public boolean isEmpty() {
+        return !reset && added.isEmpty() && removed.isEmpty() && updated.isEmpty();
+    }
+
+    /**
+     * @return number of geofences changed.
+     */
+    public int size() {
+        return added.size() + removed.size() + updated.size();
+    }
+
+    /**
+     * Applies change to geofences collection.
+     * @param geofences geofences mapped by UUID
+     * @return {@code true} if geofences were changed.
+     */
+    boolean applyTo(Map<String, Geofence> geofences) {
+        if (reset) {
+            final Map<String, Geofence> actual = new LinkedHashMap<>();
+            boolean changed = false;
+            for (Geofence geofence : added) {
+                actual.put(geofence.getUuid(), geofence);
+                changed |= geofences.get(geofence.getUuid()) != geofence;
+            }
+            changed |= actual.size() != geofences.size();
+            geofences.clear();
+            geofences.putAll(actual);
+            return changed;
+        }
+        boolean changed = false;
+        for (Geofence geofence : removed) {
+            changed |= geofences.remove(geofence.getUuid()) != null;
+        }
+        for (Geofence geofence : updated) {
+            geofences.put(geofence.getUuid(), geofence);
+            changed = true;
+        }
+        for (Geofence geofence : added) {
+            geofences.put(geofence.getUuid(), geofence);
+            changed = true;
+        }
+        return changed;
+    }
+
+    @Override
+    public String toString() {
+        return "GeofenceChange{reset=" + reset + ", added=" + added.size()
+                + ", removed=" + removed.size() + ", updated=" + updated.size() + "}";
+    }
+}
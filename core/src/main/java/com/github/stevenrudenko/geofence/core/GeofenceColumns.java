@@ -0,0 +1,148 @@
+package com.github.stevenrudenko.geofence.core;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable columnar snapshot of geofences. Every geofence property is kept in its own primitive
+ * array indexed by geofence slot, so scanning geofences reads sequential memory instead of
+ * following references. Strings are kept in dictionaries:
+ * <ul>
+ *     <li>UUIDs are mapped to slots;</li>
+ *     <li>equal SSID patterns share one SSID id, so every distinct pattern is matched once.</li>
+ * </ul>
+ * Distinct SSID patterns are indexed by {@link SsidMatcher}, which compiles only regular
+ * expressions and only once SSID is matched, so building snapshot compiles nothing.
+ * WiFi fingerprints are indexed by access point BSSID.
+ */
+public class GeofenceColumns {
+    /** Geofence center latitudes. */
+    final double[] lats;
+    /** Geofence center longitudes. */
+    final double[] lngs;
+    /** Geofence radiuses in meters. */
+    final float[] radiuses;
+    /** Geofence polygons, {@code null} for circle geofences. */
+    final GeofencePolygon[] polygons;
+    /** Geofence SSID pattern ids. */
+    final int[] ssidIds;
+    /** Distinct SSID patterns mapped by SSID id. */
+    final String[] ssids;
+    /** Resolves SSID to SSID ids. */
+    final SsidMatcher<Integer> ssidMatcher;
+    /** Geofence fingerprints, {@code null} for geofences without fingerprint. */
+    final WifiFingerprint[] fingerprints;
+    /** Index of {@link #fingerprints} by access point. */
+    final WifiFingerprintIndex fingerprintIndex;
+
+    /** Geofences mapped by slot. */
+    private final Geofence[] geofences;
+    /** Slots mapped by geofence UUID. */
+    private final Map<String, Integer> slots;
+
+    public GeofenceColumns(Collection<Geofence> geofences) {
+        final int size = geofences.size();
+        this.geofences = geofences.toArray(new Geofence[size]);
+        lats = new double[size];
+        lngs = new double[size];
+        radiuses = new float[size];
+        polygons = new GeofencePolygon[size];
+        ssidIds = new int[size];
+        fingerprints = new WifiFingerprint[size];
+        slots = new HashMap<>(size * 2);
+        final Map<String, Integer> ids = new HashMap<>();
+        final List<String> distinct = new ArrayList<>();
+        for (int slot = 0; slot < size; ++slot) {
+            final Geofence geofence = this.geofences[slot];
+            lats[slot] = geofence.getPoint().getLat();
+            lngs[slot] = geofence.getPoint().getLng();
+            radiuses[slot] = geofence.getRadius();
+            polygons[slot] = geofence.getPolygon();
+            fingerprints[slot] = geofence.getFingerprint();
+            Integer id = ids.get(geofence.getSsid());
+            if (id == null) {
+                id = distinct.size();
+                ids.put(geofence.getSsid(), id);
+                distinct.add(geofence.getSsid());
+            }
+            ssidIds[slot] = id;
+            slots.put(geofence.getUuid(), slot);
+        }
+        ssids = distinct.toArray(new String[distinct.size()]);
+        ssidMatcher = createSsidMatcher(ssids);
+        fingerprintIndex = new WifiFingerprintIndex(fingerprints);
+    }
+
+    /**
+     * Creates snapshot from already filled columns. Used to restore snapshot.
+     */
+    GeofenceColumns(Geofence[] geofences, double[] lats, double[] lngs, float[] radiuses,
+                    GeofencePolygon[] polygons, int[] ssidIds, String[] ssids,
+                    WifiFingerprint[] fingerprints) {
+        this.geofences = geofences;
+        this.lats = lats;
+        this.lngs = lngs;
+        this.radiuses = radiuses;
+        this.polygons = polygons;
+        this.ssidIds = ssidIds;
+        this.ssids = ssids;
+        this.ssidMatcher = createSsidMatcher(ssids);
+        this.fingerprints = fingerprints;
+        this.fingerprintIndex = new WifiFingerprintIndex(fingerprints);
+        slots = new HashMap<>(geofences.length * 2);
+        for (int slot = 0; slot < geofences.length; ++slot) {
+            slots.put(geofences[slot].getUuid(), slot);
+        }
+    }
+
+    private static SsidMatcher<Integer> createSsidMatcher(String[] ssids) {
+        final SsidMatcher<Integer> matcher = new SsidMatcher<>();
+        for (int id = 0; id < ssids.length; ++id) {
+            matcher.add(ssids[id], id);
+        }
+        matcher.commit();
+        return matcher;
+    }
+
+    /**
+     * @param storage storage to take geofences from
+     * @return snapshot of storage geofences.
+     */
+    public static GeofenceColumns from(GeofenceStorage storage) {
+        return new GeofenceColumns(storage.getGeofences());
+    }
+
+    /**
+     * @param slot geofence slot
+     * @return geofence at given slot.
+     */
+    public Geofence getGeofence(int slot) {
+        return geofences[slot];
+    }
+
+    /**
+     * @param uuid geofence UUID
+     * @return geofence slot or {@code -1} if there is no such geofence.
+     */
+    public int indexOf(String uuid) {
+        final Integer slot = slots.get(uuid);
+        return slot == null ? -1 : slot;
+    }
+
+    /**
+     * @return number of geofences.
+     */
+    public int size() {
+        return geofences.length;
+    }
+
+    /**
+     * @return number of distinct SSID patterns.
+     */
+    public int getSsidCount() {
+        return ssids.length;
+    }
+}
@@ -0,0 +1,778 @@
+package com.github.stevenrudenko.geofence.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Allocation free inbound geofences evaluator. Works on {@link GeofenceColumns} snapshot,
+ * grid cells of geofence bounding boxes are packed into primitive arrays as well.
+ * <p>
+ * Evaluation takes primitive coordinates and writes inbound slots into reusable buffer, so
+ * steady state evaluation doesn't allocate anything. SSID is matched only when it changes:
+ * distinct SSID patterns are resolved by {@link SsidMatcher} of snapshot, and matched slots
+ * are reused till SSID changes again. Only regular expression patterns are compiled, on first
+ * match. Visible WiFi access points are looked up in hashed
+ * fingerprint index, so geofences are matched by WiFi scan results without location.
+ * <p>
+ * Storage changes are applied in place with {@link #apply(GeofenceChange)}: removed slots are
+ * skipped and added geofences are checked one by one till evaluator is rebuilt. Slots of
+ * geofences are never reused, so slot stays valid till geofence is removed.
+ * <p>
+ * Not thread safe.
+ */
+public class GeofenceEvaluator {
+    /** Default grid cell size in degrees (~5.5 km on latitude). */
+    public static final double DEFAULT_CELL_SIZE = 0.05;
+    /** Geofences covering more cells than that are checked on every lookup instead. */
+    static final int MAX_CELLS_PER_GEOFENCE = 64;
+    /** Evaluator should be rebuilt once more changes than that are applied in place. */
+    public static final int MAX_CHANGES = 256;
+    /** Marks empty cell table position. */
+    static final long EMPTY = -1L;
+
+    /** Geofences snapshot. */
+    private final GeofenceColumns columns;
+    /** Geofence bounding boxes. */
+    final double[] minLats, maxLats, minLngs, maxLngs;
+    /** SSID ids matched by {@link #lastSsid}. */
+    private final List<Integer> matchedSsidIds = new ArrayList<>();
+    /** Match results of {@link #lastSsid} mapped by SSID id. */
+    private final boolean[] ssidMatches;
+    /** Used to distance check geofences. */
+    private final DistanceEngine engine;
+
+    /** Grid cell size in degrees. */
+    final double cellSize;
+    /** Number of grid columns. */
+    private final int gridColumns;
+    /** Open addressing table of cell keys. */
+    final long[] cellKeys;
+    /** Cell slots range start in {@link #cellSlots} by table position. */
+    final int[] cellStarts;
+    /** Cell slots count by table position. */
+    final int[] cellCounts;
+    /** Slots of all cells one after another. */
+    final int[] cellSlots;
+    /** Slots of geofences which are too large to be put into cells. */
+    final int[] large;
+
+    /** Geofences added after grid was built. Slot of geofence is columns size plus index. */
+    private final List<Geofence> added;
+    /** Bounding boxes of {@link #added} geofences. */
+    private final List<BoundingBox> addedBoxes;
+    /** Slots of geofences changed after grid was built mapped by UUID, -1 if removed. */
+    private final Map<String, Integer> changedSlots;
+    /** Removed slots bit set. */
+    private long[] removed;
+    /** Number of removed slots. */
+    private int removedCount;
+
+    /** Inbound slots of last evaluation. */
+    private int[] inbounds;
+    /** Number of inbound slots of last evaluation. */
+    private int inboundCount;
+    /** Number of geofences distance checked by last evaluation. */
+    private int candidateCount;
+    /** Number of geofences matched by SSID at last evaluation. */
+    private int ssidMatchCount;
+    /** Number of geofences matched by fingerprint at last evaluation. */
+    private int fingerprintMatchCount;
+    /** Number of matched fingerprint access points mapped by slot. Zeroed after matching. */
+    private int[] accessPointMatches;
+    /** Slots which have matched fingerprint access points. */
+    private int[] fingerprintSlots;
+    /** Inbound slots bit set. Used to skip geofences already matched by SSID. */
+    private long[] marks;
+    /** Slots matched by {@link #lastSsid}. */
+    private int[] ssidSlots;
+    /** Number of slots matched by {@link #lastSsid}. */
+    private int ssidCount;
+    /** Last matched SSID. */
+    private String lastSsid;
+
+    public GeofenceEvaluator(Collection<Geofence> geofences) {
+        this(new GeofenceColumns(geofences));
+    }
+
+    public GeofenceEvaluator(GeofenceColumns columns) {
+        this(columns, DEFAULT_CELL_SIZE, DistanceEngine.getDefault());
+    }
+
+    public GeofenceEvaluator(GeofenceColumns columns, double cellSize, DistanceEngine engine) {
+        if (cellSize <= 0 || cellSize > 180) {
+            throw new IllegalArgumentException("Illegal cell size: " + cellSize);
+        }
+        this.columns = columns;
+        this.cellSize = cellSize;
+        this.gridColumns = (int) Math.ceil(360.0 / cellSize);
+        this.engine = engine;
+        this.added = new ArrayList<>();
+        this.addedBoxes = new ArrayList<>();
+        this.changedSlots = new HashMap<>();
+
+        final int size = columns.size();
+        minLats = new double[size];
+        maxLats = new double[size];
+        minLngs = new double[size];
+        maxLngs = new double[size];
+        allocate(size);
+        removed = new long[marks.length];
+        ssidMatches = new boolean[columns.getSsidCount()];
+
+        final Map<Long, List<Integer>> cells = new HashMap<>();
+        final List<Integer> largeSlots = new ArrayList<>();
+        int cellSlotCount = 0;
+        for (int slot = 0; slot < size; ++slot) {
+            final BoundingBox box = columns.polygons[slot] != null
+                    ? columns.polygons[slot].getBoundingBox()
+                    : BoundingBox.around(
+                            columns.lats[slot], columns.lngs[slot], columns.radiuses[slot]);
+            minLats[slot] = box.getMinLat();
+            maxLats[slot] = box.getMaxLat();
+            minLngs[slot] = box.getMinLng();
+            maxLngs[slot] = box.getMaxLng();
+
+            final int minRow = row(box.getMinLat());
+            final int maxRow = row(box.getMaxLat());
+            final int minColumn = column(box.getMinLng());
+            final int maxColumn = column(box.getMaxLng());
+            if ((long) (maxRow - minRow + 1) * (maxColumn - minColumn + 1)
+                    > MAX_CELLS_PER_GEOFENCE) {
+                largeSlots.add(slot);
+                continue;
+            }
+            for (int row = minRow; row <= maxRow; ++row) {
+                for (int column = minColumn; column <= maxColumn; ++column) {
+                    final Long key = key(row, column);
+                    List<Integer> cell = cells.get(key);
+                    if (cell == null) {
+                        cell = new ArrayList<>(2);
+                        cells.put(key, cell);
+                    }
+                    cell.add(slot);
+                    ++cellSlotCount;
+                }
+            }
+        }
+        large = toArray(largeSlots);
+        // keep table at most half full so probing sequences stay short
+        final int capacity = Integer.highestOneBit(Math.max(1, cells.size()) * 2) << 1;
+        cellKeys = new long[capacity];
+        cellStarts = new int[capacity];
+        cellCounts = new int[capacity];
+        cellSlots = new int[cellSlotCount];
+        Arrays.fill(cellKeys, EMPTY);
+        int offset = 0;
+        for (Map.Entry<Long, List<Integer>> cell : cells.entrySet()) {
+            final long key = cell.getKey();
+            int position = position(key);
+            while (cellKeys[position] != EMPTY) {
+                position = (position + 1) & (capacity - 1);
+            }
+            cellKeys[position] = key;
+            cellStarts[position] = offset;
+            cellCounts[position] = cell.getValue().size();
+            for (Integer slot : cell.getValue()) {
+                cellSlots[offset++] = slot;
+            }
+        }
+    }
+
+    /**
+     * Creates evaluator which shares geofences snapshot and grid with given one. Only
+     * evaluation buffers and changes applied in place are copied, so evaluators for many
+     * threads are cheap. Changes applied to either evaluator later aren't seen by another.
+     * @param shared evaluator to share grid with
+     */
+    public GeofenceEvaluator(GeofenceEvaluator shared) {
+        this(shared, shared.engine);
+    }
+
+    /**
+     * Creates evaluator which shares geofences snapshot and grid with given one, but checks
+     * distance with its own engine.
+     * @param shared evaluator to share grid with
+     * @param engine engine to check distance with
+     */
+    GeofenceEvaluator(GeofenceEvaluator shared, DistanceEngine engine) {
+        this(shared.columns, shared.cellSize, engine,
+                shared.minLats, shared.maxLats, shared.minLngs, shared.maxLngs,
+                shared.cellKeys, shared.cellStarts, shared.cellCounts, shared.cellSlots,
+                shared.large);
+        added.addAll(shared.added);
+        addedBoxes.addAll(shared.addedBoxes);
+        changedSlots.putAll(shared.changedSlots);
+        removed = shared.removed.clone();
+        removedCount = shared.removedCount;
+        allocate(slotCount());
+    }
+
+    /**
+     * Creates evaluator over already built grid. Used to share or restore grid.
+     */
+    GeofenceEvaluator(GeofenceColumns columns, double cellSize, DistanceEngine engine,
+                      double[] minLats, double[] maxLats, double[] minLngs, double[] maxLngs,
+                      long[] cellKeys, int[] cellStarts, int[] cellCounts, int[] cellSlots,
+                      int[] large) {
+        this.columns = columns;
+        this.cellSize = cellSize;
+        this.gridColumns = (int) Math.ceil(360.0 / cellSize);
+        this.engine = engine;
+        this.minLats = minLats;
+        this.maxLats = maxLats;
+        this.minLngs = minLngs;
+        this.maxLngs = maxLngs;
+        this.cellKeys = cellKeys;
+        this.cellStarts = cellStarts;
+        this.cellCounts = cellCounts;
+        this.cellSlots = cellSlots;
+        this.large = large;
+        this.added = new ArrayList<>();
+        this.addedBoxes = new ArrayList<>();
+        this.changedSlots = new HashMap<>();
+
+        allocate(columns.size());
+        removed = new long[marks.length];
+        ssidMatches = new boolean[columns.getSsidCount()];
+    }
+
+    /**
+     * Applies storage change in place. Removed and updated geofences are skipped from now on,
+     * added and updated ones are checked one by one till evaluator is rebuilt.
+     * Invalidates results of last evaluation.
+     * @param change storage change, can't be reset
+     * @return {@code true} if evaluator was changed.
+     */
+    public boolean apply(GeofenceChange change) {
+        if (change.isReset()) {
+            throw new IllegalArgumentException("Reset can't be applied, rebuild evaluator");
+        }
+        boolean changed = false;
+        for (Geofence geofence : change.getRemoved()) {
+            changed |= remove(geofence.getUuid());
+        }
+        for (Geofence geofence : change.getUpdated()) {
+            remove(geofence.getUuid());
+            add(geofence);
+            changed = true;
+        }
+        for (Geofence geofence : change.getAdded()) {
+            remove(geofence.getUuid());
+            add(geofence);
+            changed = true;
+        }
+        if (changed) {
+            clearInbounds();
+            final int slots = slotCount();
+            if (slots > inbounds.length) {
+                allocate(Math.max(slots, inbounds.length * 2));
+            }
+            lastSsid = null;
+        }
+        return changed;
+    }
+
+    /**
+     * @return number of changes applied in place. Evaluator should be rebuilt with
+     * {@link #compact()} once it is greater than {@link #MAX_CHANGES}.
+     */
+    public int getChangeCount() {
+        return added.size() + removedCount;
+    }
+
+    /**
+     * @return evaluator with grid built over actual geofences or this one if no changes were
+     * applied in place.
+     */
+    public GeofenceEvaluator compact() {
+        if (getChangeCount() == 0) {
+            return this;
+        }
+        return new GeofenceEvaluator(new GeofenceColumns(getGeofences()), cellSize, engine);
+    }
+
+    /**
+     * Evaluates inbound geofences. Results are available with {@link #getInbound(int)} till
+     * next evaluation.
+     * @param lat device latitude
+     * @param lng device longitude
+     * @param ssid SSID of WiFi hotspot device connected to or {@code null}
+     * @return number of inbound geofences.
+     */
+    public int evaluate(double lat, double lng, String ssid) {
+        return evaluate(lat, lng, ssid, Collections.<WifiInfoProvider.AccessPoint>emptyList());
+    }
+
+    /**
+     * Evaluates inbound geofences taking WiFi scan results into account. Results are available
+     * with {@link #getInbound(int)} till next evaluation.
+     * @param lat device latitude
+     * @param lng device longitude
+     * @param ssid SSID of WiFi hotspot device connected to or {@code null}
+     * @param accessPoints visible WiFi access points
+     * @return number of inbound geofences.
+     */
+    public int evaluate(double lat, double lng, String ssid,
+                        List<WifiInfoProvider.AccessPoint> accessPoints) {
+        clearInbounds();
+        candidateCount = 0;
+        // any geofence could be matched by SSID
+        if (ssid != null) {
+            matchSsid(ssid);
+            for (int i = 0; i < ssidCount; ++i) {
+                mark(ssidSlots[i]);
+            }
+        }
+        ssidMatchCount = inboundCount;
+        matchFingerprints(accessPoints);
+        fingerprintMatchCount = inboundCount - ssidMatchCount;
+        // only geofences around location could be matched by distance
+        final int position = find(key(row(lat), column(lng)));
+        if (position >= 0) {
+            final int start = cellStarts[position];
+            check(cellSlots, start, start + cellCounts[position], lat, lng);
+        }
+        check(large, 0, large.length, lat, lng);
+        checkAdded(lat, lng);
+        return inboundCount;
+    }
+
+    /**
+     * Looks for distance to nearest geofence boundary. Device can't enter or leave any
+     * geofence by location until it moves farther than that.
+     * @param lat device latitude
+     * @param lng device longitude
+     * @param limit distance in meters to look for boundaries within
+     * @return distance to nearest boundary in meters, never overestimated, but not greater
+     * than limit.
+     */
+    public double boundaryDistance(double lat, double lng, double limit) {
+        double result = limit;
+        final double lngDelta = BoundingBox.longitudeDelta(lat, limit);
+        final int minRow = row(lat - BoundingBox.latitudeDelta(limit));
+        final int maxRow = row(lat + BoundingBox.latitudeDelta(limit));
+        final int minColumn = column(lng - lngDelta);
+        final int maxColumn = column(lng + lngDelta);
+        if (lngDelta >= 180.0 || (long) (maxRow - minRow + 1) * (maxColumn - minColumn + 1)
+                > MAX_CELLS_PER_GEOFENCE) {
+            // too many cells to look up, so check every geofence
+            for (int slot = 0, size = columns.size(); slot < size && result > 0; ++slot) {
+                if (!isRemoved(slot)) {
+                    result = Math.min(result, boundaryDistance(slot, lat, lng));
+                }
+            }
+            return addedBoundaryDistance(lat, lng, result);
+        }
+        for (int row = minRow; row <= maxRow; ++row) {
+            for (int column = minColumn; column <= maxColumn; ++column) {
+                // wrap around anti-meridian
+                final int wrapped = ((column % gridColumns) + gridColumns) % gridColumns;
+                final int position = find(key(row, wrapped));
+                if (position < 0) {
+                    continue;
+                }
+                for (int i = cellStarts[position], end = i + cellCounts[position]; i < end; ++i) {
+                    final int slot = cellSlots[i];
+                    if (!isRemoved(slot)) {
+                        result = Math.min(result, boundaryDistance(slot, lat, lng));
+                    }
+                }
+            }
+        }
+        for (int slot : large) {
+            if (!isRemoved(slot)) {
+                result = Math.min(result, boundaryDistance(slot, lat, lng));
+            }
+        }
+        return addedBoundaryDistance(lat, lng, result);
+    }
+
+    /**
+     * Checks whether fingerprints are matched by both scans the same way. Only access points
+     * fingerprints refer to are compared, and only by fingerprint thresholds their signal
+     * levels pass, so signal noise of other access points doesn't matter.
+     * @param first visible WiFi access points
+     * @param second another visible WiFi access points
+     * @return {@code true} if fingerprint matching gives the same result for both scans.
+     */
+    public boolean isSameFingerprintLevels(List<WifiInfoProvider.AccessPoint> first,
+                                           List<WifiInfoProvider.AccessPoint> second) {
+        if (first == second) {
+            return true;
+        }
+        for (int i = 0, size = added.size(), base = columns.size(); i < size; ++i) {
+            final WifiFingerprint fingerprint = added.get(i).getFingerprint();
+            if (fingerprint != null && !isRemoved(base + i)
+                    && fingerprint.matches(first) != fingerprint.matches(second)) {
+                return false;
+            }
+        }
+        return columns.fingerprintIndex.isEmpty()
+                || hasSameLevels(first, second) && hasSameLevels(second, first);
+    }
+
+    /**
+     * @param index inbound index, less than value returned by {@link #evaluate}
+     * @return slot of inbound geofence.
+     */
+    public int getInbound(int index) {
+        if (index < 0 || index >= inboundCount) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + inboundCount);
+        }
+        return inbounds[index];
+    }
+
+    /**
+     * @return number of geofences distance checked by last evaluation.
+     */
+    public int getCandidateCount() {
+        return candidateCount;
+    }
+
+    /**
+     * @return number of inbound geofences matched by SSID at last evaluation. The rest are
+     * matched by fingerprint or distance.
+     */
+    public int getSsidMatchCount() {
+        return ssidMatchCount;
+    }
+
+    /**
+     * @return number of inbound geofences matched by WiFi fingerprint at last evaluation.
+     */
+    public int getFingerprintMatchCount() {
+        return fingerprintMatchCount;
+    }
+
+    /**
+     * @param slot geofence slot
+     * @return geofence at given slot.
+     */
+    public Geofence getGeofence(int slot) {
+        final int size = columns.size();
+        return slot < size ? columns.getGeofence(slot) : added.get(slot - size);
+    }
+
+    /**
+     * @param uuid geofence UUID
+     * @return slot of geofence or -1 if there is no such geofence.
+     */
+    public int indexOf(String uuid) {
+        final Integer slot = changedSlots.get(uuid);
+        return slot != null ? slot : columns.indexOf(uuid);
+    }
+
+    /**
+     * @return actual geofences, including changes applied in place.
+     */
+    public List<Geofence> getGeofences() {
+        final List<Geofence> result = new ArrayList<>(size());
+        for (int slot = 0, count = slotCount(); slot < count; ++slot) {
+            if (!isRemoved(slot)) {
+                result.add(getGeofence(slot));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return geofences snapshot grid was built on. Changes applied in place aren't there.
+     */
+    public GeofenceColumns getColumns() {
+        return columns;
+    }
+
+    /**
+     * @return number of geofences.
+     */
+    public int size() {
+        return slotCount() - removedCount;
+    }
+
+    private boolean remove(String uuid) {
+        final int slot = indexOf(uuid);
+        if (slot < 0) {
+            return false;
+        }
+        removed[slot >>> 6] |= 1L << slot;
+        ++removedCount;
+        changedSlots.put(uuid, -1);
+        return true;
+    }
+
+    private void add(Geofence geofence) {
+        final int slot = slotCount();
+        added.add(geofence);
+        addedBoxes.add(BoundingBox.of(geofence));
+        changedSlots.put(geofence.getUuid(), slot);
+        if ((slot >>> 6) >= removed.length) {
+            removed = Arrays.copyOf(removed, Math.max(removed.length * 2, (slot >>> 6) + 1));
+        }
+    }
+
+    private boolean isRemoved(int slot) {
+        return (removed[slot >>> 6] & (1L << slot)) != 0;
+    }
+
+    private int slotCount() {
+        return columns.size() + added.size();
+    }
+
+    private void allocate(int size) {
+        inbounds = new int[size];
+        ssidSlots = new int[size];
+        accessPointMatches = new int[size];
+        fingerprintSlots = new int[size];
+        marks = new long[(size + 63) >>> 6];
+    }
+
+    private double addedBoundaryDistance(double lat, double lng, double limit) {
+        double result = limit;
+        for (int i = 0, size = added.size(), base = columns.size(); i < size; ++i) {
+            if (!isRemoved(base + i)) {
+                final Geofence geofence = added.get(i);
+                final LocationProvider.Location point = geofence.getPoint();
+                result = Math.min(result, boundaryDistance(point.getLat(), point.getLng(),
+                        geofence.getRadius(), geofence.getPolygon(), lat, lng));
+            }
+        }
+        return result;
+    }
+
+    private double boundaryDistance(int slot, double lat, double lng) {
+        return boundaryDistance(columns.lats[slot], columns.lngs[slot], columns.radiuses[slot],
+                columns.polygons[slot], lat, lng);
+    }
+
+    private static double boundaryDistance(double centerLat, double centerLng, double radius,
+                                           GeofencePolygon polygon, double lat, double lng) {
+        if (polygon != null) {
+            return polygon.boundaryDistance(lat, lng);
+        }
+        final double distance = DistanceEngine.haversine(centerLat, centerLng, lat, lng);
+        // take estimate error into account, so boundary is never closer than returned
+        final double min = distance * (1.0 - DistanceEngine.ESTIMATE_ERROR);
+        final double max = distance * (1.0 + DistanceEngine.ESTIMATE_ERROR);
+        if (min > radius) {
+            return min - radius;
+        }
+        if (max < radius) {
+            return radius - max;
+        }
+        return 0;
+    }
+
+    private void check(int[] candidates, int from, int to, double lat, double lng) {
+        final double[] lats = columns.lats;
+        final double[] lngs = columns.lngs;
+        final float[] radiuses = columns.radiuses;
+        final GeofencePolygon[] polygons = columns.polygons;
+        for (int i = from; i < to; ++i) {
+            final int slot = candidates[i];
+            if ((marks[slot >>> 6] & (1L << slot)) != 0 || isRemoved(slot)) {
+                continue;
+            }
+            if (lat < minLats[slot] || lat > maxLats[slot]
+                    || lng < minLngs[slot] || lng > maxLngs[slot]) {
+                continue;
+            }
+            ++candidateCount;
+            final GeofencePolygon polygon = polygons[slot];
+            if (polygon != null
+                    ? polygon.contains(lat, lng)
+                    : engine.isWithin(lats[slot], lngs[slot], lat, lng, radiuses[slot])) {
+                mark(slot);
+            }
+        }
+    }
+
+    private void checkAdded(double lat, double lng) {
+        for (int i = 0, size = added.size(), base = columns.size(); i < size; ++i) {
+            final int slot = base + i;
+            if ((marks[slot >>> 6] & (1L << slot)) != 0 || isRemoved(slot)
+                    || !addedBoxes.get(i).contains(lat, lng)) {
+                continue;
+            }
+            ++candidateCount;
+            final Geofence geofence = added.get(i);
+            final GeofencePolygon polygon = geofence.getPolygon();
+            final LocationProvider.Location point = geofence.getPoint();
+            if (polygon != null
+                    ? polygon.contains(lat, lng)
+                    : engine.isWithin(point.getLat(), point.getLng(), lat, lng,
+                            geofence.getRadius())) {
+                mark(slot);
+            }
+        }
+    }
+
+    private void clearInbounds() {
+        for (int i = 0; i < inboundCount; ++i) {
+            final int slot = inbounds[i];
+            marks[slot >>> 6] &= ~(1L << slot);
+        }
+        inboundCount = 0;
+    }
+
+    private void mark(int slot) {
+        marks[slot >>> 6] |= 1L << slot;
+        inbounds[inboundCount++] = slot;
+    }
+
+    private void matchFingerprints(List<WifiInfoProvider.AccessPoint> accessPoints) {
+        if (accessPoints.isEmpty()) {
+            return;
+        }
+        for (int i = 0, size = added.size(), base = columns.size(); i < size; ++i) {
+            final int slot = base + i;
+            final WifiFingerprint fingerprint = added.get(i).getFingerprint();
+            if (fingerprint != null && !isRemoved(slot)
+                    && (marks[slot >>> 6] & (1L << slot)) == 0
+                    && fingerprint.matches(accessPoints)) {
+                mark(slot);
+            }
+        }
+        final WifiFingerprintIndex index = columns.fingerprintIndex;
+        if (index.isEmpty()) {
+            return;
+        }
+        int count = 0;
+        for (int i = 0, size = accessPoints.size(); i < size; ++i) {
+            final WifiInfoProvider.AccessPoint accessPoint = accessPoints.get(i);
+            final int position = index.find(accessPoint.getKey());
+            if (position < 0) {
+                continue;
+            }
+            final int start = index.getStart(position);
+            for (int entry = start, end = start + index.getCount(position); entry < end; ++entry) {
+                if (accessPoint.getRssi() < index.getMinRssi(entry)) {
+                    continue;
+                }
+                final int slot = index.getSlot(entry);
+                if (accessPointMatches[slot]++ == 0) {
+                    fingerprintSlots[count++] = slot;
+                }
+            }
+        }
+        for (int i = 0; i < count; ++i) {
+            final int slot = fingerprintSlots[i];
+            if (accessPointMatches[slot] >= index.minMatches[slot]
+                    && (marks[slot >>> 6] & (1L << slot)) == 0 && !isRemoved(slot)) {
+                mark(slot);
+            }
+            accessPointMatches[slot] = 0;
+        }
+    }
+
+    /**
+     * @return {@code true} if every access point of first scan passes as many fingerprint
+     * thresholds as in second scan.
+     */
+    private boolean hasSameLevels(List<WifiInfoProvider.AccessPoint> first,
+                                  List<WifiInfoProvider.AccessPoint> second) {
+        final WifiFingerprintIndex index = columns.fingerprintIndex;
+        for (int i = 0, size = first.size(); i < size; ++i) {
+            final WifiInfoProvider.AccessPoint accessPoint = first.get(i);
+            final int position = index.find(accessPoint.getKey());
+            if (position < 0) {
+                continue;
+            }
+            int rssi = Integer.MIN_VALUE;
+            for (int j = 0, count = second.size(); j < count; ++j) {
+                if (second.get(j).getKey() == accessPoint.getKey()) {
+                    rssi = second.get(j).getRssi();
+                    break;
+                }
+            }
+            if (passed(index, position, accessPoint.getRssi()) != passed(index, position, rssi)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return number of fingerprint thresholds signal level passes.
+     */
+    private int passed(WifiFingerprintIndex index, int position, int rssi) {
+        int result = 0;
+        final int start = index.getStart(position);
+        for (int entry = start, end = start + index.getCount(position); entry < end; ++entry) {
+            if (rssi >= index.getMinRssi(entry) && !isRemoved(index.getSlot(entry))) {
+                ++result;
+            }
+        }
+        return result;
+    }
+
+    private void matchSsid(String ssid) {
+        if (ssid.equals(lastSsid)) {
+            return;
+        }
+        for (int i = 0, size = matchedSsidIds.size(); i < size; ++i) {
+            ssidMatches[matchedSsidIds.get(i)] = false;
+        }
+        matchedSsidIds.clear();
+        columns.ssidMatcher.match(ssid, matchedSsidIds);
+        for (int i = 0, size = matchedSsidIds.size(); i < size; ++i) {
+            ssidMatches[matchedSsidIds.get(i)] = true;
+        }
+        ssidCount = 0;
+        if (!matchedSsidIds.isEmpty()) {
+            final int[] ssidIds = columns.ssidIds;
+            for (int slot = 0, size = ssidIds.length; slot < size; ++slot) {
+                if (ssidMatches[ssidIds[slot]] && !isRemoved(slot)) {
+                    ssidSlots[ssidCount++] = slot;
+                }
+            }
+        }
+        for (int i = 0, size = added.size(), base = columns.size(); i < size; ++i) {
+            if (!isRemoved(base + i) && GeofenceUtils.isSsidMatches(added.get(i), ssid)) {
+                ssidSlots[ssidCount++] = base + i;
+            }
+        }
+        lastSsid = ssid;
+    }
+
+    private int find(long key) {
+        int position = position(key);
+        while (cellKeys[position] != EMPTY) {
+            if (cellKeys[position] == key) {
+                return position;
+            }
+            position = (position + 1) & (cellKeys.length - 1);
+        }
+        return -1;
+    }
+
+    private int position(long key) {
+        // spread bits as neighbour cells have sequential keys
+        final long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash >>> 32) & (cellKeys.length - 1);
+    }
+
+    private int row(double lat) {
+        return (int) Math.floor((lat + 90.0) / cellSize);
+    }
+
+    private int column(double lng) {
+        return (int) Math.floor((lng + 180.0) / cellSize);
+    }
+
+    private long key(int row, int column) {
+        return (long) row * gridColumns + column;
+    }
+
+    private static int[] toArray(List<Integer> list) {
+        final int[] result = new int[list.size()];
+        for (int i = 0; i < result.length; ++i) {
+            result[i] = list.get(i);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,199 @@
+package com.github.stevenrudenko.geofence.core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Compact binary geofences file format. Used to import and export geofences in bulk.
+ * Geofences are written one by one, so file can be read lazily without knowing records count:
+ * <pre>
+ * file   := MAGIC VERSION record* END
+ * record := flags uuid lat lng radius ssid polygon? fingerprint?
+ * </pre>
+ * UUIDs are stored as 16 bytes when they are standard ones and as UTF string otherwise.
+ * Polygon rings follow record of polygon geofence, then WiFi fingerprint follows if geofence
+ * has one. Version 1 files have no polygons, version 2 files have no fingerprints.
+ */
+public final class GeofenceFile {
+    /** File signature. */
+    static final int MAGIC = 0x47454F46; // "GEOF"
+    /** File format version. */
+    static final int VERSION = 3;
+
+    /** Marks end of records. */
+    private static final int FLAG_END = 0;
+    /** Marks record. */
+    private static final int FLAG_RECORD = 1;
+    /** Marks record which UUID is stored as 16 bytes. */
+    private static final int FLAG_BINARY_UUID = 1 << 1;
+    /** Marks record which is followed by polygon. */
+    private static final int FLAG_POLYGON = 1 << 2;
+    /** Marks record which is followed by WiFi fingerprint. */
+    private static final int FLAG_FINGERPRINT = 1 << 3;
+
+    private GeofenceFile() {
+        // hide
+    }
+
+    /**
+     * Writes geofences to stream. Stream is not closed.
+     * @param out stream to write to
+     * @param geofences geofences to write
+     * @return number of written geofences.
+     * @throws IOException if stream can't be written
+     */
+    public static int write(OutputStream out, Iterable<Geofence> geofences) throws IOException {
+        final DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+        data.writeInt(MAGIC);
+        data.writeByte(VERSION);
+        int count = 0;
+        for (Geofence geofence : geofences) {
+            final UUID uuid = parseUuid(geofence.getUuid());
+            final int extras = (geofence.getPolygon() != null ? FLAG_POLYGON : 0)
+                    | (geofence.getFingerprint() != null ? FLAG_FINGERPRINT : 0);
+            if (uuid != null) {
+                data.writeByte(FLAG_RECORD | FLAG_BINARY_UUID | extras);
+                data.writeLong(uuid.getMostSignificantBits());
+                data.writeLong(uuid.getLeastSignificantBits());
+            } else {
+                data.writeByte(FLAG_RECORD | extras);
+                data.writeUTF(geofence.getUuid());
+            }
+            data.writeDouble(geofence.getPoint().getLat());
+            data.writeDouble(geofence.getPoint().getLng());
+            data.writeInt(geofence.getRadius());
+            data.writeUTF(geofence.getSsid());
+            if (geofence.getPolygon() != null) {
+                geofence.getPolygon().write(data);
+            }
+            if (geofence.getFingerprint() != null) {
+                geofence.getFingerprint().write(data);
+            }
+            ++count;
+        }
+        data.writeByte(FLAG_END);
+        data.flush();
+        return count;
+    }
+
+    /**
+     * Opens geofences stream for reading.
+     * @param in stream to read from
+     * @return geofences reader.
+     * @throws IOException if stream has wrong format
+     */
+    public static Reader open(InputStream in) throws IOException {
+        return new Reader(in);
+    }
+
+    /**
+     * Streams geofences into storage in batches. Only one batch is kept in memory.
+     * @param in stream to read from
+     * @param storage storage to import to
+     * @param batchSize number of geofences in one storage batch
+     * @return number of imported geofences.
+     * @throws IOException if stream can't be read
+     */
+    public static int importTo(InputStream in, GeofenceStorage storage, int batchSize)
+            throws IOException {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Illegal batch size: " + batchSize);
+        }
+        int count = 0;
+        try (Reader reader = open(in)) {
+            final List<Geofence> batch = new ArrayList<>(batchSize);
+            Geofence geofence;
+            while ((geofence = reader.next()) != null) {
+                batch.add(geofence);
+                if (batch.size() == batchSize) {
+                    storage.addAll(batch);
+                    count += batch.size();
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) {
+                storage.addAll(batch);
+                count += batch.size();
+            }
+        }
+        return count;
+    }
+
+    private static UUID parseUuid(String uuid) {
+        try {
+            final UUID result = UUID.fromString(uuid);
+            // make sure it is restored to the same string
+            return result.toString().equals(uuid) ? result : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /** Reads geofences one by one. */
+    public static class Reader implements Closeable {
+        /** Source stream. */
+        private final DataInputStream data;
+        /** Indicates whether end of records is reached. */
+        private boolean finished;
+
+        private Reader(InputStream in) throws IOException {
+            data = new DataInputStream(new BufferedInputStream(in));
+            final int magic = data.readInt();
+            if (magic != MAGIC) {
+                throw new IOException("Not a geofences file");
+            }
+            final int version = data.readUnsignedByte();
+            if (version < 1 || version > VERSION) {
+                throw new IOException("Unsupported geofences file version: " + version);
+            }
+        }
+
+        /**
+         * @return next geofence or {@code null} if there are no more geofences.
+         * @throws IOException if stream can't be read
+         */
+        public Geofence next() throws IOException {
+            if (finished) {
+                return null;
+            }
+            final int flags = data.readUnsignedByte();
+            if (flags == FLAG_END) {
+                finished = true;
+                return null;
+            }
+            final String uuid;
+            if ((flags & FLAG_BINARY_UUID) != 0) {
+                uuid = new UUID(data.readLong(), data.readLong()).toString();
+            } else {
+                uuid = data.readUTF();
+            }
+            final double lat = data.readDouble();
+            final double lng = data.readDouble();
+            final int radius = data.readInt();
+            final String ssid = data.readUTF();
+            final GeofencePolygon polygon =
+                    (flags & FLAG_POLYGON) != 0 ? GeofencePolygon.read(data) : null;
+            final WifiFingerprint fingerprint =
+                    (flags & FLAG_FINGERPRINT) != 0 ? WifiFingerprint.read(data) : null;
+            if (polygon != null) {
+                return new Geofence(uuid, polygon, ssid, fingerprint);
+            }
+            return new Geofence(uuid, new LocationProvider.Location(lat, lng), radius, ssid,
+                    fingerprint);
+        }
+
+        @Override
+        public void close() throws IOException {
+            data.close();
+        }
+    }
+}
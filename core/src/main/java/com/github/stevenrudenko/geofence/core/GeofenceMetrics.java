@@ -0,0 +1,53 @@
+package com.github.stevenrudenko.geofence.core;
+
+/**
+ * Receives {@link GeofenceModule} hot path measurements. Called from module worker threads,
+ * so implementation should be thread safe and cheap.
+ */
+public interface GeofenceMetrics {
+    /** Metrics which ignore everything. */
+    GeofenceMetrics NONE = new GeofenceMetrics() {
+        @Override
+        public void onEvent(long lag) {
+        }
+
+        @Override
+        public void onCheck(long duration) {
+        }
+
+        @Override
+        public void onEvaluation(long duration, int evaluated, int ssidMatches,
+                                 int distanceMatches) {
+        }
+
+        @Override
+        public void onSkipped() {
+        }
+    };
+
+    /**
+     * Called when location or WiFi update is taken to check.
+     * @param lag time in milliseconds passed since location fix or {@code -1} if unknown
+     */
+    void onEvent(long lag);
+
+    /**
+     * Called when check is done.
+     * @param duration check duration in nanoseconds
+     */
+    void onCheck(long duration);
+
+    /**
+     * Called when geofences are evaluated against location and SSID.
+     * @param duration evaluation duration in nanoseconds
+     * @param evaluated number of geofences distance was checked for
+     * @param ssidMatches number of geofences matched by WiFi: SSID or fingerprint
+     * @param distanceMatches number of geofences matched by distance
+     */
+    void onEvaluation(long duration, int evaluated, int ssidMatches, int distanceMatches);
+
+    /**
+     * Called when evaluation is skipped as device couldn't cross any geofence boundary.
+     */
+    void onSkipped();
+}
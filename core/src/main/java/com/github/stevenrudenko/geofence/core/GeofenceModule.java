@@ -1,18 +1,42 @@
 package com.github.stevenrudenko.geofence.core;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
+import io.reactivex.BackpressureStrategy;
+import io.reactivex.Flowable;
 import io.reactivex.Observable;
 import io.reactivex.Scheduler;
 import io.reactivex.disposables.CompositeDisposable;
 import io.reactivex.schedulers.Schedulers;
 import io.reactivex.subjects.BehaviorSubject;
+import io.reactivex.subjects.PublishSubject;
 
 /**
  * Geofence module. Used to notify whether device is inside any geofence.
  */
 public class GeofenceModule {
+    /**
+     * Default time device should stay inside of geofence to get dwell transition.
+     */
+    public static final long DEFAULT_DWELL_TIME = TimeUnit.MINUTES.toMillis(5);
+    /**
+     * Marks request to check last known state again.
+     */
+    private static final GeofenceCheck RECHECK = new GeofenceCheck(null, null);
+    /**
+     * Time in milliseconds geofences should stay unchanged for to be written to snapshot.
+     */
+    private static final long SNAPSHOT_DELAY = TimeUnit.SECONDS.toMillis(5);
+
     /**
      * Used to get location updates from.
      */
@@ -25,6 +49,48 @@ public class GeofenceModule {
      * Available geofences collection.
      */
     private final GeofenceStorage storage;
+    /**
+     * Available geofences mapped by UUID. Kept in sync with {@link #storage} changes, guarded
+     * by itself.
+     */
+    private final Map<String, Geofence> geofences = new LinkedHashMap<>();
+    /**
+     * Indicates whether {@link #evaluator} should be rebuilt from {@link #geofences}. Guarded
+     * by {@link #geofences}.
+     */
+    private boolean stale;
+    /**
+     * Storage changes to apply to {@link #evaluator} in place. Guarded by {@link #geofences}.
+     */
+    private final List<GeofenceChange> pending = new ArrayList<>();
+    /**
+     * Evaluates checks over columnar snapshot of {@link #geofences}. Storage changes made since
+     * previous check are applied in place, it is rebuilt only on reset or once too many
+     * changes are applied.
+     */
+    private volatile GeofenceEvaluator evaluator =
+            new GeofenceEvaluator(Collections.<Geofence>emptyList());
+    /**
+     * Skips evaluation of locations which can't change inbound geofences. Guards evaluation
+     * state.
+     */
+    private final MotionScheduler scheduler = new MotionScheduler();
+    /**
+     * Last evaluated inbound geofences.
+     */
+    private ArrayList<Geofence> lastInbounds;
+    /**
+     * SSID {@link #lastInbounds} were evaluated with.
+     */
+    private String lastSsid;
+    /**
+     * Visible access points {@link #lastInbounds} were evaluated with.
+     */
+    private List<WifiInfoProvider.AccessPoint> lastAccessPoints;
+    /**
+     * Location updates policy last requested from {@link #locationProvider}.
+     */
+    private LocationProvider.Policy policy;
     /**
      * Geofence calculation subscription.
      */
@@ -38,9 +104,68 @@ public class GeofenceModule {
      */
     private final BehaviorSubject<ArrayList<Geofence>> inbouncGeofences = BehaviorSubject.create();
     /**
-     * Check geofences data queue.
+     * Requests to check last known location and WiFi state again. Used on storage changes.
+     */
+    private final PublishSubject<GeofenceCheck> rechecks = PublishSubject.create();
+    /**
+     * Last known location and WiFi state.
+     */
+    private volatile GeofenceCheck lastCheck;
+    /**
+     * Geofence transitions observable.
+     */
+    private final PublishSubject<GeofenceTransition> transitions = PublishSubject.create();
+    /**
+     * Inbound geofences state mapped by geofence UUID.
+     */
+    private final Map<String, InboundState> inboundStates = new HashMap<>();
+    /**
+     * Used to find geofences device left.
+     */
+    private long checkCount;
+    /**
+     * Time in milliseconds device should stay inside of geofence to get dwell transition.
+     */
+    private long dwellTime = DEFAULT_DWELL_TIME;
+    /**
+     * Distance in meters location accuracy circle should clear geofence boundary by.
+     */
+    private float hysteresis;
+    /**
+     * Number of checks new state should hold for to get transition.
+     */
+    private int debounceFixes = 1;
+    /**
+     * Receives hot path measurements.
+     */
+    private volatile GeofenceMetrics metrics = GeofenceMetrics.NONE;
+    /**
+     * Time in milliseconds updates are coalesced for before check. Zero to check as soon as
+     * worker is free.
+     */
+    private long coalescingWindow;
+    /**
+     * Snapshot file of compiled geofences or {@code null} if snapshot is not used.
+     */
+    private File snapshot;
+    /**
+     * Indicates whether {@link #evaluator} is restored from snapshot and wasn't reconciled with
+     * storage yet. Guarded by {@link #geofences}.
+     */
+    private volatile boolean restored;
+    /**
+     * Indicates whether storage reported its content. Snapshot isn't restored after that.
+     * Guarded by {@link #geofences}.
      */
-    private final BehaviorSubject<GeofenceCheck> checkQueue = BehaviorSubject.create();
+    private boolean loaded;
+    /**
+     * Evaluators to write to {@link #snapshot}.
+     */
+    private final PublishSubject<GeofenceEvaluator> snapshots = PublishSubject.create();
+    /**
+     * Geofences storage errors.
+     */
+    private final PublishSubject<Throwable> errors = PublishSubject.create();
 
     public GeofenceModule(LocationProvider locationProvider,
                           WifiInfoProvider wifiInfoProvider,
@@ -68,49 +193,497 @@ public class GeofenceModule {
         return inbouncGeofences;
     }
 
+    /**
+     * Provides geofence transitions. Unlike {@link #getInboundGeofences()} it emits only when
+     * device state relative to geofence changes.
+     * @return geofence transitions observable.
+     */
+    public Observable<GeofenceTransition> getTransitions() {
+        if (combinedSubscription.size() == 0) {
+            throw new IllegalStateException(GeofenceModule.class.getSimpleName() + " should be started first");
+        }
+        return transitions;
+    }
+
+    /**
+     * Provides geofences storage and check errors. Module keeps checking geofences it already
+     * has after storage errors, checks stop after check error till module is restarted.
+     * @return errors observable.
+     */
+    public Observable<Throwable> getErrors() {
+        return errors;
+    }
+
+    /**
+     * Sets time device should stay inside of geofence to get {@link GeofenceTransition.Type#DWELL}
+     * transition. Dwell time is checked with every geofence check.
+     * @param dwellTime dwell time in milliseconds
+     */
+    public void setDwellTime(long dwellTime) {
+        this.dwellTime = dwellTime;
+    }
+
+    /**
+     * Sets distance location accuracy circle should clear geofence boundary by to get
+     * transition at once. Otherwise transition is emitted after {@link #setDebounceFixes(int)}
+     * checks.
+     * @param hysteresis distance in meters
+     */
+    public void setHysteresis(float hysteresis) {
+        this.hysteresis = hysteresis;
+    }
+
+    /**
+     * Sets number of checks new state should hold for to get transition when location accuracy
+     * circle doesn't clear geofence boundary. Default is {@code 1}: every change is emitted.
+     * @param debounceFixes number of checks
+     */
+    public void setDebounceFixes(int debounceFixes) {
+        if (debounceFixes < 1) {
+            throw new IllegalArgumentException("Illegal number of fixes: " + debounceFixes);
+        }
+        this.debounceFixes = debounceFixes;
+    }
+
+    /**
+     * Sets time updates are coalesced for. Only the latest location and WiFi state within
+     * window is checked. Updates which come while check is running are coalesced anyway.
+     * Takes effect on next {@link #start()}.
+     * @param coalescingWindow time in milliseconds or {@code 0} to check as soon as possible
+     */
+    public void setCoalescingWindow(long coalescingWindow) {
+        if (coalescingWindow < 0) {
+            throw new IllegalArgumentException("Illegal coalescing window: " + coalescingWindow);
+        }
+        this.coalescingWindow = coalescingWindow;
+    }
+
+    /**
+     * Sets file to keep snapshot of compiled geofences in. Snapshot is read on
+     * {@link #start()} by module worker, so checks are answered before storage is loaded. Once
+     * storage reports its content it replaces restored geofences, even if storage is empty.
+     * Storage which loads geofences lazily (like {@link PagedGeofenceStorage}) reports content
+     * once it is loaded. Snapshot is rewritten in background whenever geofences settle. Takes effect on next
+     * {@link #start()}.
+     * @param snapshot snapshot file or {@code null} to not use snapshot
+     */
+    public void setSnapshot(File snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    /**
+     * Sets metrics to report checks measurements to.
+     * @param metrics metrics or {@code null} to stop reporting
+     */
+    public void setMetrics(GeofenceMetrics metrics) {
+        this.metrics = metrics == null ? GeofenceMetrics.NONE : metrics;
+    }
+
+    /**
+     * @return evaluator over snapshot of currently available geofences. Used to evaluate many
+     * locations at once.
+     */
+    public GeofenceBatchEvaluator createBatchEvaluator() {
+        final GeofenceEvaluator evaluator = getEvaluator();
+        synchronized (evaluator) {
+            return new GeofenceBatchEvaluator(evaluator);
+        }
+    }
+
+    /**
+     * @return allocation free evaluator over snapshot of currently available geofences.
+     */
+    public GeofenceEvaluator createEvaluator() {
+        final GeofenceEvaluator evaluator = getEvaluator();
+        synchronized (evaluator) {
+            return new GeofenceEvaluator(evaluator);
+        }
+    }
+
     public void start() {
+        if (snapshot != null) {
+            final File file = snapshot;
+            // snapshot file isn't read on caller thread, which is main one on Android
+            combinedSubscription.add(workOn.scheduleDirect(() -> restoreSnapshot(file)));
+            combinedSubscription.add(snapshots
+                    .debounce(SNAPSHOT_DELAY, TimeUnit.MILLISECONDS, Schedulers.io())
+                    .subscribe(evaluator -> saveSnapshot(file)));
+        }
         locationProvider.start();
         wifiInfoProvider.start();
 
-        Observable.combineLatest(
+        final Observable<GeofenceCheck> updates = Observable.combineLatest(
                 locationProvider.getLocationUpdates(),
                 wifiInfoProvider.getWiFiInfoUpdates(),
                 GeofenceCheck::new)
-                .subscribeOn(workOn)
-                .subscribe(checkQueue);
-
-        combinedSubscription.add(checkQueue.map(this::check).subscribe());
+                .doOnNext(check -> lastCheck = check);
+        Observable<GeofenceCheck> checks = Observable.merge(updates, rechecks);
+        if (coalescingWindow > 0) {
+            checks = checks.sample(coalescingWindow, TimeUnit.MILLISECONDS, workOn, true);
+        }
+        // single worker requests one check at a time, so only the latest update waits for it
+        final Flowable<GeofenceCheck> queue = checks
+                .toFlowable(BackpressureStrategy.LATEST)
+                .observeOn(workOn, false, 1);
+        // broken check is reported instead of crashing worker thread
+        combinedSubscription.add(queue.subscribe(this::checkUpdate, errors::onNext));
         combinedSubscription.add(
-                storage.getGeofenceUpdates().subscribe(geofences -> check(checkQueue.getValue()))
+                storage.getGeofenceChanges().subscribe(change -> {
+                    try {
+                        applyChange(change);
+                    } catch (RuntimeException e) {
+                        // broken change shouldn't stop following ones
+                        errors.onNext(e);
+                    }
+                }, errors::onNext)
         );
     }
 
+    /**
+     * Applies storage change to available geofences. Evaluator is updated by next check, so
+     * burst of changes is applied at once.
+     * @param change storage change
+     */
+    private void applyChange(GeofenceChange change) {
+        synchronized (geofences) {
+            loaded = true;
+            if (!change.applyTo(geofences) && !restored) {
+                return;
+            }
+            if (restored || change.isReset()) {
+                // restored evaluator isn't built from geofences, so it can't be patched
+                stale = true;
+                pending.clear();
+            } else if (!stale) {
+                pending.add(change);
+            }
+            restored = false;
+        }
+        if (lastCheck != null) {
+            rechecks.onNext(RECHECK);
+        }
+    }
+
+    /**
+     * @return evaluator over actual geofences. Storage changes are applied to it in place,
+     * it is rebuilt on reset or once too many changes are applied.
+     */
+    private GeofenceEvaluator getEvaluator() {
+        GeofenceEvaluator evaluator = this.evaluator;
+        synchronized (geofences) {
+            if (!stale && pending.isEmpty()) {
+                return evaluator;
+            }
+            int count = evaluator.getChangeCount();
+            for (GeofenceChange change : pending) {
+                count += change.size();
+            }
+            if (stale || count > GeofenceEvaluator.MAX_CHANGES) {
+                evaluator = new GeofenceEvaluator(new GeofenceColumns(geofences.values()));
+            }
+            synchronized (scheduler) {
+                synchronized (evaluator) {
+                    if (evaluator == this.evaluator) {
+                        for (GeofenceChange change : pending) {
+                            evaluator.apply(change);
+                        }
+                    }
+                }
+                this.evaluator = evaluator;
+                scheduler.invalidate();
+            }
+            stale = false;
+            pending.clear();
+        }
+        snapshots.onNext(evaluator);
+        return evaluator;
+    }
+
     public void stop() {
         if (combinedSubscription != null) {
             combinedSubscription.clear();
         }
+        synchronized (inboundStates) {
+            inboundStates.clear();
+        }
+        lastCheck = null;
+        synchronized (scheduler) {
+            scheduler.invalidate();
+            lastInbounds = null;
+            policy = null;
+        }
         locationProvider.stop();
         wifiInfoProvider.stop();
     }
 
+    /**
+     * Replaces evaluator with one restored from snapshot unless storage already reported its
+     * content. Missing or broken snapshot is ignored, storage geofences are waited for then.
+     * @param file snapshot file
+     */
+    private void restoreSnapshot(File file) {
+        if (!file.isFile()) {
+            return;
+        }
+        final GeofenceEvaluator evaluator;
+        try {
+            evaluator = GeofenceSnapshot.read(file);
+        } catch (IOException e) {
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+            return;
+        }
+        synchronized (geofences) {
+            if (loaded) {
+                return;
+            }
+            stale = false;
+            pending.clear();
+            restored = true;
+            synchronized (scheduler) {
+                this.evaluator = evaluator;
+                scheduler.invalidate();
+            }
+        }
+        if (lastCheck != null) {
+            rechecks.onNext(RECHECK);
+        }
+    }
+
+    private void saveSnapshot(File file) {
+        final GeofenceEvaluator evaluator;
+        // evaluator is changed in place under geofences lock, so copy is taken under it too
+        synchronized (geofences) {
+            evaluator = new GeofenceEvaluator(this.evaluator);
+        }
+        try {
+            GeofenceSnapshot.write(file, evaluator);
+        } catch (IOException e) {
+            // snapshot is just a cache, it is restored from storage next time
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+        }
+    }
+
+    /**
+     * Checks location or WiFi update.
+     */
+    private ArrayList<Geofence> checkUpdate(GeofenceCheck check) {
+        if (check == RECHECK) {
+            return check(lastCheck);
+        }
+        final long time = check.location.getTime();
+        metrics.onEvent(time > 0 ? workOn.now(TimeUnit.MILLISECONDS) - time : -1);
+        return check(check);
+    }
+
     private ArrayList<Geofence> check(GeofenceCheck check) {
         // we didn't have enough info to determine geofence inbounds
         if (check == null) {
             return new ArrayList<>(0);
         }
-        final List<Geofence> geofences = storage.getGeofences();
-        final ArrayList<Geofence> result = new ArrayList<>();
-        for (Geofence geofence : geofences) {
-            final boolean inbound = GeofenceUtils.isInsideGeofence(
-                    geofence, check.location, check.wifiInfo.getSsid());
-            if (inbound) {
-                result.add(geofence);
-            }
-        }
+        final long start = System.nanoTime();
+        // rebuilt before scheduler is locked, so skipped evaluation can't miss storage changes
+        getEvaluator();
+        final ArrayList<Geofence> result = evaluate(check.location, check.wifiInfo);
         inbouncGeofences.onNext(result);
+        updateTransitions(result, check.location, check.wifiInfo);
+        updatePolicy();
+        metrics.onCheck(System.nanoTime() - start);
         return result;
     }
 
+    /**
+     * Evaluates inbound geofences unless device couldn't cross any geofence boundary since last
+     * evaluation.
+     * @param location device location
+     * @param wifiInfo device WiFi state
+     * @return inbound geofences.
+     */
+    private ArrayList<Geofence> evaluate(LocationProvider.Location location,
+                                         WifiInfoProvider.WifiInfo wifiInfo) {
+        final String ssid = wifiInfo.getSsid();
+        final List<WifiInfoProvider.AccessPoint> accessPoints = wifiInfo.getAccessPoints();
+        // batched locations are delivered at once, so their own time is preferred
+        final long time = location.getTime() > 0
+                ? location.getTime() : workOn.now(TimeUnit.MILLISECONDS);
+        synchronized (scheduler) {
+            final boolean moved = scheduler.onLocation(location.getLat(), location.getLng(), time);
+            if (!moved && lastInbounds != null
+                    && (ssid == null ? lastSsid == null : ssid.equals(lastSsid))
+                    && evaluator.isSameFingerprintLevels(accessPoints, lastAccessPoints)) {
+                metrics.onSkipped();
+                return new ArrayList<>(lastInbounds);
+            }
+            final ArrayList<Geofence> result = findInbounds(location, ssid, accessPoints);
+            boolean recognized = false;
+            for (int i = 0, size = result.size(); i < size && !recognized; ++i) {
+                recognized = GeofenceUtils.isFingerprintMatches(result.get(i), accessPoints);
+            }
+            scheduler.onEvaluated(location.getLat(), location.getLng(),
+                    evaluator.boundaryDistance(location.getLat(), location.getLng(),
+                            MotionScheduler.SEARCH_DISTANCE), recognized);
+            lastInbounds = new ArrayList<>(result);
+            lastSsid = ssid;
+            lastAccessPoints = accessPoints;
+            return result;
+        }
+    }
+
+    /**
+     * Requests location updates as often and as accurate as distance to nearest geofence
+     * boundary requires.
+     */
+    private void updatePolicy() {
+        final LocationProvider.Policy policy;
+        synchronized (scheduler) {
+            policy = scheduler.getPolicy();
+            if (policy.equals(this.policy)) {
+                return;
+            }
+            this.policy = policy;
+        }
+        locationProvider.setPolicy(policy);
+    }
+
+    /**
+     * Emits transitions comparing inbound geofences with previous state. Transition is emitted
+     * once location accuracy circle clears geofence boundary or new state holds for
+     * {@link #debounceFixes} checks.
+     * @param inbounds actual inbound geofences
+     * @param location device location
+     * @param wifiInfo device WiFi state
+     */
+    private void updateTransitions(List<Geofence> inbounds, LocationProvider.Location location,
+                                   WifiInfoProvider.WifiInfo wifiInfo) {
+        final long now = workOn.now(TimeUnit.MILLISECONDS);
+        synchronized (inboundStates) {
+            final long id = ++checkCount;
+            for (int i = 0, size = inbounds.size(); i < size; ++i) {
+                final Geofence geofence = inbounds.get(i);
+                InboundState state = inboundStates.get(geofence.getUuid());
+                if (state == null) {
+                    state = new InboundState(geofence);
+                    inboundStates.put(geofence.getUuid(), state);
+                }
+                state.checkId = id;
+                if (!state.inside) {
+                    if (++state.pending >= debounceFixes
+                            || isCleared(geofence, location, wifiInfo, true)) {
+                        state.inside = true;
+                        state.pending = 0;
+                        state.enterTime = now;
+                        transitions.onNext(new GeofenceTransition(
+                                GeofenceTransition.Type.ENTER, geofence, now));
+                    }
+                    continue;
+                }
+                state.pending = 0;
+                if (!state.dwell && now - state.enterTime >= dwellTime) {
+                    state.dwell = true;
+                    transitions.onNext(new GeofenceTransition(
+                            GeofenceTransition.Type.DWELL, geofence, now));
+                }
+            }
+            if (inboundStates.size() == inbounds.size()) {
+                return;
+            }
+            final Iterator<InboundState> iterator = inboundStates.values().iterator();
+            while (iterator.hasNext()) {
+                final InboundState state = iterator.next();
+                if (state.checkId == id) {
+                    continue;
+                }
+                if (!state.inside) {
+                    // device left before enter was confirmed
+                    iterator.remove();
+                } else if (++state.pending >= debounceFixes
+                        || !isAvailable(state.geofence)
+                        || isCleared(state.geofence, location, wifiInfo, false)) {
+                    iterator.remove();
+                    transitions.onNext(new GeofenceTransition(
+                            GeofenceTransition.Type.EXIT, state.geofence, now));
+                }
+            }
+        }
+    }
+
+    /**
+     * @param geofence geofence to check
+     * @return {@code true} if geofence wasn't removed from storage.
+     */
+    private boolean isAvailable(Geofence geofence) {
+        final GeofenceEvaluator evaluator = this.evaluator;
+        synchronized (evaluator) {
+            return evaluator.indexOf(geofence.getUuid()) >= 0;
+        }
+    }
+
+    /**
+     * Checks whether location accuracy circle extended by {@link #hysteresis} is entirely on
+     * one side of geofence boundary.
+     * @param geofence geofence to check
+     * @param location device location
+     * @param wifiInfo device WiFi state
+     * @param inside side of boundary to check
+     * @return {@code true} if device is surely inside or outside of geofence.
+     */
+    private boolean isCleared(Geofence geofence, LocationProvider.Location location,
+                              WifiInfoProvider.WifiInfo wifiInfo, boolean inside) {
+        if (inside && (GeofenceUtils.isSsidMatches(geofence, wifiInfo.getSsid())
+                || GeofenceUtils.isFingerprintMatches(geofence, wifiInfo.getAccessPoints()))) {
+            // WiFi doesn't depend on location noise
+            return true;
+        }
+        final double margin = location.getAccuracy() + hysteresis;
+        if (geofence.getPolygon() != null) {
+            return GeofenceUtils.isInsideArea(geofence, location) == inside
+                    && GeofenceUtils.boundaryDistance(geofence, location) > margin;
+        }
+        final double distance = GeofenceUtils.distance(geofence.getPoint(), location);
+        return inside
+                ? distance + margin <= geofence.getRadius()
+                : distance - margin > geofence.getRadius();
+    }
+
+    /**
+     * Looks for geofences device inbounds. Visible for benchmarks.
+     * @param location device location
+     * @param ssid SSID of WiFi hotspot device connected to
+     * @return inbound geofences.
+     */
+    ArrayList<Geofence> findInbounds(LocationProvider.Location location, String ssid) {
+        return findInbounds(location, ssid,
+                Collections.<WifiInfoProvider.AccessPoint>emptyList());
+    }
+
+    /**
+     * Looks for geofences device inbounds.
+     * @param location device location
+     * @param ssid SSID of WiFi hotspot device connected to
+     * @param accessPoints visible WiFi access points
+     * @return inbound geofences.
+     */
+    private ArrayList<Geofence> findInbounds(LocationProvider.Location location, String ssid,
+                                             List<WifiInfoProvider.AccessPoint> accessPoints) {
+        final GeofenceEvaluator evaluator = this.evaluator;
+        // storage changes and location updates could be checked at once
+        synchronized (evaluator) {
+            final long start = System.nanoTime();
+            final int count = evaluator.evaluate(
+                    location.getLat(), location.getLng(), ssid, accessPoints);
+            final ArrayList<Geofence> result = new ArrayList<>(count);
+            for (int i = 0; i < count; ++i) {
+                result.add(evaluator.getGeofence(evaluator.getInbound(i)));
+            }
+            final int wifiMatches =
+                    evaluator.getSsidMatchCount() + evaluator.getFingerprintMatchCount();
+            metrics.onEvaluation(System.nanoTime() - start, evaluator.getCandidateCount(),
+                    wifiMatches, count - wifiMatches);
+            return result;
+        }
+    }
+
     /**
      * Model used to check geofences.
      */
@@ -132,21 +705,36 @@ public class GeofenceModule {
     }
 
     /**
-     * Model used for geofences result.
+     * Device state relative to inbound geofence.
      */
-    private static class GeofenceResult {
+    private static class InboundState {
         /**
          * Geofence.
          */
         final Geofence geofence;
         /**
-         * Indicates whether device is inbounds of {@link #geofence}.
+         * Indicates whether enter transition was emitted.
+         */
+        boolean inside;
+        /**
+         * Number of checks device state differs from {@link #inside} for.
+         */
+        int pending;
+        /**
+         * Time device entered {@link #geofence}.
+         */
+        long enterTime;
+        /**
+         * Indicates whether dwell transition was emitted.
+         */
+        boolean dwell;
+        /**
+         * Last check geofence was inbound at.
          */
-        final boolean inbound;
+        long checkId;
 
-        private GeofenceResult(Geofence geofence, boolean inbound) {
+        private InboundState(Geofence geofence) {
             this.geofence = geofence;
-            this.inbound = inbound;
         }
     }
 
@@ -0,0 +1,277 @@
+package com.github.stevenrudenko.geofence.core;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable polygon geofence area. First ring is outer boundary, the rest are holes. Rings are
+ * closed implicitly, so last vertex shouldn't repeat first one. Edges are straight lines in
+ * latitude/longitude degrees, so polygons shouldn't cross anti-meridian.
+ * <p>
+ * Containment is checked with ray casting which is accelerated by latitude bands: every edge
+ * is put into bands it spans, so ray cast from point crosses only edges of point band. Checks
+ * outside of polygon bounding box are rejected before that.
+ */
+public class GeofencePolygon {
+    /** Meters in one degree of great circle. */
+    private static final double METERS_PER_DEGREE = 6371008.8 * Math.PI / 180.0;
+    /** Average number of edges per band. */
+    private static final int EDGES_PER_BAND = 4;
+    /** Maximal number of bands. */
+    private static final int MAX_BANDS = 1024;
+
+    /** Ring vertices latitudes. */
+    private final double[][] lats;
+    /** Ring vertices longitudes. */
+    private final double[][] lngs;
+    /** Bounding box. */
+    private final BoundingBox box;
+    /** Edges as {@code lat1, lng1, lat2, lng2} one after another. */
+    private final double[] edges;
+    /** Number of bands. */
+    private final int bandCount;
+    /** Band height in degrees. */
+    private final double bandHeight;
+    /** Band edges range start in {@link #bandEdges} by band. Last one is total size. */
+    private final int[] bandStarts;
+    /** Edge indexes of all bands one after another. */
+    private final int[] bandEdges;
+
+    /**
+     * @param outer outer boundary vertices
+     * @param holes holes vertices
+     */
+    public GeofencePolygon(List<LocationProvider.Location> outer,
+                           List<List<LocationProvider.Location>> holes) {
+        this(toRings(outer, holes));
+    }
+
+    private GeofencePolygon(List<List<LocationProvider.Location>> rings) {
+        final int count = rings.size();
+        lats = new double[count][];
+        lngs = new double[count][];
+        int edgeCount = 0;
+        double minLat = Double.MAX_VALUE, maxLat = -Double.MAX_VALUE;
+        double minLng = Double.MAX_VALUE, maxLng = -Double.MAX_VALUE;
+        for (int ring = 0; ring < count; ++ring) {
+            final List<LocationProvider.Location> vertices = rings.get(ring);
+            if (vertices.size() < 3) {
+                throw new IllegalArgumentException("Ring should have at least 3 vertices: "
+                        + vertices.size());
+            }
+            lats[ring] = new double[vertices.size()];
+            lngs[ring] = new double[vertices.size()];
+            for (int i = 0; i < vertices.size(); ++i) {
+                final LocationProvider.Location vertex = vertices.get(i);
+                lats[ring][i] = vertex.getLat();
+                lngs[ring][i] = vertex.getLng();
+                minLat = Math.min(minLat, vertex.getLat());
+                maxLat = Math.max(maxLat, vertex.getLat());
+                minLng = Math.min(minLng, vertex.getLng());
+                maxLng = Math.max(maxLng, vertex.getLng());
+            }
+            edgeCount += vertices.size();
+        }
+        box = new BoundingBox(minLat, maxLat, minLng, maxLng);
+
+        edges = new double[edgeCount * 4];
+        int edge = 0;
+        for (int ring = 0; ring < count; ++ring) {
+            final double[] ringLats = lats[ring];
+            final double[] ringLngs = lngs[ring];
+            for (int i = 0, j = ringLats.length - 1; i < ringLats.length; j = i++) {
+                edges[edge++] = ringLats[j];
+                edges[edge++] = ringLngs[j];
+                edges[edge++] = ringLats[i];
+                edges[edge++] = ringLngs[i];
+            }
+        }
+
+        final int bands = Math.max(1, Math.min(MAX_BANDS, edgeCount / EDGES_PER_BAND));
+        bandCount = bands;
+        bandHeight = Math.max(maxLat - minLat, Double.MIN_NORMAL) / bands;
+        final int[] counts = new int[bands];
+        for (int i = 0; i < edgeCount; ++i) {
+            for (int band = minBand(i), last = maxBand(i); band <= last; ++band) {
+                ++counts[band];
+            }
+        }
+        bandStarts = new int[bands + 1];
+        for (int band = 0; band < bands; ++band) {
+            bandStarts[band + 1] = bandStarts[band] + counts[band];
+        }
+        bandEdges = new int[bandStarts[bands]];
+        final int[] offsets = new int[bands];
+        System.arraycopy(bandStarts, 0, offsets, 0, bands);
+        for (int i = 0; i < edgeCount; ++i) {
+            for (int band = minBand(i), last = maxBand(i); band <= last; ++band) {
+                bandEdges[offsets[band]++] = i;
+            }
+        }
+    }
+
+    /**
+     * @param lat point latitude
+     * @param lng point longitude
+     * @return {@code true} if point is inside outer ring and outside of holes.
+     */
+    public boolean contains(double lat, double lng) {
+        if (!box.contains(lat, lng)) {
+            return false;
+        }
+        final int band = band(lat);
+        boolean inside = false;
+        for (int i = bandStarts[band], end = bandStarts[band + 1]; i < end; ++i) {
+            final int offset = bandEdges[i] * 4;
+            final double lat1 = edges[offset];
+            final double lng1 = edges[offset + 1];
+            final double lat2 = edges[offset + 2];
+            final double lng2 = edges[offset + 3];
+            // count edges crossed by ray going east from point
+            if ((lat1 > lat) != (lat2 > lat)
+                    && lng < lng1 + (lat - lat1) * (lng2 - lng1) / (lat2 - lat1)) {
+                inside = !inside;
+            }
+        }
+        return inside;
+    }
+
+    /**
+     * @param lat point latitude
+     * @param lng point longitude
+     * @return distance in meters from point to nearest polygon edge, never overestimated.
+     */
+    public double boundaryDistance(double lat, double lng) {
+        // edges are short, so they are measured on plane tangent at point
+        final double scale = Math.cos(Math.toRadians(lat));
+        double result = Double.MAX_VALUE;
+        for (int offset = 0; offset < edges.length; offset += 4) {
+            final double y1 = edges[offset] - lat;
+            final double x1 = (edges[offset + 1] - lng) * scale;
+            final double y2 = edges[offset + 2] - lat;
+            final double x2 = (edges[offset + 3] - lng) * scale;
+            final double dx = x2 - x1;
+            final double dy = y2 - y1;
+            final double length = dx * dx + dy * dy;
+            double t = length == 0 ? 0 : -(x1 * dx + y1 * dy) / length;
+            t = Math.max(0, Math.min(1, t));
+            final double x = x1 + t * dx;
+            final double y = y1 + t * dy;
+            result = Math.min(result, x * x + y * y);
+        }
+        return Math.sqrt(result) * METERS_PER_DEGREE * (1.0 - DistanceEngine.ESTIMATE_ERROR);
+    }
+
+    /**
+     * @return box which contains whole polygon.
+     */
+    public BoundingBox getBoundingBox() {
+        return box;
+    }
+
+    /**
+     * @return number of rings including outer one.
+     */
+    public int getRingCount() {
+        return lats.length;
+    }
+
+    /**
+     * @param ring ring index, {@code 0} is outer ring
+     * @return ring vertices.
+     */
+    public List<LocationProvider.Location> getRing(int ring) {
+        final List<LocationProvider.Location> result = new ArrayList<>(lats[ring].length);
+        for (int i = 0; i < lats[ring].length; ++i) {
+            result.add(new LocationProvider.Location(lats[ring][i], lngs[ring][i]));
+        }
+        return result;
+    }
+
+    /**
+     * @return center of bounding box.
+     */
+    LocationProvider.Location getCenter() {
+        return new LocationProvider.Location((box.getMinLat() + box.getMaxLat()) / 2.0,
+                (box.getMinLng() + box.getMaxLng()) / 2.0);
+    }
+
+    /**
+     * @param center circle center
+     * @return radius in meters of circle around center which contains whole polygon.
+     */
+    int getEnclosingRadius(LocationProvider.Location center) {
+        double result = 0;
+        for (int i = 0; i < lats[0].length; ++i) {
+            result = Math.max(result, GeofenceUtils.distance(
+                    center.getLat(), center.getLng(), lats[0][i], lngs[0][i]));
+        }
+        return (int) Math.ceil(result) + 1;
+    }
+
+    /**
+     * Writes polygon rings.
+     * @param out output to write to
+     * @throws IOException if output can't be written
+     */
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(lats.length);
+        for (int ring = 0; ring < lats.length; ++ring) {
+            out.writeInt(lats[ring].length);
+            for (int i = 0; i < lats[ring].length; ++i) {
+                out.writeDouble(lats[ring][i]);
+                out.writeDouble(lngs[ring][i]);
+            }
+        }
+    }
+
+    /**
+     * Reads polygon written by {@link #write(DataOutput)}.
+     * @param in input to read from
+     * @return read polygon.
+     * @throws IOException if input can't be read
+     */
+    public static GeofencePolygon read(DataInput in) throws IOException {
+        final int count = in.readInt();
+        if (count < 1) {
+            throw new IOException("Wrong polygon rings count: " + count);
+        }
+        final List<List<LocationProvider.Location>> rings = new ArrayList<>(count);
+        for (int ring = 0; ring < count; ++ring) {
+            final int size = in.readInt();
+            if (size < 3) {
+                throw new IOException("Wrong polygon ring size: " + size);
+            }
+            final List<LocationProvider.Location> vertices = new ArrayList<>(size);
+            for (int i = 0; i < size; ++i) {
+                vertices.add(new LocationProvider.Location(in.readDouble(), in.readDouble()));
+            }
+            rings.add(vertices);
+        }
+        return new GeofencePolygon(rings);
+    }
+
+    private int band(double lat) {
+        return Math.min(bandCount - 1, (int) ((lat - box.getMinLat()) / bandHeight));
+    }
+
+    private int minBand(int edge) {
+        return band(Math.min(edges[edge * 4], edges[edge * 4 + 2]));
+    }
+
+    private int maxBand(int edge) {
+        return band(Math.max(edges[edge * 4], edges[edge * 4 + 2]));
+    }
+
+    private static List<List<LocationProvider.Location>> toRings(
+            List<LocationProvider.Location> outer, List<List<LocationProvider.Location>> holes) {
+        final List<List<LocationProvider.Location>> result = new ArrayList<>(holes.size() + 1);
+        result.add(outer);
+        result.addAll(holes);
+        return Collections.unmodifiableList(result);
+    }
+}
@@ -0,0 +1,199 @@
+package com.github.stevenrudenko.geofence.core;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * Copy-on-write geofences registry. Every write publishes new immutable {@link Snapshot}, so
+ * readers get consistent geofences from any thread without locks and copies. Writes are
+ * serialized and cost a copy of the whole registry, which is fine as geofences are read much
+ * more often than written.
+ */
+public class GeofenceRegistry {
+    /** Latest published snapshot. */
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+
+    /**
+     * @return latest published snapshot.
+     */
+    public Snapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Adds or updates geofences.
+     * @param geofences geofences to add
+     * @return applied change.
+     */
+    public synchronized GeofenceChange addAll(Collection<Geofence> geofences) {
+        final Snapshot current = snapshot;
+        final ArrayList<Geofence> result = new ArrayList<>(current.list);
+        final Map<String, Integer> slots = new HashMap<>(current.slots);
+        final List<Geofence> added = new ArrayList<>();
+        final List<Geofence> updated = new ArrayList<>();
+        for (Geofence geofence : geofences) {
+            final Integer slot = slots.get(geofence.getUuid());
+            if (slot == null) {
+                slots.put(geofence.getUuid(), result.size());
+                result.add(geofence);
+                added.add(geofence);
+            } else {
+                result.set(slot, geofence);
+                updated.add(geofence);
+            }
+        }
+        snapshot = new Snapshot(current.version + 1, result, slots);
+        return new GeofenceChange(added, Collections.<Geofence>emptyList(), updated);
+    }
+
+    /**
+     * Removes geofences with the same UUIDs as given ones.
+     * @param geofences geofences to remove
+     * @return applied change with removed registry geofences.
+     */
+    public synchronized GeofenceChange removeAll(Collection<Geofence> geofences) {
+        final Snapshot current = snapshot;
+        final Map<String, Geofence> removed = new LinkedHashMap<>();
+        for (Geofence geofence : geofences) {
+            final Geofence stored = current.get(geofence.getUuid());
+            if (stored != null) {
+                removed.put(stored.getUuid(), stored);
+            }
+        }
+        if (removed.isEmpty()) {
+            return GeofenceChange.removed(Collections.<Geofence>emptyList());
+        }
+        final ArrayList<Geofence> result = new ArrayList<>(current.geofences.length);
+        for (Geofence geofence : current.geofences) {
+            if (!removed.containsKey(geofence.getUuid())) {
+                result.add(geofence);
+            }
+        }
+        snapshot = new Snapshot(current.version + 1, result, null);
+        return GeofenceChange.removed(new ArrayList<>(removed.values()));
+    }
+
+    /**
+     * Replaces whole registry content. Geofences with duplicated UUIDs are skipped.
+     * @param geofences new registry content
+     * @return reset change.
+     */
+    public synchronized GeofenceChange replaceAll(Collection<Geofence> geofences) {
+        final ArrayList<Geofence> result = new ArrayList<>(geofences.size());
+        final Map<String, Integer> slots = new HashMap<>(geofences.size() * 2);
+        for (Geofence geofence : geofences) {
+            if (!slots.containsKey(geofence.getUuid())) {
+                slots.put(geofence.getUuid(), result.size());
+                result.add(geofence);
+            }
+        }
+        final Snapshot snapshot = new Snapshot(this.snapshot.version + 1, result, slots);
+        this.snapshot = snapshot;
+        return GeofenceChange.reset(snapshot.getGeofences());
+    }
+
+    /**
+     * Immutable registry version.
+     */
+    public static final class Snapshot {
+        /** Empty registry. */
+        static final Snapshot EMPTY =
+                new Snapshot(0, new ArrayList<Geofence>(0), new HashMap<String, Integer>(0));
+
+        /** Registry version. Increased with every write. */
+        private final long version;
+        /** Geofences in order they were added. */
+        private final Geofence[] geofences;
+        /** Geofence slots mapped by UUID. */
+        private final Map<String, Integer> slots;
+        /** Read only view of {@link #geofences}. */
+        private final List<Geofence> list;
+
+        private Snapshot(long version, ArrayList<Geofence> geofences, Map<String, Integer> slots) {
+            this.version = version;
+            this.geofences = geofences.toArray(new Geofence[geofences.size()]);
+            if (slots == null) {
+                slots = new HashMap<>(this.geofences.length * 2);
+                for (int slot = 0; slot < this.geofences.length; ++slot) {
+                    slots.put(this.geofences[slot].getUuid(), slot);
+                }
+            }
+            this.slots = slots;
+            this.list = new GeofenceList(this.geofences);
+        }
+
+        /**
+         * @return registry version.
+         */
+        public long getVersion() {
+            return version;
+        }
+
+        /**
+         * @return read only geofences list. It is not copied.
+         */
+        public List<Geofence> getGeofences() {
+            return list;
+        }
+
+        /**
+         * @param box area to look for geofences in
+         * @return geofences which bounding box intersects given one.
+         */
+        public List<Geofence> getGeofences(BoundingBox box) {
+            final List<Geofence> result = new ArrayList<>();
+            for (Geofence geofence : geofences) {
+                if (box.intersects(BoundingBox.of(geofence))) {
+                    result.add(geofence);
+                }
+            }
+            return result;
+        }
+
+        /**
+         * @param uuid geofence UUID
+         * @return geofence or {@code null} if there is no such geofence.
+         */
+        public Geofence get(String uuid) {
+            final Integer slot = slots.get(uuid);
+            return slot == null ? null : geofences[slot];
+        }
+
+        /**
+         * @return number of geofences.
+         */
+        public int size() {
+            return geofences.length;
+        }
+    }
+
+    /**
+     * Read only list over geofences array.
+     */
+    private static final class GeofenceList extends AbstractList<Geofence>
+            implements RandomAccess {
+        /** Listed geofences. */
+        private final Geofence[] geofences;
+
+        private GeofenceList(Geofence[] geofences) {
+            this.geofences = geofences;
+        }
+
+        @Override
+        public Geofence get(int index) {
+            return geofences[index];
+        }
+
+        @Override
+        public int size() {
+            return geofences.length;
+        }
+    }
+}
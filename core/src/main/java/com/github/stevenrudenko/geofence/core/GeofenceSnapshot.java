@@ -0,0 +1,327 @@
+package com.github.stevenrudenko.geofence.core;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Binary snapshot of compiled geofences and their grid. Used to answer checks on cold start
+ * before geofences storage is loaded. Columns and grid are stored as raw arrays, so they are
+ * bulk copied from memory mapped file without parsing:
+ * <pre>
+ * file         := MAGIC VERSION header arrays ssids uuids polygons fingerprints
+ * header       := size cellSize capacity cellSlotCount largeCount ssidCount
+ * arrays       := lats lngs radiuses ssidIds minLats maxLats minLngs maxLngs
+ *                 cellKeys cellStarts cellCounts cellSlots large
+ * polygons     := count (slot polygon)*
+ * fingerprints := count (slot fingerprint)*
+ * </pre>
+ * Every distinct SSID pattern is read once and compiled only on first match, fingerprint
+ * index is rebuilt. Snapshot is a cache: it is replaced as a whole and readers should fall
+ * back to storage if it can't be read.
+ */
+public final class GeofenceSnapshot {
+    /** File signature. */
+    static final int MAGIC = 0x47454F53; // "GEOS"
+    /** File format version. */
+    static final int VERSION = 2;
+    /** Bytes of fixed length arrays per geofence slot. */
+    static final int SLOT_BYTES = 8 + 8 + 4 + 4 + 4 * 8;
+    /** Bytes of fixed length arrays per grid cell. */
+    private static final int CELL_BYTES = 8 + 4 + 4;
+
+    private GeofenceSnapshot() {
+        // hide
+    }
+
+    /**
+     * Writes evaluator geofences and grid to file. File is replaced atomically, so readers
+     * never see partially written snapshot. Changes applied to evaluator in place are
+     * compacted into grid first.
+     * @param file file to write to
+     * @param evaluator evaluator to take geofences and grid from
+     * @throws IOException if file can't be written
+     */
+    public static void write(File file, GeofenceEvaluator evaluator) throws IOException {
+        final File temp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream data = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(temp)))) {
+            write(data, evaluator.compact());
+        }
+        if (!temp.renameTo(file)) {
+            //noinspection ResultOfMethodCallIgnored
+            temp.delete();
+            throw new IOException("Can't replace snapshot: " + file);
+        }
+    }
+
+    private static void write(DataOutputStream data, GeofenceEvaluator evaluator)
+            throws IOException {
+        final GeofenceColumns columns = evaluator.getColumns();
+        final int size = columns.size();
+        data.writeInt(MAGIC);
+        data.writeByte(VERSION);
+        data.writeInt(size);
+        data.writeDouble(evaluator.cellSize);
+        data.writeInt(evaluator.cellKeys.length);
+        data.writeInt(evaluator.cellSlots.length);
+        data.writeInt(evaluator.large.length);
+        data.writeInt(columns.getSsidCount());
+
+        for (int slot = 0; slot < size; ++slot) {
+            data.writeDouble(columns.lats[slot]);
+        }
+        for (int slot = 0; slot < size; ++slot) {
+            data.writeDouble(columns.lngs[slot]);
+        }
+        for (int slot = 0; slot < size; ++slot) {
+            data.writeFloat(columns.radiuses[slot]);
+        }
+        writeInts(data, columns.ssidIds);
+        writeDoubles(data, evaluator.minLats);
+        writeDoubles(data, evaluator.maxLats);
+        writeDoubles(data, evaluator.minLngs);
+        writeDoubles(data, evaluator.maxLngs);
+        for (long key : evaluator.cellKeys) {
+            data.writeLong(key);
+        }
+        writeInts(data, evaluator.cellStarts);
+        writeInts(data, evaluator.cellCounts);
+        writeInts(data, evaluator.cellSlots);
+        writeInts(data, evaluator.large);
+
+        for (String ssid : columns.ssids) {
+            data.writeUTF(ssid);
+        }
+        int polygons = 0;
+        int fingerprints = 0;
+        for (int slot = 0; slot < size; ++slot) {
+            data.writeUTF(columns.getGeofence(slot).getUuid());
+            if (columns.polygons[slot] != null) {
+                ++polygons;
+            }
+            if (columns.fingerprints[slot] != null) {
+                ++fingerprints;
+            }
+        }
+        data.writeInt(polygons);
+        for (int slot = 0; slot < size; ++slot) {
+            if (columns.polygons[slot] != null) {
+                data.writeInt(slot);
+                columns.polygons[slot].write(data);
+            }
+        }
+        data.writeInt(fingerprints);
+        for (int slot = 0; slot < size; ++slot) {
+            if (columns.fingerprints[slot] != null) {
+                data.writeInt(slot);
+                columns.fingerprints[slot].write(data);
+            }
+        }
+    }
+
+    /**
+     * Reads snapshot written by {@link #write(File, GeofenceEvaluator)}. Reads file, so it
+     * shouldn't be called on main thread.
+     * @param file file to read from
+     * @return evaluator over snapshot geofences.
+     * @throws IOException if file can't be read or has wrong format
+     */
+    public static GeofenceEvaluator read(File file) throws IOException {
+        try (FileInputStream in = new FileInputStream(file)) {
+            final FileChannel channel = in.getChannel();
+            return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } catch (BufferUnderflowException | IndexOutOfBoundsException
+                | IllegalArgumentException e) {
+            throw new IOException("Corrupted geofences snapshot: " + file, e);
+        }
+    }
+
+    private static GeofenceEvaluator read(ByteBuffer buffer) throws IOException {
+        if (buffer.remaining() < 5 || buffer.getInt() != MAGIC) {
+            throw new IOException("Not a geofences snapshot");
+        }
+        final int version = buffer.get() & 0xFF;
+        if (version != VERSION) {
+            throw new IOException("Unsupported geofences snapshot version: " + version);
+        }
+        final int size = buffer.getInt();
+        final double cellSize = buffer.getDouble();
+        final int capacity = buffer.getInt();
+        final int cellSlotCount = buffer.getInt();
+        final int largeCount = buffer.getInt();
+        final int ssidCount = buffer.getInt();
+        if (size < 0 || !(cellSize > 0 && cellSize <= 180)
+                || capacity < 1 || Integer.bitCount(capacity) != 1
+                || cellSlotCount < 0 || largeCount < 0 || ssidCount < 0) {
+            throw new IOException("Wrong geofences snapshot header");
+        }
+        // counts are checked against file length before arrays are allocated, every SSID and
+        // UUID takes at least its length
+        final long length = size * (long) SLOT_BYTES + capacity * (long) CELL_BYTES
+                + (cellSlotCount + (long) largeCount) * 4 + (ssidCount + (long) size) * 2;
+        if (length > buffer.remaining()) {
+            throw new IOException("Truncated geofences snapshot");
+        }
+
+        final double[] lats = readDoubles(buffer, size);
+        final double[] lngs = readDoubles(buffer, size);
+        final float[] radiuses = new float[size];
+        buffer.asFloatBuffer().get(radiuses);
+        skip(buffer, size * 4);
+        final int[] ssidIds = readInts(buffer, size);
+        final double[] minLats = readDoubles(buffer, size);
+        final double[] maxLats = readDoubles(buffer, size);
+        final double[] minLngs = readDoubles(buffer, size);
+        final double[] maxLngs = readDoubles(buffer, size);
+        final long[] cellKeys = new long[capacity];
+        buffer.asLongBuffer().get(cellKeys);
+        skip(buffer, capacity * 8);
+        final int[] cellStarts = readInts(buffer, capacity);
+        final int[] cellCounts = readInts(buffer, capacity);
+        final int[] cellSlots = readInts(buffer, cellSlotCount);
+        final int[] large = readInts(buffer, largeCount);
+        // broken grid would fail or hang evaluation on module worker, so it is checked here
+        checkCells(cellKeys, cellStarts, cellCounts, cellSlotCount);
+        checkSlots(cellSlots, size);
+        checkSlots(large, size);
+
+        // the rest is variable length, so it is parsed
+        final DataInputStream data = new DataInputStream(new BufferInputStream(buffer));
+        final String[] ssids = new String[ssidCount];
+        for (int id = 0; id < ssidCount; ++id) {
+            // equal SSIDs of geofences share one string
+            ssids[id] = data.readUTF();
+        }
+        final String[] uuids = new String[size];
+        for (int slot = 0; slot < size; ++slot) {
+            uuids[slot] = data.readUTF();
+        }
+        final GeofencePolygon[] polygons = new GeofencePolygon[size];
+        for (int i = 0, count = data.readInt(); i < count; ++i) {
+            polygons[readSlot(data, size)] = GeofencePolygon.read(data);
+        }
+        final WifiFingerprint[] fingerprints = new WifiFingerprint[size];
+        for (int i = 0, count = data.readInt(); i < count; ++i) {
+            fingerprints[readSlot(data, size)] = WifiFingerprint.read(data);
+        }
+
+        final Geofence[] geofences = new Geofence[size];
+        for (int slot = 0; slot < size; ++slot) {
+            if (ssidIds[slot] < 0 || ssidIds[slot] >= ssidCount) {
+                throw new IOException("Wrong geofence SSID id: " + ssidIds[slot]);
+            }
+            geofences[slot] = new Geofence(uuids[slot],
+                    new LocationProvider.Location(lats[slot], lngs[slot]),
+                    (int) radiuses[slot], polygons[slot], ssids[ssidIds[slot]],
+                    fingerprints[slot]);
+        }
+        final GeofenceColumns columns = new GeofenceColumns(
+                geofences, lats, lngs, radiuses, polygons, ssidIds, ssids, fingerprints);
+        return new GeofenceEvaluator(columns, cellSize, DistanceEngine.getDefault(),
+                minLats, maxLats, minLngs, maxLngs, cellKeys, cellStarts, cellCounts, cellSlots,
+                large);
+    }
+
+    private static int readSlot(DataInputStream data, int size) throws IOException {
+        final int slot = data.readInt();
+        if (slot < 0 || slot >= size) {
+            throw new IOException("Wrong geofence slot: " + slot);
+        }
+        return slot;
+    }
+
+    private static void checkCells(long[] cellKeys, int[] cellStarts, int[] cellCounts,
+                                   int cellSlotCount) throws IOException {
+        boolean hasEmpty = false;
+        for (int position = 0; position < cellKeys.length; ++position) {
+            if (cellKeys[position] == GeofenceEvaluator.EMPTY) {
+                hasEmpty = true;
+                continue;
+            }
+            final int start = cellStarts[position];
+            final int count = cellCounts[position];
+            if (cellKeys[position] < 0 || start < 0 || count < 0
+                    || (long) start + count > cellSlotCount) {
+                throw new IOException("Wrong geofences snapshot cell: " + position);
+            }
+        }
+        // cell lookup probes till empty position
+        if (!hasEmpty) {
+            throw new IOException("Geofences snapshot cell table is full");
+        }
+    }
+
+    private static void checkSlots(int[] slots, int size) throws IOException {
+        for (int slot : slots) {
+            if (slot < 0 || slot >= size) {
+                throw new IOException("Wrong geofence slot: " + slot);
+            }
+        }
+    }
+
+    private static void writeInts(DataOutputStream data, int[] values) throws IOException {
+        for (int value : values) {
+            data.writeInt(value);
+        }
+    }
+
+    private static void writeDoubles(DataOutputStream data, double[] values) throws IOException {
+        for (double value : values) {
+            data.writeDouble(value);
+        }
+    }
+
+    private static int[] readInts(ByteBuffer buffer, int count) {
+        final int[] result = new int[count];
+        buffer.asIntBuffer().get(result);
+        skip(buffer, count * 4);
+        return result;
+    }
+
+    private static double[] readDoubles(ByteBuffer buffer, int count) {
+        final double[] result = new double[count];
+        buffer.asDoubleBuffer().get(result);
+        skip(buffer, count * 8);
+        return result;
+    }
+
+    private static void skip(ByteBuffer buffer, int bytes) {
+        buffer.position(buffer.position() + bytes);
+    }
+
+    /**
+     * Reads remaining buffer bytes.
+     */
+    private static class BufferInputStream extends InputStream {
+        /** Source buffer. */
+        private final ByteBuffer buffer;
+
+        BufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            final int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.github.stevenrudenko.geofence.core;
 
+import java.util.Collection;
 import java.util.List;
 
 import io.reactivex.Observable;
@@ -9,10 +10,44 @@ public interface GeofenceStorage {
 
     Observable<List<Geofence>> getGeofenceUpdates();
 
+    /**
+     * Provides storage changes. First emitted change is {@link GeofenceChange#isReset() reset}
+     * one with whole storage content. Following ones hold only added, removed and updated
+     * geofences. Storage which loads geofences lazily emits first change once they are
+     * loaded, so empty reset always means there are no geofences.
+     * @return storage changes observable.
+     */
+    Observable<GeofenceChange> getGeofenceChanges();
+
     List<Geofence> getGeofences();
 
+    /**
+     * @param box area to look for geofences in
+     * @return geofences which bounding box intersects given one.
+     */
+    List<Geofence> getGeofences(BoundingBox box);
+
     void add(Geofence geofence);
 
     void remove(Geofence geofence);
 
+    /**
+     * Adds geofences in one batch. Storage changes are emitted once per batch.
+     * @param geofences geofences to add
+     */
+    void addAll(Collection<Geofence> geofences);
+
+    /**
+     * Removes geofences in one batch. Storage changes are emitted once per batch.
+     * @param geofences geofences to remove
+     */
+    void removeAll(Collection<Geofence> geofences);
+
+    /**
+     * Replaces whole storage content in one batch. Emits {@link GeofenceChange#isReset() reset}
+     * change.
+     * @param geofences new storage content
+     */
+    void replaceAll(Collection<Geofence> geofences);
+
 }
@@ -0,0 +1,183 @@
+package com.github.stevenrudenko.geofence.core;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Recorded device trace format. Trace is CSV text file with one record per line:
+ * <pre>
+ * time,lat,lng,accuracy,ssid
+ * </pre>
+ * Time is in milliseconds since epoch, accuracy is in meters. SSID is empty when device is not
+ * connected to WiFi, it is the rest of line, so it could contain commas. Empty lines and lines
+ * starting with {@code #} are skipped.
+ */
+public final class GeofenceTrace {
+    /** Trace file charset. */
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    /** Starts comment line. */
+    private static final byte COMMENT = '#';
+
+    private GeofenceTrace() {
+        // hide
+    }
+
+    /**
+     * Writes records to stream. Stream is not closed.
+     * @param out stream to write to
+     * @param records records to write
+     * @return number of written records.
+     * @throws IOException if stream can't be written
+     */
+    public static int write(OutputStream out, Iterable<Record> records) throws IOException {
+        final Writer writer = new BufferedWriter(new OutputStreamWriter(out, UTF_8));
+        writer.write("# time,lat,lng,accuracy,ssid\n");
+        int count = 0;
+        for (Record record : records) {
+            final LocationProvider.Location location = record.getLocation();
+            final String ssid = record.getWifiInfo().getSsid();
+            writer.write(String.format(Locale.US, "%d,%s,%s,%s,%s\n", location.getTime(),
+                    location.getLat(), location.getLng(), location.getAccuracy(),
+                    ssid == null ? "" : ssid));
+            ++count;
+        }
+        writer.flush();
+        return count;
+    }
+
+    /**
+     * Opens trace channel for reading. Records are read lazily with fixed size buffer, so trace
+     * of any length could be replayed.
+     * @param channel channel to read from
+     * @return trace reader.
+     */
+    public static Reader open(ReadableByteChannel channel) {
+        return new Reader(channel);
+    }
+
+    /** Trace record. */
+    public static class Record {
+        /** Device location. */
+        private final LocationProvider.Location location;
+        /** Device WiFi state. */
+        private final WifiInfoProvider.WifiInfo wifiInfo;
+
+        public Record(LocationProvider.Location location, WifiInfoProvider.WifiInfo wifiInfo) {
+            this.location = location;
+            this.wifiInfo = wifiInfo;
+        }
+
+        public LocationProvider.Location getLocation() {
+            return location;
+        }
+
+        public WifiInfoProvider.WifiInfo getWifiInfo() {
+            return wifiInfo;
+        }
+    }
+
+    /** Reads records one by one. */
+    public static class Reader implements Closeable {
+        /** Read buffer size. */
+        private static final int BUFFER_SIZE = 64 * 1024;
+
+        /** Source channel. */
+        private final ReadableByteChannel channel;
+        /** Read buffer. */
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        /** Bytes of current line. */
+        private byte[] line = new byte[256];
+        /** Number of read lines. Used to report format errors. */
+        private int lineNumber;
+        /** Indicates whether end of channel is reached. */
+        private boolean finished;
+
+        private Reader(ReadableByteChannel channel) {
+            this.channel = channel;
+            buffer.flip();
+        }
+
+        /**
+         * @return next record or {@code null} if there are no more records.
+         * @throws IOException if channel can't be read or record has wrong format
+         */
+        public Record next() throws IOException {
+            int length;
+            while ((length = readLine()) >= 0) {
+                if (length > 0 && line[0] != COMMENT) {
+                    return parse(new String(line, 0, length, UTF_8));
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Reads line into {@link #line} buffer.
+         * @return line length without line break or {@code -1} if there are no more lines.
+         */
+        private int readLine() throws IOException {
+            int length = 0;
+            ++lineNumber;
+            while (true) {
+                if (!buffer.hasRemaining()) {
+                    if (finished) {
+                        return length > 0 ? length : -1;
+                    }
+                    buffer.clear();
+                    finished = channel.read(buffer) < 0;
+                    buffer.flip();
+                    continue;
+                }
+                final byte b = buffer.get();
+                if (b == '\n') {
+                    // skip CR of CRLF line breaks
+                    return length > 0 && line[length - 1] == '\r' ? length - 1 : length;
+                }
+                if (length == line.length) {
+                    line = Arrays.copyOf(line, length * 2);
+                }
+                line[length++] = b;
+            }
+        }
+
+        private Record parse(String line) throws IOException {
+            final int[] commas = new int[4];
+            int from = 0;
+            for (int i = 0; i < commas.length; ++i) {
+                commas[i] = line.indexOf(',', from);
+                if (commas[i] < 0) {
+                    throw new IOException("Wrong trace record at line " + lineNumber + ": " + line);
+                }
+                from = commas[i] + 1;
+            }
+            try {
+                final long time = Long.parseLong(line.substring(0, commas[0]));
+                final double lat = Double.parseDouble(line.substring(commas[0] + 1, commas[1]));
+                final double lng = Double.parseDouble(line.substring(commas[1] + 1, commas[2]));
+                final float accuracy =
+                        Float.parseFloat(line.substring(commas[2] + 1, commas[3]));
+                final String ssid = line.substring(commas[3] + 1);
+                return new Record(new LocationProvider.Location(lat, lng, accuracy, time),
+                        ssid.isEmpty()
+                                ? new WifiInfoProvider.WifiInfo(false)
+                                : new WifiInfoProvider.WifiInfo(true, ssid));
+            } catch (NumberFormatException e) {
+                throw new IOException("Wrong trace record at line " + lineNumber + ": " + line, e);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
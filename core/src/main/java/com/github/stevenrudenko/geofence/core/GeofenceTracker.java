@@ -0,0 +1,318 @@
+package com.github.stevenrudenko.geofence.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Observable;
+import io.reactivex.Scheduler;
+import io.reactivex.disposables.CompositeDisposable;
+import io.reactivex.schedulers.Schedulers;
+import io.reactivex.subjects.PublishSubject;
+import io.reactivex.subjects.Subject;
+
+/**
+ * Tracks many devices against the same geofences. Unlike {@link GeofenceModule} locations are
+ * pushed by caller, so it could be used on backend which receives locations of many devices.
+ * <p>
+ * Devices are split between fixed number of shards by device id. Every shard processes its
+ * devices one update at a time on its own worker, so updates of one device are evaluated in
+ * order they were pushed. Shards share immutable geofences grid and own only evaluation
+ * buffers. Only devices which are inside of any geofence have state, and it holds inbound
+ * geofences only.
+ * <p>
+ * Storage changes made since previous update are applied to copy of shared evaluator in
+ * place, grid is rebuilt only on reset or once too many changes are applied.
+ */
+public class GeofenceTracker {
+    /** No inbound geofences. */
+    private static final int[] NO_SLOTS = new int[0];
+
+    /** Available geofences collection. */
+    private final GeofenceStorage storage;
+    /** Used to create shard workers. */
+    private final Scheduler workOn;
+    /** Number of shards. */
+    private final int shardCount;
+    /** Available geofences mapped by UUID. Guarded by itself. */
+    private final Map<String, Geofence> geofences = new LinkedHashMap<>();
+    /** Indicates whether {@link #shared} misses {@link #geofences} changes. */
+    private volatile boolean stale;
+    /** Changes to apply to {@link #shared} copy. Guarded by {@link #geofences}. */
+    private final List<GeofenceChange> pending = new ArrayList<>();
+    /** Indicates whether {@link #shared} should be rebuilt. Guarded by {@link #geofences}. */
+    private boolean rebuild;
+    /** Shared evaluator over latest geofences snapshot. Shards copy it on change. */
+    private volatile Snapshot shared =
+            new Snapshot(new GeofenceEvaluator(Collections.<Geofence>emptyList()), 0);
+    /** Device shards. Empty till start. */
+    private volatile Shard[] shards = new Shard[0];
+    /** Storage and worker subscriptions. */
+    private final CompositeDisposable subscriptions = new CompositeDisposable();
+    /** Devices transitions. Shards emit concurrently. */
+    private final Subject<DeviceTransition> transitions =
+            PublishSubject.<DeviceTransition>create().toSerialized();
+    /** Geofences storage errors. */
+    private final PublishSubject<Throwable> errors = PublishSubject.create();
+
+    public GeofenceTracker(GeofenceStorage storage) {
+        this(storage, Runtime.getRuntime().availableProcessors(), Schedulers.computation());
+    }
+
+    /**
+     * @param storage geofences to track devices against
+     * @param shardCount number of shards devices are split between
+     * @param workOn scheduler to create shard workers with
+     */
+    public GeofenceTracker(GeofenceStorage storage, int shardCount, Scheduler workOn) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("Illegal number of shards: " + shardCount);
+        }
+        this.storage = storage;
+        this.shardCount = shardCount;
+        this.workOn = workOn;
+    }
+
+    /**
+     * @return devices transitions observable.
+     */
+    public Observable<DeviceTransition> getTransitions() {
+        return transitions;
+    }
+
+    /**
+     * Provides geofences storage errors. Devices keep being tracked against geofences tracker
+     * already has after them.
+     * @return errors observable.
+     */
+    public Observable<Throwable> getErrors() {
+        return errors;
+    }
+
+    public void start() {
+        final Shard[] shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; ++i) {
+            final Scheduler.Worker worker = workOn.createWorker();
+            subscriptions.add(worker);
+            shards[i] = new Shard(worker);
+        }
+        this.shards = shards;
+        subscriptions.add(storage.getGeofenceChanges().subscribe(change -> {
+            try {
+                synchronized (geofences) {
+                    if (change.applyTo(geofences)) {
+                        if (change.isReset()) {
+                            rebuild = true;
+                            pending.clear();
+                        } else if (!rebuild) {
+                            pending.add(change);
+                        }
+                        stale = true;
+                    }
+                }
+            } catch (RuntimeException e) {
+                // broken change shouldn't stop following ones
+                errors.onNext(e);
+            }
+        }, errors::onNext));
+    }
+
+    /**
+     * @return snapshot of actual geofences. Storage changes are applied to copy of previous
+     * snapshot, it is rebuilt only on reset or once too many changes are applied.
+     */
+    private Snapshot getShared() {
+        if (stale) {
+            synchronized (geofences) {
+                if (stale) {
+                    stale = false;
+                    shared = new Snapshot(update(shared.evaluator), shared.version + 1);
+                    rebuild = false;
+                    pending.clear();
+                }
+            }
+        }
+        return shared;
+    }
+
+    /**
+     * @param previous evaluator of previous snapshot
+     * @return evaluator over actual geofences.
+     */
+    private GeofenceEvaluator update(GeofenceEvaluator previous) {
+        int count = previous.getChangeCount();
+        for (GeofenceChange change : pending) {
+            count += change.size();
+        }
+        if (rebuild || count > GeofenceEvaluator.MAX_CHANGES) {
+            return new GeofenceEvaluator(new GeofenceColumns(geofences.values()));
+        }
+        final GeofenceEvaluator evaluator = new GeofenceEvaluator(previous);
+        for (GeofenceChange change : pending) {
+            evaluator.apply(change);
+        }
+        return evaluator;
+    }
+
+    /**
+     * Stops processing. Devices state is dropped.
+     */
+    public void stop() {
+        shards = new Shard[0];
+        subscriptions.clear();
+    }
+
+    /**
+     * Queues device location update for evaluation.
+     * @param deviceId device identifier
+     * @param location device location
+     * @param ssid SSID of WiFi hotspot device connected to or {@code null}
+     */
+    public void track(String deviceId, LocationProvider.Location location, String ssid) {
+        final Shard[] shards = this.shards;
+        if (shards.length == 0) {
+            throw new IllegalStateException(GeofenceTracker.class.getSimpleName()
+                    + " should be started first");
+        }
+        final int hash = deviceId.hashCode();
+        final Shard shard = shards[((hash ^ (hash >>> 16)) & Integer.MAX_VALUE) % shards.length];
+        shard.worker.schedule(() -> shard.track(deviceId, location, ssid));
+    }
+
+    /**
+     * Shard of devices. All the methods are called on its worker.
+     */
+    private class Shard {
+        /** Shard worker. */
+        final Scheduler.Worker worker;
+        /** Evaluator shard owns. */
+        private GeofenceEvaluator evaluator;
+        /** Version of geofences snapshot {@link #evaluator} is created for. */
+        private long version;
+        /** State of devices which are inside of any geofence mapped by device id. */
+        private final Map<String, DeviceState> devices = new HashMap<>();
+
+        Shard(Scheduler.Worker worker) {
+            this.worker = worker;
+            final Snapshot shared = getShared();
+            this.evaluator = new GeofenceEvaluator(shared.evaluator);
+            this.version = shared.version;
+        }
+
+        void track(String deviceId, LocationProvider.Location location, String ssid) {
+            final Snapshot shared = getShared();
+            if (version != shared.version) {
+                evaluator = new GeofenceEvaluator(shared.evaluator);
+                version = shared.version;
+            }
+            final int count = evaluator.evaluate(location.getLat(), location.getLng(), ssid);
+            final DeviceState state = devices.get(deviceId);
+            if (state == null && count == 0) {
+                return;
+            }
+            final long time = location.getTime() > 0
+                    ? location.getTime() : workOn.now(TimeUnit.MILLISECONDS);
+            final int[] previous = state == null ? NO_SLOTS : state.slotsIn(evaluator, version);
+            final int[] current = count == 0 ? NO_SLOTS : new int[count];
+            for (int i = 0; i < count; ++i) {
+                current[i] = evaluator.getInbound(i);
+            }
+            Arrays.sort(current);
+            if (state != null) {
+                // geofences device left, including removed ones
+                for (int i = 0; i < state.slots.length; ++i) {
+                    if (previous[i] < 0 || Arrays.binarySearch(current, previous[i]) < 0) {
+                        transitions.onNext(new DeviceTransition(deviceId,
+                                GeofenceTransition.Type.EXIT,
+                                state.geofences[i], time));
+                    }
+                }
+            }
+            for (int slot : current) {
+                if (!contains(previous, slot)) {
+                    transitions.onNext(new DeviceTransition(deviceId,
+                            GeofenceTransition.Type.ENTER, evaluator.getGeofence(slot), time));
+                }
+            }
+            if (count == 0) {
+                devices.remove(deviceId);
+                return;
+            }
+            final Geofence[] inbounds = new Geofence[count];
+            for (int i = 0; i < count; ++i) {
+                inbounds[i] = evaluator.getGeofence(current[i]);
+            }
+            if (state == null) {
+                devices.put(deviceId, new DeviceState(version, current, inbounds));
+            } else {
+                state.version = version;
+                state.slots = current;
+                state.geofences = inbounds;
+            }
+        }
+
+        private boolean contains(int[] slots, int slot) {
+            for (int value : slots) {
+                if (value == slot) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Geofences snapshot with its version.
+     */
+    private static class Snapshot {
+        /** Evaluator over snapshot geofences. */
+        final GeofenceEvaluator evaluator;
+        /** Snapshot version, incremented with every rebuild. */
+        final long version;
+
+        Snapshot(GeofenceEvaluator evaluator, long version) {
+            this.evaluator = evaluator;
+            this.version = version;
+        }
+    }
+
+    /**
+     * Geofences device is inside of. Holds snapshot version instead of snapshot, so replaced
+     * snapshots aren't retained by devices.
+     */
+    private static class DeviceState {
+        /** Version of geofences snapshot {@link #slots} belong to. */
+        long version;
+        /** Sorted inbound geofence slots. */
+        int[] slots;
+        /** Inbound geofences matched by {@link #slots} index. */
+        Geofence[] geofences;
+
+        DeviceState(long version, int[] slots, Geofence[] geofences) {
+            this.version = version;
+            this.slots = slots;
+            this.geofences = geofences;
+        }
+
+        /**
+         * @param evaluator evaluator over actual geofences snapshot
+         * @param version actual geofences snapshot version
+         * @return inbound slots in given snapshot, {@code -1} for removed geofences.
+         */
+        int[] slotsIn(GeofenceEvaluator evaluator, long version) {
+            if (version == this.version) {
+                return slots;
+            }
+            final int[] result = new int[slots.length];
+            for (int i = 0; i < slots.length; ++i) {
+                result[i] = evaluator.indexOf(geofences[i].getUuid());
+            }
+            return result;
+        }
+    }
+}
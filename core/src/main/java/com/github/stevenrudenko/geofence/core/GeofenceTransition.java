@@ -0,0 +1,47 @@
+package com.github.stevenrudenko.geofence.core;
+
+/**
+ * Geofence transition event. Emitted when device state relative to geofence changes.
+ */
+public class GeofenceTransition {
+
+    /** Transition type. */
+    public enum Type {
+        /** Device entered geofence. */
+        ENTER,
+        /** Device left geofence. */
+        EXIT,
+        /** Device stays inside of geofence for dwell time. */
+        DWELL,
+    }
+
+    /** Transition type. */
+    private final Type type;
+    /** Geofence transition happened for. */
+    private final Geofence geofence;
+    /** Transition time in milliseconds. */
+    private final long time;
+
+    public GeofenceTransition(Type type, Geofence geofence, long time) {
+        this.type = type;
+        this.geofence = geofence;
+        this.time = time;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public Geofence getGeofence() {
+        return geofence;
+    }
+
+    public long getTime() {
+        return time;
+    }
+
+    @Override
+    public String toString() {
+        return "GeofenceTransition{" + type + ", " + geofence.getUuid() + ", " + time + "}";
+    }
+}
@@ -16,6 +16,10 @@
 
 package com.github.stevenrudenko.geofence.core;
 
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
 /** Geofence utility methods. */
 public final class GeofenceUtils {
     private GeofenceUtils() {
@@ -25,11 +29,83 @@ public final class GeofenceUtils {
     public static boolean isInsideGeofence(Geofence geofence,
                                            LocationProvider.Location point, String ssid) {
         // device is still connected to geofence Wifi hotspot
-        if (ssid != null && geofence.getSsidPattern().matcher(ssid).matches()) {
+        if (isSsidMatches(geofence, ssid)) {
+            return true;
+        }
+        return isInsideArea(geofence, point);
+    }
+
+    /**
+     * @param geofence geofence to check
+     * @param ssid SSID of WiFi hotspot device connected to
+     * @return {@code true} if SSID matches geofence SSID pattern.
+     */
+    public static boolean isSsidMatches(Geofence geofence, String ssid) {
+        return ssid != null && geofence.getSsidPattern().matcher(ssid).matches();
+    }
+
+    /**
+     * @param ssid geofence SSID pattern
+     * @return {@code true} if geofence could be created with given SSID pattern.
+     */
+    public static boolean isSsidValid(String ssid) {
+        if (SsidMatcher.isLiteral(ssid) || SsidMatcher.isPrefix(ssid)) {
             return true;
         }
-        final float distance = distance(geofence.getPoint(), point);
-        return distance <= geofence.getRadius();
+        try {
+            Pattern.compile(ssid);
+            return true;
+        } catch (PatternSyntaxException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @param geofence geofence to check
+     * @param accessPoints visible WiFi access points
+     * @return {@code true} if geofence has fingerprint and enough of its access points are
+     * visible.
+     */
+    public static boolean isFingerprintMatches(Geofence geofence,
+                                               List<WifiInfoProvider.AccessPoint> accessPoints) {
+        return geofence.getFingerprint() != null
+                && geofence.getFingerprint().matches(accessPoints);
+    }
+
+    /**
+     * @param geofence geofence to check
+     * @param point device location
+     * @return {@code true} if point is located inside geofence circle.
+     */
+    public static boolean isInsideRadius(Geofence geofence, LocationProvider.Location point) {
+        final LocationProvider.Location center = geofence.getPoint();
+        return DistanceEngine.getDefault().isWithin(center.getLat(), center.getLng(),
+                point.getLat(), point.getLng(), geofence.getRadius());
+    }
+
+    /**
+     * @param geofence geofence to check
+     * @param point device location
+     * @return {@code true} if location is inside of geofence circle or polygon.
+     */
+    public static boolean isInsideArea(Geofence geofence, LocationProvider.Location point) {
+        final GeofencePolygon polygon = geofence.getPolygon();
+        return polygon == null
+                ? isInsideRadius(geofence, point)
+                : polygon.contains(point.getLat(), point.getLng());
+    }
+
+    /**
+     * @param geofence geofence to measure distance to
+     * @param point device location
+     * @return distance in meters from location to geofence boundary, never overestimated.
+     */
+    public static double boundaryDistance(Geofence geofence, LocationProvider.Location point) {
+        final GeofencePolygon polygon = geofence.getPolygon();
+        if (polygon != null) {
+            return polygon.boundaryDistance(point.getLat(), point.getLng());
+        }
+        return Math.abs(distance(geofence.getPoint(), point) - geofence.getRadius());
     }
 
     /**
@@ -39,15 +115,27 @@ public final class GeofenceUtils {
      * @return distance between two points in meters.
      */
     public static float distance(LocationProvider.Location from, LocationProvider.Location to) {
+        return distance(from.getLat(), from.getLng(), to.getLat(), to.getLng());
+    }
+
+    /**
+     * Calculates distance between two points using Vincenty inverse formula.
+     * @param fromLat start point latitude
+     * @param fromLng start point longitude
+     * @param toLat end point latitude
+     * @param toLng end point longitude
+     * @return distance between two points in meters.
+     */
+    public static float distance(double fromLat, double fromLng, double toLat, double toLng) {
         // Based on http://www.ngs.noaa.gov/PUBS_LIB/inverse.pdf
         // using the "Inverse Formula" (section 4)
 
         int MAXITERS = 20;
         // Convert lat/long to radians
-        double lat1 = from.getLat() * Math.PI / 180.0;
-        double lon1 = from.getLng() * Math.PI / 180.0;
-        double lat2 = to.getLat() * Math.PI / 180.0;
-        double lon2 = to.getLng() * Math.PI / 180.0;
+        double lat1 = fromLat * Math.PI / 180.0;
+        double lon1 = fromLng * Math.PI / 180.0;
+        double lat2 = toLat * Math.PI / 180.0;
+        double lon2 = toLng * Math.PI / 180.0;
 
         double a = 6378137.0; // WGS84 major axis
         double b = 6356752.3142; // WGS84 semi-major axis
@@ -14,14 +14,30 @@ public interface LocationProvider {
      */
     Observable<Location> getLocationUpdates();
 
+    /**
+     * Sets location updates policy. Provider is free to deliver updates more or less often.
+     * @param policy location updates policy
+     */
+    void setPolicy(Policy policy);
+
     /** Location instance. */
     class Location {
         /** Decimal latitude/longitude location values. */
         private final double lat, lng;
+        /** Accuracy radius in meters. Zero means exact location. */
+        private final float accuracy;
+        /** Location fix time in milliseconds since epoch. Zero means unknown. */
+        private final long time;
 
         public Location(double lat, double lng) {
+            this(lat, lng, 0, 0);
+        }
+
+        public Location(double lat, double lng, float accuracy, long time) {
             this.lat = lat;
             this.lng = lng;
+            this.accuracy = accuracy;
+            this.time = time;
         }
 
         public double getLat() {
@@ -31,5 +47,92 @@ public interface LocationProvider {
         public double getLng() {
             return lng;
         }
+
+        public float getAccuracy() {
+            return accuracy;
+        }
+
+        public long getTime() {
+            return time;
+        }
+    }
+
+    /** Location updates policy. */
+    class Policy {
+        /** Default policy. Keeps accurate updates coming often. */
+        public static final Policy DEFAULT = new Policy(Priority.HIGH_ACCURACY, 5000L, 5000L, 0);
+
+        /** Location accuracy to power consumption trade-off. */
+        public enum Priority {
+            /** City level accuracy. */
+            LOW_POWER,
+            /** Block level accuracy. */
+            BALANCED,
+            /** The most accurate locations available. */
+            HIGH_ACCURACY
+        }
+
+        /** Location accuracy priority. */
+        private final Priority priority;
+        /** Desired updates interval in milliseconds. */
+        private final long interval;
+        /** The fastest updates interval in milliseconds. */
+        private final long fastestInterval;
+        /**
+         * Maximal time in milliseconds updates could be delayed for to be delivered in batch.
+         * Zero means no batching.
+         */
+        private final long maxWaitTime;
+
+        public Policy(Priority priority, long interval, long fastestInterval, long maxWaitTime) {
+            this.priority = priority;
+            this.interval = interval;
+            this.fastestInterval = fastestInterval;
+            this.maxWaitTime = maxWaitTime;
+        }
+
+        public Priority getPriority() {
+            return priority;
+        }
+
+        public long getInterval() {
+            return interval;
+        }
+
+        public long getFastestInterval() {
+            return fastestInterval;
+        }
+
+        public long getMaxWaitTime() {
+            return maxWaitTime;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            Policy policy = (Policy) o;
+
+            if (interval != policy.interval) return false;
+            if (fastestInterval != policy.fastestInterval) return false;
+            if (maxWaitTime != policy.maxWaitTime) return false;
+            return priority == policy.priority;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = priority.hashCode();
+            result = 31 * result + (int) (interval ^ (interval >>> 32));
+            result = 31 * result + (int) (fastestInterval ^ (fastestInterval >>> 32));
+            result = 31 * result + (int) (maxWaitTime ^ (maxWaitTime >>> 32));
+            return result;
+        }
+
+        @Override
+        public String toString() {
+            return "Policy{priority=" + priority + ", interval=" + interval
+                    + ", fastestInterval=" + fastestInterval + ", maxWaitTime=" + maxWaitTime + "}";
+        }
     }
 }
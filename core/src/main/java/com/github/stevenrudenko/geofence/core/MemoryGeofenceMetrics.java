@@ -0,0 +1,218 @@
+package com.github.stevenrudenko.geofence.core;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Keeps {@link GeofenceMetrics} in memory. Latencies are collected into histograms with power
+ * of two buckets, so recording is lock free and takes constant memory.
+ */
+public class MemoryGeofenceMetrics implements GeofenceMetrics {
+    /** Check latency in nanoseconds. */
+    private final Histogram checkLatency = new Histogram();
+    /** Evaluation latency in nanoseconds. */
+    private final Histogram evaluationLatency = new Histogram();
+    /** Lag between location fix and check in milliseconds. */
+    private final Histogram queueLag = new Histogram();
+    /** Number of checked events. */
+    private final AtomicLong events = new AtomicLong();
+    /** Number of evaluations. */
+    private final AtomicLong evaluations = new AtomicLong();
+    /** Number of skipped evaluations. */
+    private final AtomicLong skipped = new AtomicLong();
+    /** Number of distance checked geofences. */
+    private final AtomicLong evaluated = new AtomicLong();
+    /** Number of geofences matched by SSID. */
+    private final AtomicLong ssidMatches = new AtomicLong();
+    /** Number of geofences matched by distance. */
+    private final AtomicLong distanceMatches = new AtomicLong();
+
+    @Override
+    public void onEvent(long lag) {
+        events.incrementAndGet();
+        if (lag >= 0) {
+            queueLag.record(lag);
+        }
+    }
+
+    @Override
+    public void onCheck(long duration) {
+        checkLatency.record(duration);
+    }
+
+    @Override
+    public void onEvaluation(long duration, int evaluated, int ssidMatches,
+                             int distanceMatches) {
+        evaluationLatency.record(duration);
+        evaluations.incrementAndGet();
+        this.evaluated.addAndGet(evaluated);
+        this.ssidMatches.addAndGet(ssidMatches);
+        this.distanceMatches.addAndGet(distanceMatches);
+    }
+
+    @Override
+    public void onSkipped() {
+        skipped.incrementAndGet();
+    }
+
+    public Histogram getCheckLatency() {
+        return checkLatency;
+    }
+
+    public Histogram getEvaluationLatency() {
+        return evaluationLatency;
+    }
+
+    public Histogram getQueueLag() {
+        return queueLag;
+    }
+
+    public long getEvents() {
+        return events.get();
+    }
+
+    public long getEvaluations() {
+        return evaluations.get();
+    }
+
+    public long getSkipped() {
+        return skipped.get();
+    }
+
+    public long getEvaluated() {
+        return evaluated.get();
+    }
+
+    public long getSsidMatches() {
+        return ssidMatches.get();
+    }
+
+    public long getDistanceMatches() {
+        return distanceMatches.get();
+    }
+
+    /** Resets all metrics. */
+    public void reset() {
+        checkLatency.reset();
+        evaluationLatency.reset();
+        queueLag.reset();
+        events.set(0);
+        evaluations.set(0);
+        skipped.set(0);
+        evaluated.set(0);
+        ssidMatches.set(0);
+        distanceMatches.set(0);
+    }
+
+    /**
+     * @return human readable metrics summary.
+     */
+    public String dump() {
+        final long nanosPerMicro = TimeUnit.MICROSECONDS.toNanos(1);
+        return String.format(Locale.US,
+                "events=%d evaluations=%d skipped=%d evaluated=%d ssidMatches=%d distanceMatches=%d%n"
+                        + "check us: %s%n"
+                        + "evaluation us: %s%n"
+                        + "queue lag ms: %s",
+                getEvents(), getEvaluations(), getSkipped(), getEvaluated(), getSsidMatches(),
+                getDistanceMatches(),
+                checkLatency.toString(nanosPerMicro),
+                evaluationLatency.toString(nanosPerMicro),
+                queueLag.toString(1));
+    }
+
+    @Override
+    public String toString() {
+        return dump();
+    }
+
+    /**
+     * Histogram of non-negative values. Bucket {@code k} holds values of
+     * {@code [2^(k-1), 2^k)} range, so percentiles are reported with up to twice error.
+     */
+    public static class Histogram {
+        /** Number of buckets: zero and one per every long bit. */
+        private static final int BUCKETS = 64;
+
+        /** Number of values in bucket. */
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        /** Number of values. */
+        private final AtomicLong count = new AtomicLong();
+        /** Sum of values. */
+        private final AtomicLong sum = new AtomicLong();
+        /** Maximal value. */
+        private final AtomicLong max = new AtomicLong();
+
+        public void record(long value) {
+            if (value < 0) {
+                value = 0;
+            }
+            buckets.incrementAndGet(BUCKETS - Long.numberOfLeadingZeros(value));
+            count.incrementAndGet();
+            sum.addAndGet(value);
+            long current;
+            while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+                // retry
+            }
+        }
+
+        public long getCount() {
+            return count.get();
+        }
+
+        public long getMax() {
+            return max.get();
+        }
+
+        /**
+         * @return mean value or {@code 0} if there are no values.
+         */
+        public double getMean() {
+            final long count = this.count.get();
+            return count == 0 ? 0 : (double) sum.get() / count;
+        }
+
+        /**
+         * @param percentile percentile in {@code [0, 100]} range
+         * @return upper bound of bucket given percentile falls into, but not greater than
+         * maximal value.
+         */
+        public long getPercentile(double percentile) {
+            final long count = this.count.get();
+            if (count == 0) {
+                return 0;
+            }
+            final long rank = Math.max(1, (long) Math.ceil(count * percentile / 100.0));
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; ++i) {
+                seen += buckets.get(i);
+                if (seen >= rank) {
+                    return Math.min((1L << i) - 1, max.get());
+                }
+            }
+            return max.get();
+        }
+
+        void reset() {
+            for (int i = 0; i < BUCKETS; ++i) {
+                buckets.set(i, 0);
+            }
+            count.set(0);
+            sum.set(0);
+            max.set(0);
+        }
+
+        String toString(long unit) {
+            return String.format(Locale.US, "count=%d mean=%.1f p50=%d p90=%d p99=%d max=%d",
+                    getCount(), getMean() / unit, getPercentile(50) / unit,
+                    getPercentile(90) / unit, getPercentile(99) / unit, getMax() / unit);
+        }
+
+        @Override
+        public String toString() {
+            return toString(1);
+        }
+    }
+}
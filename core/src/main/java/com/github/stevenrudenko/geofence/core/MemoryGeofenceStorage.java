@@ -1,41 +1,100 @@
 package com.github.stevenrudenko.geofence.core;
 
-import com.github.stevenrudenko.geofence.core.Geofence;
-import com.github.stevenrudenko.geofence.core.GeofenceStorage;
-
-import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 
 import io.reactivex.Observable;
 import io.reactivex.subjects.BehaviorSubject;
+import io.reactivex.subjects.PublishSubject;
+import io.reactivex.subjects.Subject;
 
 /** Memory implementation for {@link GeofenceStorage}. Used in tests. */
 public class MemoryGeofenceStorage implements GeofenceStorage {
     /** Memory storage. */
-    private final List<Geofence> geofences = new ArrayList<>();
+    private final GeofenceRegistry registry = new GeofenceRegistry();
 
     /** Used to proxy geo state updates. */
     private final BehaviorSubject<List<Geofence>> geofencesSubject = BehaviorSubject.create();
+    /** Used to proxy geofence changes. */
+    private final Subject<GeofenceChange> changesSubject =
+            PublishSubject.<GeofenceChange>create().toSerialized();
 
     @Override
     public Observable<List<Geofence>> getGeofenceUpdates() {
         return geofencesSubject;
     }
 
+    @Override
+    public Observable<GeofenceChange> getGeofenceChanges() {
+        return Observable.create(emitter -> {
+            // hold lock so no change is written between reading and subscription
+            synchronized (registry) {
+                emitter.onNext(GeofenceChange.reset(getGeofences()));
+                emitter.setDisposable(changesSubject.subscribe(emitter::onNext, emitter::onError));
+            }
+        });
+    }
+
     @Override
     public List<Geofence> getGeofences() {
-        return new ArrayList<>(geofences);
+        return registry.getSnapshot().getGeofences();
+    }
+
+    @Override
+    public List<Geofence> getGeofences(BoundingBox box) {
+        return registry.getSnapshot().getGeofences(box);
     }
 
     @Override
     public void add(Geofence geofence) {
-        geofences.add(geofence);
-        geofencesSubject.onNext(geofences);
+        final List<Geofence> change = Collections.singletonList(geofence);
+        synchronized (registry) {
+            final GeofenceChange result = registry.addAll(change);
+            geofencesSubject.onNext(getGeofences());
+            changesSubject.onNext(result.getAdded().isEmpty()
+                    ? GeofenceChange.updated(change) : GeofenceChange.added(change));
+        }
     }
 
     @Override
     public void remove(Geofence geofence) {
-        geofences.remove(geofence);
-        geofencesSubject.onNext(geofences);
+        synchronized (registry) {
+            final GeofenceChange result =
+                    registry.removeAll(Collections.singletonList(geofence));
+            geofencesSubject.onNext(getGeofences());
+            if (!result.isEmpty()) {
+                changesSubject.onNext(result);
+            }
+        }
+    }
+
+    @Override
+    public void addAll(Collection<Geofence> geofences) {
+        synchronized (registry) {
+            final GeofenceChange result = registry.addAll(geofences);
+            geofencesSubject.onNext(getGeofences());
+            changesSubject.onNext(result);
+        }
+    }
+
+    @Override
+    public void removeAll(Collection<Geofence> geofences) {
+        synchronized (registry) {
+            final GeofenceChange result = registry.removeAll(geofences);
+            geofencesSubject.onNext(getGeofences());
+            if (!result.isEmpty()) {
+                changesSubject.onNext(result);
+            }
+        }
+    }
+
+    @Override
+    public void replaceAll(Collection<Geofence> geofences) {
+        synchronized (registry) {
+            final GeofenceChange result = registry.replaceAll(geofences);
+            geofencesSubject.onNext(getGeofences());
+            changesSubject.onNext(result);
+        }
     }
 }
@@ -0,0 +1,157 @@
+package com.github.stevenrudenko.geofence.core;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides whether location update should be evaluated. Device can't cross any geofence boundary
+ * until it moves farther than distance to nearest boundary from last evaluated location, so
+ * updates within that distance are skipped.
+ * <p>
+ * Device speed is estimated from location updates and used to recommend location updates
+ * policy: update interval is time device needs to reach nearest boundary, accuracy drops and
+ * updates are batched while boundaries are far away. Location is not needed to be accurate at
+ * all while device is recognized at known site by WiFi fingerprint.
+ * <p>
+ * Not thread safe.
+ */
+class MotionScheduler {
+    /** Boundaries farther than that are not looked for, in meters. */
+    static final double SEARCH_DISTANCE = 5000;
+    /** Speed of device which looks still in meters per second. It is walking pace. */
+    static final double MIN_SPEED = 1.5;
+    /** Minimal recommended update interval. */
+    static final long MIN_INTERVAL = TimeUnit.SECONDS.toMillis(5);
+    /** Maximal recommended update interval. */
+    static final long MAX_INTERVAL = TimeUnit.MINUTES.toMillis(2);
+    /** Boundaries closer than that in meters require the most accurate locations. */
+    static final double NEAR_DISTANCE = 500;
+    /** Number of updates batched together while there are no boundaries around. */
+    static final int BATCH_SIZE = 4;
+
+    /** Indicates whether there is evaluated location. */
+    private boolean evaluated;
+    /** Last evaluated location. */
+    private double evaluatedLat, evaluatedLng;
+    /** Distance to nearest boundary from last evaluated location in meters. */
+    private double margin;
+
+    /** Indicates whether there is previous location update. */
+    private boolean hasPrevious;
+    /** Previous location update. */
+    private double previousLat, previousLng;
+    /** Previous location update time in milliseconds. */
+    private long previousTime;
+    /** Estimated speed in meters per second. */
+    private double speed;
+    /** Indicates whether last evaluation recognized known site by WiFi fingerprint. */
+    private boolean recognized;
+
+    /**
+     * Takes location update into account.
+     * @param lat device latitude
+     * @param lng device longitude
+     * @param time update time in milliseconds
+     * @return {@code true} if location should be evaluated.
+     */
+    boolean onLocation(double lat, double lng, long time) {
+        if (hasPrevious && time > previousTime) {
+            final double distance = DistanceEngine.haversine(previousLat, previousLng, lat, lng);
+            final double current = distance * 1000.0 / (time - previousTime);
+            // smooth out location jitter
+            speed = speed == 0 ? current : (speed + current) / 2.0;
+        }
+        hasPrevious = true;
+        previousLat = lat;
+        previousLng = lng;
+        previousTime = time;
+        return !evaluated || moved(lat, lng) >= margin;
+    }
+
+    /**
+     * Sets last evaluated location.
+     * @param lat device latitude
+     * @param lng device longitude
+     * @param margin distance to nearest boundary in meters
+     */
+    void onEvaluated(double lat, double lng, double margin) {
+        onEvaluated(lat, lng, margin, false);
+    }
+
+    /**
+     * Sets last evaluated location.
+     * @param lat device latitude
+     * @param lng device longitude
+     * @param margin distance to nearest boundary in meters
+     * @param recognized whether known site is recognized by WiFi fingerprint
+     */
+    void onEvaluated(double lat, double lng, double margin, boolean recognized) {
+        this.recognized = recognized;
+        evaluated = true;
+        evaluatedLat = lat;
+        evaluatedLng = lng;
+        this.margin = margin;
+    }
+
+    /** Makes next location to be evaluated. Used when geofences change. */
+    void invalidate() {
+        evaluated = false;
+    }
+
+    /**
+     * @return recommended location updates policy.
+     */
+    LocationProvider.Policy getPolicy() {
+        if (!evaluated || !hasPrevious) {
+            return LocationProvider.Policy.DEFAULT;
+        }
+        if (recognized) {
+            // WiFi decides while device is at known site, so location is barely needed
+            return new LocationProvider.Policy(LocationProvider.Policy.Priority.LOW_POWER,
+                    MAX_INTERVAL, MIN_INTERVAL, MAX_INTERVAL * BATCH_SIZE);
+        }
+        final long interval = getUpdateInterval();
+        final double remaining = remaining();
+        if (remaining < NEAR_DISTANCE) {
+            return new LocationProvider.Policy(LocationProvider.Policy.Priority.HIGH_ACCURACY,
+                    interval, MIN_INTERVAL, 0);
+        }
+        if (remaining < SEARCH_DISTANCE) {
+            return new LocationProvider.Policy(LocationProvider.Policy.Priority.BALANCED,
+                    interval, MIN_INTERVAL, 0);
+        }
+        // nothing to cross around, so fixes could be coarse and delivered in bulk
+        return new LocationProvider.Policy(LocationProvider.Policy.Priority.LOW_POWER,
+                interval, MIN_INTERVAL, interval * BATCH_SIZE);
+    }
+
+    /**
+     * @return recommended location update interval in milliseconds.
+     */
+    long getUpdateInterval() {
+        if (!evaluated || !hasPrevious) {
+            return MIN_INTERVAL;
+        }
+        final double time = remaining() * 1000.0 / Math.max(speed, MIN_SPEED);
+        // interval changes in steps, so location provider is not reconfigured too often
+        long result = MIN_INTERVAL;
+        while (result * 2 <= time && result * 2 <= MAX_INTERVAL) {
+            result *= 2;
+        }
+        return result;
+    }
+
+    /**
+     * @return distance to nearest boundary from last known location.
+     */
+    private double remaining() {
+        return margin - moved(previousLat, previousLng);
+    }
+
+    /**
+     * @return distance from last evaluated location, never underestimated.
+     */
+    private double moved(double lat, double lng) {
+        return DistanceEngine.haversine(evaluatedLat, evaluatedLng, lat, lng)
+                * (1.0 + DistanceEngine.ESTIMATE_ERROR);
+    }
+}
@@ -0,0 +1,413 @@
+package com.github.stevenrudenko.geofence.core;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import io.reactivex.Observable;
+import io.reactivex.Scheduler;
+import io.reactivex.schedulers.Schedulers;
+import io.reactivex.subjects.PublishSubject;
+
+/**
+ * Keeps only geofences around device resident. Geofences are loaded from backing storage by
+ * grid tiles: tiles within {@link #radius} of last location are loaded along with neighbour
+ * tiles to be ready for device movement. Least recently used tiles are evicted once there are
+ * more than {@link #maxTiles} of them, so memory usage doesn't depend on backing storage size.
+ * Limit is raised to the number of tiles around location if it is smaller, so tiles aren't
+ * reloaded on every location.
+ * <p>
+ * Tiles are loaded on paging scheduler, never on thread locations come on. Writes go to
+ * backing storage. Its changes are applied to resident geofences.
+ * <p>
+ * Resident geofences aren't known till first location is paged, so reset change is emitted
+ * only then. Empty reset means there are no geofences around device.
+ */
+public class PagedGeofenceStorage implements GeofenceStorage {
+    /** Default resident radius in meters. */
+    public static final int DEFAULT_RADIUS = 20000;
+    /** Default tile size in degrees (~11 km on latitude). */
+    public static final double DEFAULT_TILE_SIZE = 0.1;
+    /** Default maximal number of resident tiles. */
+    public static final int DEFAULT_MAX_TILES = 64;
+
+    /** Storage to load geofences from. */
+    private final GeofenceStorage backing;
+    /** Resident radius in meters. */
+    private final int radius;
+    /** Tile size in degrees. */
+    private final double tileSize;
+    /** Number of tile columns. */
+    private final int columns;
+    /** Maximal number of resident tiles. */
+    private final int maxTiles;
+
+    /** Resident geofences changes. Emitted while holding lock. */
+    private final PublishSubject<GeofenceChange> changes = PublishSubject.create();
+    /** Pages geofences while there is any changes subscriber. */
+    private final Observable<Object> paging;
+
+    /** Resident tiles in access order. */
+    private final LinkedHashMap<Long, Tile> tiles = new LinkedHashMap<>(16, 0.75f, true);
+    /** Resident geofences mapped by UUID. */
+    private final Map<String, Resident> residents = new HashMap<>();
+    /** Last known location. */
+    private LocationProvider.Location lastLocation;
+
+    public PagedGeofenceStorage(GeofenceStorage backing,
+                                Observable<LocationProvider.Location> locations) {
+        this(backing, locations, DEFAULT_RADIUS, DEFAULT_TILE_SIZE, DEFAULT_MAX_TILES);
+    }
+
+    public PagedGeofenceStorage(GeofenceStorage backing,
+                                Observable<LocationProvider.Location> locations,
+                                int radius, double tileSize, int maxTiles) {
+        this(backing, locations, radius, tileSize, maxTiles, Schedulers.io());
+    }
+
+    /**
+     * @param backing storage to load geofences from
+     * @param locations device locations
+     * @param radius resident radius in meters
+     * @param tileSize tile size in degrees
+     * @param maxTiles maximal number of resident tiles
+     * @param pageOn scheduler to load tiles and apply backing storage changes on
+     */
+    public PagedGeofenceStorage(GeofenceStorage backing,
+                                Observable<LocationProvider.Location> locations,
+                                int radius, double tileSize, int maxTiles, Scheduler pageOn) {
+        if (tileSize <= 0 || tileSize > 180) {
+            throw new IllegalArgumentException("Illegal tile size: " + tileSize);
+        }
+        if (maxTiles < 1) {
+            throw new IllegalArgumentException("Illegal maximal number of tiles: " + maxTiles);
+        }
+        this.backing = backing;
+        this.radius = radius;
+        this.tileSize = tileSize;
+        this.columns = (int) Math.ceil(360.0 / tileSize);
+        this.maxTiles = maxTiles;
+        // single paging worker keeps locations and backing changes in order
+        this.paging = Observable.<Object>merge(
+                locations,
+                // first backing change is its whole content which is paged by location
+                backing.getGeofenceChanges().skip(1))
+                .observeOn(pageOn)
+                .doOnNext(event -> {
+                    if (event instanceof GeofenceChange) {
+                        onBackingChange((GeofenceChange) event);
+                    } else {
+                        onLocation((LocationProvider.Location) event);
+                    }
+                })
+                .share();
+    }
+
+    @Override
+    public Observable<List<Geofence>> getGeofenceUpdates() {
+        return getGeofenceChanges().map(change -> getGeofences());
+    }
+
+    @Override
+    public Observable<GeofenceChange> getGeofenceChanges() {
+        return Observable.<GeofenceChange>create(emitter -> {
+            // hold lock so no change is emitted between reading and subscription
+            synchronized (this) {
+                if (lastLocation != null) {
+                    emitter.onNext(GeofenceChange.reset(getGeofences()));
+                }
+                emitter.setDisposable(changes.subscribe(emitter::onNext, emitter::onError));
+            }
+        }).mergeWith(paging.ignoreElements().<GeofenceChange>toObservable());
+    }
+
+    @Override
+    public synchronized List<Geofence> getGeofences() {
+        final List<Geofence> result = new ArrayList<>(residents.size());
+        for (Resident resident : residents.values()) {
+            result.add(resident.geofence);
+        }
+        return result;
+    }
+
+    @Override
+    public List<Geofence> getGeofences(BoundingBox box) {
+        return backing.getGeofences(box);
+    }
+
+    /**
+     * @return number of resident tiles.
+     */
+    public synchronized int getTileCount() {
+        return tiles.size();
+    }
+
+    @Override
+    public void add(Geofence geofence) {
+        backing.add(geofence);
+    }
+
+    @Override
+    public void remove(Geofence geofence) {
+        backing.remove(geofence);
+    }
+
+    @Override
+    public void addAll(Collection<Geofence> geofences) {
+        backing.addAll(geofences);
+    }
+
+    @Override
+    public void removeAll(Collection<Geofence> geofences) {
+        backing.removeAll(geofences);
+    }
+
+    @Override
+    public void replaceAll(Collection<Geofence> geofences) {
+        backing.replaceAll(geofences);
+    }
+
+    private synchronized void onLocation(LocationProvider.Location location) {
+        final boolean loaded = lastLocation != null;
+        final GeofenceChange change = page(location);
+        publish(loaded ? change : GeofenceChange.reset(getGeofences()));
+    }
+
+    private synchronized void onBackingChange(GeofenceChange change) {
+        if (lastLocation == null) {
+            // nothing is resident yet, first location pages actual backing content
+            return;
+        }
+        publish(filter(change));
+    }
+
+    private void publish(GeofenceChange change) {
+        if (!change.isEmpty()) {
+            changes.onNext(change);
+        }
+    }
+
+    /**
+     * Loads tiles around location and evicts least recently used ones.
+     * @param location device location
+     * @return resident geofences change.
+     */
+    synchronized GeofenceChange page(LocationProvider.Location location) {
+        lastLocation = location;
+        final List<Geofence> added = new ArrayList<>();
+        final List<Geofence> removed = new ArrayList<>();
+        // tiles within radius go last, so they are the most recently used ones
+        final Set<Long> required = tilesAround(location, radius, 0);
+        // one more tile in every direction, whatever tile width at location latitude is
+        final Set<Long> around = tilesAround(location, radius, 1);
+        final Set<Long> prefetch = new HashSet<>(around);
+        prefetch.removeAll(required);
+        for (Long key : prefetch) {
+            touch(key, added);
+        }
+        for (Long key : required) {
+            touch(key, added);
+        }
+        final Iterator<Map.Entry<Long, Tile>> iterator = tiles.entrySet().iterator();
+        final int limit = Math.max(maxTiles, around.size());
+        while (tiles.size() > limit && iterator.hasNext()) {
+            final Map.Entry<Long, Tile> entry = iterator.next();
+            if (around.contains(entry.getKey())) {
+                continue;
+            }
+            iterator.remove();
+            for (Geofence geofence : entry.getValue().geofences) {
+                release(geofence, removed);
+            }
+        }
+        if (!removed.isEmpty() && !added.isEmpty()) {
+            // geofences of tiles which were loaded and evicted at once are not reported
+            final Set<Geofence> both = new HashSet<>(added);
+            both.retainAll(removed);
+            added.removeAll(both);
+            removed.removeAll(both);
+        }
+        return new GeofenceChange(added, removed, Collections.<Geofence>emptyList());
+    }
+
+    /**
+     * Applies backing storage change to resident geofences.
+     * @param change backing storage change
+     * @return resident geofences change.
+     */
+    synchronized GeofenceChange filter(GeofenceChange change) {
+        if (change.isReset()) {
+            tiles.clear();
+            residents.clear();
+            if (lastLocation != null) {
+                page(lastLocation);
+            }
+            return GeofenceChange.reset(getGeofences());
+        }
+        final List<Geofence> added = new ArrayList<>();
+        final List<Geofence> removed = new ArrayList<>();
+        final List<Geofence> updated = new ArrayList<>();
+        for (Geofence geofence : change.getRemoved()) {
+            evict(geofence.getUuid(), removed);
+        }
+        final List<Geofence> changed = new ArrayList<>(change.getAdded());
+        changed.addAll(change.getUpdated());
+        for (Geofence geofence : changed) {
+            final Geofence previous = evict(geofence.getUuid(), null);
+            final BoundingBox box = BoundingBox.of(geofence);
+            for (Tile tile : tiles.values()) {
+                if (tile.box.intersects(box)) {
+                    tile.geofences.add(geofence);
+                    retain(geofence, null);
+                }
+            }
+            final boolean isResident = residents.containsKey(geofence.getUuid());
+            if (previous != null && isResident) {
+                updated.add(geofence);
+            } else if (isResident) {
+                added.add(geofence);
+            } else if (previous != null) {
+                removed.add(previous);
+            }
+        }
+        return new GeofenceChange(added, removed, updated);
+    }
+
+    private void touch(Long key, List<Geofence> added) {
+        if (tiles.get(key) != null) {
+            return;
+        }
+        final Tile tile = new Tile(tileBox(key), new ArrayList<Geofence>());
+        tile.geofences.addAll(backing.getGeofences(tile.box));
+        tiles.put(key, tile);
+        for (Geofence geofence : tile.geofences) {
+            retain(geofence, added);
+        }
+    }
+
+    private void retain(Geofence geofence, List<Geofence> added) {
+        final Resident resident = residents.get(geofence.getUuid());
+        if (resident == null) {
+            residents.put(geofence.getUuid(), new Resident(geofence));
+            if (added != null) {
+                added.add(geofence);
+            }
+        } else {
+            ++resident.tiles;
+        }
+    }
+
+    private void release(Geofence geofence, List<Geofence> removed) {
+        final Resident resident = residents.get(geofence.getUuid());
+        if (resident != null && --resident.tiles == 0) {
+            residents.remove(geofence.getUuid());
+            removed.add(resident.geofence);
+        }
+    }
+
+    /**
+     * Removes geofence from all resident tiles.
+     * @return evicted geofence or {@code null} if it wasn't resident.
+     */
+    private Geofence evict(String uuid, List<Geofence> removed) {
+        final Resident resident = residents.remove(uuid);
+        if (resident == null) {
+            return null;
+        }
+        for (Tile tile : tiles.values()) {
+            final Iterator<Geofence> iterator = tile.geofences.iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().getUuid().equals(uuid)) {
+                    iterator.remove();
+                }
+            }
+        }
+        if (removed != null) {
+            removed.add(resident.geofence);
+        }
+        return resident.geofence;
+    }
+
+    /**
+     * @param location device location
+     * @param distance distance in meters
+     * @param margin number of tiles to add in every direction
+     * @return keys of tiles within distance of location.
+     */
+    private Set<Long> tilesAround(LocationProvider.Location location, double distance,
+                                  int margin) {
+        final Set<Long> result = new HashSet<>();
+        final double latDelta = BoundingBox.latitudeDelta(distance);
+        final double lngDelta = BoundingBox.longitudeDelta(location.getLat(), distance);
+        final int minRow = Math.max(0,
+                row(Math.max(-90.0, location.getLat() - latDelta)) - margin);
+        final int maxRow = Math.min((int) Math.ceil(180.0 / tileSize) - 1,
+                row(Math.min(90.0, location.getLat() + latDelta)) + margin);
+        final int minColumn;
+        final int maxColumn;
+        if (lngDelta >= 180.0) {
+            minColumn = 0;
+            maxColumn = columns - 1;
+        } else {
+            minColumn = column(location.getLng() - lngDelta) - margin;
+            maxColumn = Math.min(minColumn + columns - 1,
+                    column(location.getLng() + lngDelta) + margin);
+        }
+        for (int row = minRow; row <= maxRow; ++row) {
+            for (int column = minColumn; column <= maxColumn; ++column) {
+                // wrap around anti-meridian
+                result.add((long) row * columns + ((column % columns) + columns) % columns);
+            }
+        }
+        return result;
+    }
+
+    private BoundingBox tileBox(long key) {
+        final int row = (int) (key / columns);
+        final int column = (int) (key % columns);
+        final double minLat = row * tileSize - 90.0;
+        final double minLng = column * tileSize - 180.0;
+        return new BoundingBox(minLat, Math.min(90.0, minLat + tileSize),
+                minLng, Math.min(180.0, minLng + tileSize));
+    }
+
+    private int row(double lat) {
+        return (int) Math.floor((lat + 90.0) / tileSize);
+    }
+
+    private int column(double lng) {
+        return (int) Math.floor((lng + 180.0) / tileSize);
+    }
+
+    /** Resident tile. */
+    private static class Tile {
+        /** Tile area. */
+        final BoundingBox box;
+        /** Geofences intersecting tile area. */
+        final List<Geofence> geofences;
+
+        private Tile(BoundingBox box, List<Geofence> geofences) {
+            this.box = box;
+            this.geofences = geofences;
+        }
+    }
+
+    /** Resident geofence. */
+    private static class Resident {
+        /** Geofence. */
+        final Geofence geofence;
+        /** Number of resident tiles geofence belongs to. */
+        int tiles = 1;
+
+        private Resident(Geofence geofence) {
+            this.geofence = geofence;
+        }
+    }
+}
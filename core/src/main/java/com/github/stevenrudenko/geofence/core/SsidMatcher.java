@@ -0,0 +1,285 @@
+package com.github.stevenrudenko.geofence.core;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Resolves SSID to values which SSID pattern matches it. Patterns are classified once value is
+ * added:
+ * <ul>
+ *     <li>literals (like {@code Office}) are looked up in hash map;</li>
+ *     <li>prefixes (like {@code Hotel.*}) are looked up in trie;</li>
+ *     <li>other patterns are real regular expressions. They are joined into one pattern used to
+ *     reject SSID at once, and evaluated one by one only when joined pattern matches.</li>
+ * </ul>
+ * Literals and prefixes are never compiled. Regular expressions are taken from
+ * {@link SsidPatternCache} and joined on first match, so building matcher is cheap.
+ * Invalid regular expressions never match.
+ * <p>
+ * Modifications are not thread safe, call {@link #commit()} after them. Matching is thread safe
+ * while matcher is not modified.
+ * @param <T> type of matched values
+ */
+class SsidMatcher<T> {
+    /** Regular expression special characters. */
+    private static final String SPECIAL_CHARS = "\\.[]{}()*+?^$|";
+    /** Prefix pattern suffix. */
+    private static final String ANY_SUFFIX = ".*";
+
+    /** Values with literal SSID mapped by SSID. */
+    private final Map<String, List<T>> literals = new HashMap<>();
+    /** Values with prefix SSID. */
+    private final TrieNode<T> prefixes = new TrieNode<>();
+    /** Values with regular expression SSID. */
+    private final List<Regex<T>> regexes = new ArrayList<>();
+    /** Values which regular expression can't be joined with others. */
+    private final List<Regex<T>> standalone = new ArrayList<>();
+    /**
+     * Rejects SSID which doesn't match any of {@link #regexes}. {@code null} if it can't be
+     * joined, then every regular expression is evaluated.
+     */
+    private volatile Pattern joined;
+    /** Indicates whether {@link #joined} is built for actual {@link #regexes}. */
+    private volatile boolean joinedBuilt;
+    /** Indicates whether {@link #regexes} were changed since last commit. */
+    private boolean dirty;
+
+    /**
+     * @param ssid SSID pattern
+     * @param value value matched by pattern
+     */
+    void add(String ssid, T value) {
+        if (isLiteral(ssid)) {
+            List<T> values = literals.get(ssid);
+            if (values == null) {
+                values = new ArrayList<>(1);
+                literals.put(ssid, values);
+            }
+            values.add(value);
+        } else if (isPrefix(ssid)) {
+            prefixes.find(prefix(ssid), true).values.add(value);
+        } else if (isJoinable(ssid)) {
+            regexes.add(new Regex<>(ssid, value));
+            dirty = true;
+        } else {
+            standalone.add(new Regex<>(ssid, value));
+        }
+    }
+
+    /**
+     * @param ssid SSID pattern value was added with
+     * @param value value to remove
+     */
+    void remove(String ssid, T value) {
+        if (isLiteral(ssid)) {
+            final List<T> values = literals.get(ssid);
+            if (values != null && values.remove(value) && values.isEmpty()) {
+                literals.remove(ssid);
+            }
+        } else if (isPrefix(ssid)) {
+            final TrieNode<T> node = prefixes.find(prefix(ssid), false);
+            if (node != null) {
+                node.values.remove(value);
+            }
+        } else if (isJoinable(ssid)) {
+            dirty |= remove(regexes, ssid, value);
+        } else {
+            remove(standalone, ssid, value);
+        }
+    }
+
+    /** Drops joined pattern if regular expressions were changed. It is rebuilt on match. */
+    void commit() {
+        if (!dirty) {
+            return;
+        }
+        dirty = false;
+        joinedBuilt = false;
+        joined = null;
+    }
+
+    /**
+     * Looks for values which SSID pattern matches given SSID.
+     * @param ssid SSID to match
+     * @param result used to collect matched values
+     */
+    void match(String ssid, List<T> result) {
+        final List<T> exact = literals.get(ssid);
+        if (exact != null) {
+            result.addAll(exact);
+        }
+        TrieNode<T> node = prefixes;
+        for (int i = 0, length = ssid.length(); node != null; ++i) {
+            if (!node.values.isEmpty() && !hasLineTerminator(ssid, i)) {
+                result.addAll(node.values);
+            }
+            node = i < length ? node.children.get(ssid.charAt(i)) : null;
+        }
+        if (!regexes.isEmpty()) {
+            final Pattern joined = getJoined();
+            if (joined == null || joined.matcher(ssid).matches()) {
+                collect(regexes, ssid, result);
+            }
+        }
+        collect(standalone, ssid, result);
+    }
+
+    private Pattern getJoined() {
+        if (joinedBuilt) {
+            return joined;
+        }
+        // racing threads build equal patterns
+        final StringBuilder builder = new StringBuilder();
+        for (Regex<T> regex : regexes) {
+            if (builder.length() > 0) {
+                builder.append('|');
+            }
+            builder.append("(?:").append(regex.ssid).append(')');
+        }
+        Pattern pattern;
+        try {
+            pattern = Pattern.compile(builder.toString());
+        } catch (PatternSyntaxException e) {
+            // some pattern is invalid or breaks others, so every one is evaluated
+            pattern = null;
+        }
+        joined = pattern;
+        joinedBuilt = true;
+        return pattern;
+    }
+
+    private static <T> void collect(List<Regex<T>> regexes, String ssid, List<T> result) {
+        for (int i = 0, size = regexes.size(); i < size; ++i) {
+            final Regex<T> regex = regexes.get(i);
+            if (regex.matches(ssid)) {
+                result.add(regex.value);
+            }
+        }
+    }
+
+    private static <T> boolean remove(List<Regex<T>> regexes, String ssid, T value) {
+        for (int i = 0, size = regexes.size(); i < size; ++i) {
+            final Regex<T> regex = regexes.get(i);
+            if (regex.ssid.equals(ssid) && regex.value.equals(value)) {
+                regexes.remove(i);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static boolean isLiteral(String ssid) {
+        for (int i = 0, length = ssid.length(); i < length; ++i) {
+            if (SPECIAL_CHARS.indexOf(ssid.charAt(i)) >= 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static boolean isPrefix(String ssid) {
+        return ssid.endsWith(ANY_SUFFIX) && isLiteral(prefix(ssid));
+    }
+
+    private static String prefix(String ssid) {
+        return ssid.substring(0, ssid.length() - ANY_SUFFIX.length());
+    }
+
+    /**
+     * Patterns which refer groups by number or name, define named groups, or quote till the end
+     * of pattern would be broken by joining.
+     */
+    static boolean isJoinable(String ssid) {
+        for (int i = 0, length = ssid.length() - 1; i < length; ++i) {
+            final char c = ssid.charAt(i);
+            if (c == '\\') {
+                final char next = ssid.charAt(i + 1);
+                if ((next >= '1' && next <= '9') || next == 'k' || next == 'Q') {
+                    return false;
+                }
+                // skip escaped character
+                ++i;
+            } else if (c == '(' && ssid.startsWith("?<", i + 1) && i + 3 < ssid.length()
+                    && ssid.charAt(i + 3) != '=' && ssid.charAt(i + 3) != '!') {
+                // named group, equal names of joined patterns clash
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * {@code .*} doesn't match line terminators, so such SSID doesn't match prefix pattern.
+     */
+    private static boolean hasLineTerminator(String ssid, int from) {
+        for (int i = from, length = ssid.length(); i < length; ++i) {
+            final char c = ssid.charAt(i);
+            if (c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Regular expression SSID pattern compiled on first match. */
+    private static class Regex<T> {
+        /** SSID pattern. */
+        final String ssid;
+        /** Value matched by pattern. */
+        final T value;
+        /** Compiled {@link #ssid}. */
+        private volatile Pattern pattern;
+        /** Indicates whether {@link #ssid} can't be compiled. */
+        private volatile boolean invalid;
+
+        Regex(String ssid, T value) {
+            this.ssid = ssid;
+            this.value = value;
+        }
+
+        boolean matches(String ssid) {
+            if (invalid) {
+                return false;
+            }
+            Pattern pattern = this.pattern;
+            if (pattern == null) {
+                try {
+                    pattern = SsidPatternCache.getDefault().compile(this.ssid);
+                } catch (PatternSyntaxException e) {
+                    invalid = true;
+                    return false;
+                }
+                this.pattern = pattern;
+            }
+            return pattern.matcher(ssid).matches();
+        }
+    }
+
+    /** Prefix trie node. */
+    private static class TrieNode<T> {
+        /** Child nodes mapped by next character. */
+        final Map<Character, TrieNode<T>> children = new HashMap<>();
+        /** Values which prefix ends at this node. */
+        final List<T> values = new ArrayList<>(0);
+
+        TrieNode<T> find(String prefix, boolean create) {
+            TrieNode<T> node = this;
+            for (int i = 0, length = prefix.length(); i < length; ++i) {
+                TrieNode<T> child = node.children.get(prefix.charAt(i));
+                if (child == null) {
+                    if (!create) {
+                        return null;
+                    }
+                    child = new TrieNode<>();
+                    node.children.put(prefix.charAt(i), child);
+                }
+                node = child;
+            }
+            return node;
+        }
+    }
+}
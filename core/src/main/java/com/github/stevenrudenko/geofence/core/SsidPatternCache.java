@@ -0,0 +1,100 @@
+package com.github.stevenrudenko.geofence.core;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Bounded cache of compiled SSID patterns. Many geofences usually share the same SSID, so they
+ * share one compiled pattern instead of compiling their own. Least recently used patterns are
+ * evicted once cache is full. Thread safe.
+ */
+public class SsidPatternCache {
+    /** Default number of cached patterns. */
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    /** Shared instance. */
+    private static final SsidPatternCache DEFAULT = new SsidPatternCache(DEFAULT_CAPACITY);
+
+    /** Compiled patterns mapped by SSID in access order. */
+    private final LinkedHashMap<String, Pattern> patterns;
+    /** Number of compiled patterns. */
+    private long compileCount;
+    /** Number of patterns found in cache. */
+    private long hitCount;
+
+    /**
+     * @param capacity maximal number of cached patterns
+     */
+    public SsidPatternCache(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Illegal cache capacity: " + capacity);
+        }
+        patterns = new LinkedHashMap<String, Pattern>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Pattern> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * @return shared cache instance used by {@link Geofence}.
+     */
+    public static SsidPatternCache getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * @param ssid SSID pattern
+     * @return compiled pattern. The same instance is returned for equal SSIDs while it is
+     * cached.
+     */
+    public synchronized Pattern compile(String ssid) {
+        Pattern pattern = patterns.get(ssid);
+        if (pattern != null) {
+            ++hitCount;
+            return pattern;
+        }
+        pattern = Pattern.compile(ssid);
+        ++compileCount;
+        patterns.put(ssid, pattern);
+        return pattern;
+    }
+
+    /**
+     * @return number of compiled patterns including evicted ones.
+     */
+    public synchronized long getCompileCount() {
+        return compileCount;
+    }
+
+    /**
+     * @return number of patterns found in cache.
+     */
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * @return share of patterns found in cache or {@code 0} if nothing was requested yet.
+     */
+    public synchronized double getHitRate() {
+        final long requests = hitCount + compileCount;
+        return requests == 0 ? 0 : (double) hitCount / requests;
+    }
+
+    /**
+     * @return number of cached patterns.
+     */
+    public synchronized int size() {
+        return patterns.size();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format(Locale.US, "ssidPatterns=%d compiled=%d hits=%d hitRate=%.3f",
+                patterns.size(), compileCount, hitCount, getHitRate());
+    }
+}
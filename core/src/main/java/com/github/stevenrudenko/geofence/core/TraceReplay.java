@@ -0,0 +1,267 @@
+package com.github.stevenrudenko.geofence.core;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Flowable;
+import io.reactivex.Observable;
+import io.reactivex.Scheduler;
+import io.reactivex.schedulers.Schedulers;
+import io.reactivex.subjects.PublishSubject;
+
+/**
+ * Replays recorded {@link GeofenceTrace} through location and WiFi providers pair. Trace is
+ * read lazily while it is replayed. Records are replayed either with recorded intervals scaled
+ * by speed or as fast as possible.
+ * <p>
+ * Used to run {@link GeofenceModule} over recorded tracks offline and measure its throughput:
+ * <pre>
+ * java ... TraceReplay geofences.bin trace.csv [speed]
+ * </pre>
+ */
+public class TraceReplay {
+    /** Opens trace channel. */
+    private final Callable<ReadableByteChannel> source;
+    /** Replay speed. Zero means as fast as possible. */
+    private final double speed;
+    /** Used to wait between records. */
+    private final Scheduler timer;
+    /** Replayed locations. */
+    private final PublishSubject<LocationProvider.Location> locations = PublishSubject.create();
+    /** Replayed WiFi states. */
+    private final PublishSubject<WifiInfoProvider.WifiInfo> wifiInfos = PublishSubject.create();
+    /** Last replayed WiFi state. */
+    private WifiInfoProvider.WifiInfo lastWifiInfo;
+
+    /**
+     * @param trace trace file to replay
+     * @param speed how many times faster than recorded trace is replayed, {@code 0} to replay
+     *              as fast as possible
+     */
+    public TraceReplay(File trace, double speed) {
+        this(() -> new FileInputStream(trace).getChannel(), speed, Schedulers.computation());
+    }
+
+    /**
+     * For testing purposes.
+     */
+    TraceReplay(Callable<ReadableByteChannel> source, double speed, Scheduler timer) {
+        if (speed < 0) {
+            throw new IllegalArgumentException("Illegal replay speed: " + speed);
+        }
+        this.source = source;
+        this.speed = speed;
+        this.timer = timer;
+    }
+
+    /**
+     * @return provider of replayed locations.
+     */
+    public LocationProvider getLocationProvider() {
+        return new LocationProvider() {
+            @Override
+            public void start() {
+            }
+
+            @Override
+            public void stop() {
+            }
+
+            @Override
+            public Observable<Location> getLocationUpdates() {
+                return locations;
+            }
+
+            @Override
+            public void setPolicy(Policy policy) {
+                // recorded locations can't be requested differently
+            }
+        };
+    }
+
+    /**
+     * @return provider of replayed WiFi states.
+     */
+    public WifiInfoProvider getWifiInfoProvider() {
+        return new WifiInfoProvider() {
+            @Override
+            public void start() {
+            }
+
+            @Override
+            public void stop() {
+            }
+
+            @Override
+            public Observable<WifiInfo> getWiFiInfoUpdates() {
+                return wifiInfos;
+            }
+        };
+    }
+
+    /**
+     * Replays trace to providers subscribers. Blocks till whole trace is replayed.
+     * @return number of replayed records.
+     * @throws IOException if trace can't be read
+     */
+    public long replay() throws IOException {
+        Flowable<GeofenceTrace.Record> records = Flowable.generate(
+                () -> GeofenceTrace.open(source.call()),
+                (reader, emitter) -> {
+                    final GeofenceTrace.Record record = reader.next();
+                    if (record == null) {
+                        emitter.onComplete();
+                    } else {
+                        emitter.onNext(record);
+                    }
+                },
+                GeofenceTrace.Reader::close);
+        if (speed > 0) {
+            final long[] previous = new long[1];
+            records = records.concatMap(record -> {
+                final long time = record.getLocation().getTime();
+                final long delay = previous[0] > 0 ? (long) ((time - previous[0]) / speed) : 0;
+                previous[0] = time;
+                return delay > 0
+                        ? Flowable.timer(delay, TimeUnit.MILLISECONDS, timer).map(tick -> record)
+                        : Flowable.just(record);
+            });
+        }
+        final long[] count = new long[1];
+        try {
+            records.blockingForEach(record -> {
+                emit(record);
+                ++count[0];
+            });
+        } catch (RuntimeException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw e;
+        }
+        return count[0];
+    }
+
+    private void emit(GeofenceTrace.Record record) {
+        // WiFi goes first, so location is checked with WiFi state it was recorded with
+        if (!record.getWifiInfo().equals(lastWifiInfo)) {
+            lastWifiInfo = record.getWifiInfo();
+            wifiInfos.onNext(lastWifiInfo);
+        }
+        locations.onNext(record.getLocation());
+    }
+
+    /**
+     * Replays trace through {@link GeofenceModule}. Every record is checked on replaying
+     * thread, so none of them is coalesced.
+     * @param storage geofences to check trace against
+     * @return replay report.
+     * @throws IOException if trace can't be read
+     */
+    public Report run(GeofenceStorage storage) throws IOException {
+        final GeofenceModule module = new GeofenceModule(getLocationProvider(),
+                getWifiInfoProvider(), storage, Schedulers.trampoline());
+        final MemoryGeofenceMetrics metrics = new MemoryGeofenceMetrics();
+        final Map<GeofenceTransition.Type, Long> transitions =
+                new EnumMap<>(GeofenceTransition.Type.class);
+        for (GeofenceTransition.Type type : GeofenceTransition.Type.values()) {
+            transitions.put(type, 0L);
+        }
+        module.setMetrics(metrics);
+        module.start();
+        module.getTransitions().subscribe(transition ->
+                transitions.put(transition.getType(), transitions.get(transition.getType()) + 1));
+        final long start = System.nanoTime();
+        try {
+            final long records = replay();
+            return new Report(records, System.nanoTime() - start, metrics, transitions);
+        } finally {
+            module.stop();
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: TraceReplay <geofences file> <trace file> [speed]");
+            System.exit(1);
+        }
+        final MemoryGeofenceStorage storage = new MemoryGeofenceStorage();
+        final int geofences;
+        try (FileInputStream in = new FileInputStream(args[0])) {
+            geofences = GeofenceFile.importTo(in, storage, 10000);
+        }
+        final double speed = args.length > 2 ? Double.parseDouble(args[2]) : 0;
+        System.out.println("geofences=" + geofences);
+        System.out.println(new TraceReplay(new File(args[1]), speed).run(storage));
+        System.out.println(SsidPatternCache.getDefault());
+    }
+
+    /** Replay results. */
+    public static class Report {
+        /** Number of replayed records. */
+        private final long records;
+        /** Replay time in nanoseconds. */
+        private final long duration;
+        /** Checks measurements. */
+        private final MemoryGeofenceMetrics metrics;
+        /** Number of transitions mapped by type. */
+        private final Map<GeofenceTransition.Type, Long> transitions;
+
+        Report(long records, long duration, MemoryGeofenceMetrics metrics,
+               Map<GeofenceTransition.Type, Long> transitions) {
+            this.records = records;
+            this.duration = duration;
+            this.metrics = metrics;
+            this.transitions = Collections.unmodifiableMap(transitions);
+        }
+
+        public long getRecords() {
+            return records;
+        }
+
+        /**
+         * @return replay time in nanoseconds.
+         */
+        public long getDuration() {
+            return duration;
+        }
+
+        /**
+         * @return number of records replayed per second.
+         */
+        public double getEventsPerSecond() {
+            return duration == 0 ? 0 : records * (double) TimeUnit.SECONDS.toNanos(1) / duration;
+        }
+
+        /**
+         * @return checks measurements. Check latency is per event latency.
+         */
+        public MemoryGeofenceMetrics getMetrics() {
+            return metrics;
+        }
+
+        /**
+         * @param type transition type
+         * @return number of emitted transitions of given type.
+         */
+        public long getTransitions(GeofenceTransition.Type type) {
+            return transitions.get(type);
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "records=%d duration=%dms events/s=%.1f%n"
+                            + "transitions=%s%n%s",
+                    records, TimeUnit.NANOSECONDS.toMillis(duration), getEventsPerSecond(),
+                    transitions, metrics.dump());
+        }
+    }
+}
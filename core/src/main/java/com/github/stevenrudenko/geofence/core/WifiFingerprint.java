@@ -0,0 +1,243 @@
+package com.github.stevenrudenko.geofence.core;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Immutable WiFi access points fingerprint of a site. Device is recognized to be at the site
+ * when at least {@link #getMinMatches()} fingerprint access points are visible with signal not
+ * weaker than fingerprint one. Unlike SSID it doesn't require connection, so device could be
+ * recognized indoors by WiFi scan results alone.
+ * <p>
+ * BSSIDs are kept packed into 48 bits and sorted, so they are hashed and compared as numbers.
+ */
+public class WifiFingerprint {
+    /** Signal level drop in dBm tolerated comparing to captured one. */
+    public static final int RSSI_TOLERANCE = 10;
+    /** Default number of the strongest access points captured. */
+    public static final int DEFAULT_SIZE = 8;
+
+    /** Access point BSSIDs packed into 48 bits, sorted. */
+    private final long[] bssids;
+    /** The weakest signal level in dBm access point is accepted with. */
+    private final int[] minRssis;
+    /** Number of access points which should match. */
+    private final int minMatches;
+
+    /**
+     * @param accessPoints access points with the weakest signal level they are accepted with
+     * @param minMatches number of access points which should be visible to match
+     */
+    public WifiFingerprint(List<WifiInfoProvider.AccessPoint> accessPoints, int minMatches) {
+        final List<WifiInfoProvider.AccessPoint> sorted = new ArrayList<>(accessPoints);
+        Collections.sort(sorted, new Comparator<WifiInfoProvider.AccessPoint>() {
+            @Override
+            public int compare(WifiInfoProvider.AccessPoint o1, WifiInfoProvider.AccessPoint o2) {
+                return Long.compare(o1.getKey(), o2.getKey());
+            }
+        });
+        long[] bssids = new long[sorted.size()];
+        int[] minRssis = new int[sorted.size()];
+        int size = 0;
+        for (WifiInfoProvider.AccessPoint accessPoint : sorted) {
+            final long key = accessPoint.getKey();
+            if (key < 0) {
+                throw new IllegalArgumentException("Illegal BSSID: " + accessPoint.getBssid());
+            }
+            if (size > 0 && bssids[size - 1] == key) {
+                // the same access point seen twice is accepted with weaker signal
+                minRssis[size - 1] = Math.min(minRssis[size - 1], accessPoint.getRssi());
+                continue;
+            }
+            bssids[size] = key;
+            minRssis[size] = accessPoint.getRssi();
+            ++size;
+        }
+        if (minMatches < 1 || minMatches > size) {
+            throw new IllegalArgumentException("Illegal number of matches: " + minMatches
+                    + " of " + size);
+        }
+        this.bssids = Arrays.copyOf(bssids, size);
+        this.minRssis = Arrays.copyOf(minRssis, size);
+        this.minMatches = minMatches;
+    }
+
+    /**
+     * Captures fingerprint of the current site from scan results. The strongest access points
+     * are taken and accepted with {@link #RSSI_TOLERANCE} weaker signal. Half of them should
+     * match.
+     * @param scan visible access points
+     * @param maxSize maximal number of access points to take
+     * @return fingerprint or {@code null} if there are no access points to take.
+     */
+    public static WifiFingerprint capture(List<WifiInfoProvider.AccessPoint> scan, int maxSize) {
+        final List<WifiInfoProvider.AccessPoint> strongest = new ArrayList<>(scan.size());
+        for (WifiInfoProvider.AccessPoint accessPoint : scan) {
+            if (accessPoint.getKey() >= 0) {
+                strongest.add(accessPoint);
+            }
+        }
+        Collections.sort(strongest, new Comparator<WifiInfoProvider.AccessPoint>() {
+            @Override
+            public int compare(WifiInfoProvider.AccessPoint o1, WifiInfoProvider.AccessPoint o2) {
+                return Integer.compare(o2.getRssi(), o1.getRssi());
+            }
+        });
+        final List<WifiInfoProvider.AccessPoint> result = new ArrayList<>(maxSize);
+        final Set<Long> taken = new HashSet<>();
+        for (WifiInfoProvider.AccessPoint accessPoint : strongest) {
+            if (result.size() == maxSize) {
+                break;
+            }
+            if (!taken.add(accessPoint.getKey())) {
+                continue;
+            }
+            result.add(new WifiInfoProvider.AccessPoint(accessPoint.getBssid(),
+                    accessPoint.getRssi() - RSSI_TOLERANCE));
+        }
+        if (result.isEmpty()) {
+            return null;
+        }
+        return new WifiFingerprint(result, (result.size() + 1) / 2);
+    }
+
+    /**
+     * @param accessPoints visible access points
+     * @return {@code true} if enough fingerprint access points are visible.
+     */
+    public boolean matches(List<WifiInfoProvider.AccessPoint> accessPoints) {
+        int matches = 0;
+        for (int i = 0, size = accessPoints.size(); i < size; ++i) {
+            final WifiInfoProvider.AccessPoint accessPoint = accessPoints.get(i);
+            final int index = Arrays.binarySearch(bssids, accessPoint.getKey());
+            if (index >= 0 && accessPoint.getRssi() >= minRssis[index]
+                    && ++matches >= minMatches) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return fingerprint access points with the weakest signal level they are accepted with.
+     */
+    public List<WifiInfoProvider.AccessPoint> getAccessPoints() {
+        final List<WifiInfoProvider.AccessPoint> result = new ArrayList<>(bssids.length);
+        for (int i = 0; i < bssids.length; ++i) {
+            result.add(new WifiInfoProvider.AccessPoint(formatBssid(bssids[i]), minRssis[i]));
+        }
+        return result;
+    }
+
+    /**
+     * @return number of access points which should be visible to match.
+     */
+    public int getMinMatches() {
+        return minMatches;
+    }
+
+    /**
+     * @return number of fingerprint access points.
+     */
+    public int size() {
+        return bssids.length;
+    }
+
+    /**
+     * @param index access point index
+     * @return access point BSSID packed into 48 bits.
+     */
+    long getBssid(int index) {
+        return bssids[index];
+    }
+
+    /**
+     * @param index access point index
+     * @return the weakest signal level in dBm access point is accepted with.
+     */
+    int getMinRssi(int index) {
+        return minRssis[index];
+    }
+
+    /**
+     * Writes fingerprint access points.
+     * @param out output to write to
+     * @throws IOException if output can't be written
+     */
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(minMatches);
+        out.writeInt(bssids.length);
+        for (int i = 0; i < bssids.length; ++i) {
+            out.writeLong(bssids[i]);
+            out.writeInt(minRssis[i]);
+        }
+    }
+
+    /**
+     * Reads fingerprint written by {@link #write(DataOutput)}.
+     * @param in input to read from
+     * @return read fingerprint.
+     * @throws IOException if input can't be read
+     */
+    public static WifiFingerprint read(DataInput in) throws IOException {
+        final int minMatches = in.readInt();
+        final int size = in.readInt();
+        if (size < 1 || minMatches < 1 || minMatches > size) {
+            throw new IOException("Wrong fingerprint size: " + minMatches + " of " + size);
+        }
+        final List<WifiInfoProvider.AccessPoint> accessPoints = new ArrayList<>(size);
+        for (int i = 0; i < size; ++i) {
+            final long bssid = in.readLong();
+            if (bssid < 0 || bssid > 0xFFFFFFFFFFFFL) {
+                throw new IOException("Wrong fingerprint BSSID: " + bssid);
+            }
+            accessPoints.add(new WifiInfoProvider.AccessPoint(formatBssid(bssid), in.readInt()));
+        }
+        return new WifiFingerprint(accessPoints, minMatches);
+    }
+
+    /**
+     * @param bssid MAC address like {@code 00:11:22:aa:bb:cc}
+     * @return address packed into 48 bits or {@code -1} if it is not MAC address.
+     */
+    static long parseBssid(String bssid) {
+        if (bssid == null || bssid.length() != 17) {
+            return -1;
+        }
+        long result = 0;
+        for (int i = 0; i < 17; ++i) {
+            final char c = bssid.charAt(i);
+            if (i % 3 == 2) {
+                if (c != ':' && c != '-') {
+                    return -1;
+                }
+                continue;
+            }
+            final int digit = Character.digit(c, 16);
+            if (digit < 0) {
+                return -1;
+            }
+            result = (result << 4) | digit;
+        }
+        return result;
+    }
+
+    /**
+     * @param bssid MAC address packed into 48 bits
+     * @return address like {@code 00:11:22:aa:bb:cc}.
+     */
+    static String formatBssid(long bssid) {
+        return String.format(Locale.US, "%02x:%02x:%02x:%02x:%02x:%02x",
+                (bssid >>> 40) & 0xFF, (bssid >>> 32) & 0xFF, (bssid >>> 24) & 0xFF,
+                (bssid >>> 16) & 0xFF, (bssid >>> 8) & 0xFF, bssid & 0xFF);
+    }
+}
@@ -0,0 +1,148 @@
+package com.github.stevenrudenko.geofence.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable hashed index of geofence fingerprints by access point BSSID. Packed BSSIDs are kept
+ * in open addressing table, every table position refers to range of fingerprint entries: slots
+ * of geofences which fingerprint has the access point and signal level it is accepted with.
+ * Visible access point is looked up with a single probe sequence, so matching doesn't depend
+ * on number of geofences.
+ */
+class WifiFingerprintIndex {
+    /** Marks empty table position. BSSIDs are never negative. */
+    private static final long EMPTY = -1L;
+
+    /** Open addressing table of packed BSSIDs. */
+    private final long[] keys;
+    /** Entries range start by table position. */
+    private final int[] starts;
+    /** Entries count by table position. */
+    private final int[] counts;
+    /** Geofence slots of all entries one after another. */
+    private final int[] slots;
+    /** The weakest accepted signal levels of all entries one after another. */
+    private final int[] minRssis;
+    /** Number of access points which should match mapped by geofence slot. */
+    final int[] minMatches;
+
+    /**
+     * @param fingerprints fingerprints mapped by geofence slot, {@code null} for geofences
+     *                     without fingerprint
+     */
+    WifiFingerprintIndex(WifiFingerprint[] fingerprints) {
+        minMatches = new int[fingerprints.length];
+        final Map<Long, List<Integer>> accessPoints = new HashMap<>();
+        int entryCount = 0;
+        for (int slot = 0; slot < fingerprints.length; ++slot) {
+            final WifiFingerprint fingerprint = fingerprints[slot];
+            if (fingerprint == null) {
+                continue;
+            }
+            minMatches[slot] = fingerprint.getMinMatches();
+            for (int i = 0; i < fingerprint.size(); ++i) {
+                List<Integer> entries = accessPoints.get(fingerprint.getBssid(i));
+                if (entries == null) {
+                    entries = new ArrayList<>(1);
+                    accessPoints.put(fingerprint.getBssid(i), entries);
+                }
+                // slot and fingerprint index pairs
+                entries.add(slot);
+                entries.add(i);
+                ++entryCount;
+            }
+        }
+        // keep table at most half full so probing sequences stay short
+        final int capacity = Integer.highestOneBit(Math.max(1, accessPoints.size()) * 2) << 1;
+        keys = new long[capacity];
+        starts = new int[capacity];
+        counts = new int[capacity];
+        slots = new int[entryCount];
+        minRssis = new int[entryCount];
+        Arrays.fill(keys, EMPTY);
+        int offset = 0;
+        for (Map.Entry<Long, List<Integer>> accessPoint : accessPoints.entrySet()) {
+            final long key = accessPoint.getKey();
+            int position = position(key);
+            while (keys[position] != EMPTY) {
+                position = (position + 1) & (capacity - 1);
+            }
+            final List<Integer> entries = accessPoint.getValue();
+            keys[position] = key;
+            starts[position] = offset;
+            counts[position] = entries.size() / 2;
+            for (int i = 0; i < entries.size(); i += 2) {
+                final int slot = entries.get(i);
+                slots[offset] = slot;
+                minRssis[offset] = fingerprints[slot].getMinRssi(entries.get(i + 1));
+                ++offset;
+            }
+        }
+    }
+
+    /**
+     * @return {@code true} if there are no fingerprints.
+     */
+    boolean isEmpty() {
+        return slots.length == 0;
+    }
+
+    /**
+     * @param bssid packed BSSID
+     * @return table position of access point or {@code -1} if no fingerprint has it.
+     */
+    int find(long bssid) {
+        if (bssid < 0) {
+            return -1;
+        }
+        int position = position(bssid);
+        while (keys[position] != EMPTY) {
+            if (keys[position] == bssid) {
+                return position;
+            }
+            position = (position + 1) & (keys.length - 1);
+        }
+        return -1;
+    }
+
+    /**
+     * @param position table position
+     * @return first entry of access point at given position.
+     */
+    int getStart(int position) {
+        return starts[position];
+    }
+
+    /**
+     * @param position table position
+     * @return number of entries of access point at given position.
+     */
+    int getCount(int position) {
+        return counts[position];
+    }
+
+    /**
+     * @param entry entry index
+     * @return geofence slot of entry.
+     */
+    int getSlot(int entry) {
+        return slots[entry];
+    }
+
+    /**
+     * @param entry entry index
+     * @return the weakest signal level in dBm entry access point is accepted with.
+     */
+    int getMinRssi(int entry) {
+        return minRssis[entry];
+    }
+
+    private int position(long key) {
+        final long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash >>> 32) & (keys.length - 1);
+    }
+}
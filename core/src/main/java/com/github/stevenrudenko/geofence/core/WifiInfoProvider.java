@@ -1,5 +1,9 @@
 package com.github.stevenrudenko.geofence.core;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 import io.reactivex.Observable;
 
 /** Provides information about WiFi connection. */
@@ -19,14 +23,42 @@ public interface WifiInfoProvider {
         private boolean connected;
         /** WiFi SSID connected to. */
         private String ssid;
+        /** MAC address of access point connected to. */
+        private String bssid;
+        /** Access points visible at last scan. */
+        private List<AccessPoint> accessPoints;
 
         public WifiInfo(boolean connected) {
             this(connected, null);
         }
 
         public WifiInfo(boolean connected, String ssid) {
+            this(connected, ssid, Collections.<AccessPoint>emptyList());
+        }
+
+        /**
+         * @param connected whether WiFi connection is alive
+         * @param ssid WiFi SSID connected to
+         * @param accessPoints access points visible at last scan
+         */
+        public WifiInfo(boolean connected, String ssid, List<AccessPoint> accessPoints) {
+            this(connected, ssid, null, accessPoints);
+        }
+
+        /**
+         * @param connected whether WiFi connection is alive
+         * @param ssid WiFi SSID connected to
+         * @param bssid MAC address of access point connected to
+         * @param accessPoints access points visible at last scan
+         */
+        public WifiInfo(boolean connected, String ssid, String bssid,
+                        List<AccessPoint> accessPoints) {
             this.connected = connected;
             this.ssid = ssid;
+            this.bssid = bssid;
+            this.accessPoints = accessPoints.isEmpty()
+                    ? Collections.<AccessPoint>emptyList()
+                    : Collections.unmodifiableList(new ArrayList<>(accessPoints));
         }
 
         public boolean isConnected() {
@@ -37,6 +69,20 @@ public interface WifiInfoProvider {
             return ssid;
         }
 
+        /**
+         * @return MAC address of access point connected to.
+         */
+        public String getBssid() {
+            return bssid;
+        }
+
+        /**
+         * @return access points visible at last scan.
+         */
+        public List<AccessPoint> getAccessPoints() {
+            return accessPoints;
+        }
+
         @Override
         public boolean equals(Object o) {
             if (this == o) return true;
@@ -45,13 +91,70 @@ public interface WifiInfoProvider {
             WifiInfo wifiInfo = (WifiInfo) o;
 
             if (connected != wifiInfo.connected) return false;
-            return ssid != null ? ssid.equals(wifiInfo.ssid) : wifiInfo.ssid == null;
+            if (ssid != null ? !ssid.equals(wifiInfo.ssid) : wifiInfo.ssid != null) return false;
+            if (bssid != null ? !bssid.equals(wifiInfo.bssid) : wifiInfo.bssid != null) return false;
+            return accessPoints.equals(wifiInfo.accessPoints);
         }
 
         @Override
         public int hashCode() {
             int result = (connected ? 1 : 0);
             result = 31 * result + (ssid != null ? ssid.hashCode() : 0);
+            result = 31 * result + (bssid != null ? bssid.hashCode() : 0);
+            result = 31 * result + accessPoints.hashCode();
+            return result;
+        }
+    }
+
+    /** WiFi access point scan result. */
+    class AccessPoint {
+        /** Access point MAC address. */
+        private final String bssid;
+        /** {@link #bssid} packed into 48 bits or {@code -1} if it is not MAC address. */
+        private final long key;
+        /** Signal level in dBm. */
+        private final int rssi;
+
+        /**
+         * @param bssid access point MAC address like {@code 00:11:22:aa:bb:cc}
+         * @param rssi signal level in dBm
+         */
+        public AccessPoint(String bssid, int rssi) {
+            this.bssid = bssid;
+            this.key = WifiFingerprint.parseBssid(bssid);
+            this.rssi = rssi;
+        }
+
+        public String getBssid() {
+            return bssid;
+        }
+
+        public int getRssi() {
+            return rssi;
+        }
+
+        /**
+         * @return BSSID packed into 48 bits or {@code -1} if it is not MAC address.
+         */
+        long getKey() {
+            return key;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            AccessPoint that = (AccessPoint) o;
+
+            if (rssi != that.rssi) return false;
+            return bssid != null ? bssid.equals(that.bssid) : that.bssid == null;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = bssid != null ? bssid.hashCode() : 0;
+            result = 31 * result + rssi;
             return result;
         }
     }
@@ -0,0 +1,106 @@
+package com.github.stevenrudenko.geofence.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Observable;
+import io.reactivex.Scheduler;
+
+/**
+ * Turns bursts of system WiFi events into {@link WifiInfoProvider.WifiInfo} updates. Busy areas
+ * produce floods of connectivity and scan events, every update restarts geofences check, so
+ * WiFi state is read once burst is over and only emitted when it really differs.
+ */
+public final class WifiInfoUpdates {
+    /** Default time in milliseconds events are debounced for. */
+    public static final long DEFAULT_WINDOW = 500;
+
+    private WifiInfoUpdates() {
+    }
+
+    /**
+     * Reads WiFi state once no event comes within window. Reading is done on given scheduler,
+     * so system services aren't queried on thread events come on. Updates which are the same
+     * by {@link #isSame} are skipped.
+     * @param events system WiFi events
+     * @param reader reads actual WiFi state
+     * @param window time to wait for burst to end
+     * @param unit time unit of window
+     * @param scheduler scheduler to wait and read on
+     * @return WiFi state updates.
+     */
+    public static Observable<WifiInfoProvider.WifiInfo> read(
+            Observable<?> events, Callable<WifiInfoProvider.WifiInfo> reader,
+            long window, TimeUnit unit, Scheduler scheduler) {
+        if (window < 0) {
+            throw new IllegalArgumentException("Illegal window: " + window);
+        }
+        return events.debounce(window, unit, scheduler)
+                .map(event -> reader.call())
+                .distinctUntilChanged(WifiInfoUpdates::isSame);
+    }
+
+    /**
+     * Compares WiFi states by connection, SSID, BSSID of connected access point, visible access
+     * points and their signal levels bucketed by {@link WifiFingerprint#RSSI_TOLERANCE}. Signal
+     * noise within bucket is skipped, so scans in busy areas don't restart checks all the
+     * time. Level which crosses {@link WifiFingerprint} threshold is reported once it leaves
+     * bucket, module compares levels against actual thresholds then.
+     * @param first WiFi state
+     * @param second another WiFi state
+     * @return {@code true} if states are the same.
+     */
+    static boolean isSame(WifiInfoProvider.WifiInfo first, WifiInfoProvider.WifiInfo second) {
+        if (first.isConnected() != second.isConnected()) {
+            return false;
+        }
+        if (first.getSsid() != null ? !first.getSsid().equals(second.getSsid())
+                : second.getSsid() != null) {
+            return false;
+        }
+        if (WifiFingerprint.parseBssid(first.getBssid())
+                != WifiFingerprint.parseBssid(second.getBssid())) {
+            return false;
+        }
+        final List<WifiInfoProvider.AccessPoint> firsts = sorted(first.getAccessPoints());
+        final List<WifiInfoProvider.AccessPoint> seconds = sorted(second.getAccessPoints());
+        if (firsts.size() != seconds.size()) {
+            return false;
+        }
+        for (int i = 0, size = firsts.size(); i < size; ++i) {
+            if (firsts.get(i).getKey() != seconds.get(i).getKey()
+                    || bucket(firsts.get(i).getRssi()) != bucket(seconds.get(i).getRssi())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param rssi signal level in dBm
+     * @return signal level bucket.
+     */
+    private static int bucket(int rssi) {
+        return (int) Math.floor(rssi / (double) WifiFingerprint.RSSI_TOLERANCE);
+    }
+
+    /**
+     * @return access points sorted by BSSID and signal level.
+     */
+    private static List<WifiInfoProvider.AccessPoint> sorted(
+            List<WifiInfoProvider.AccessPoint> accessPoints) {
+        final List<WifiInfoProvider.AccessPoint> result = new ArrayList<>(accessPoints);
+        Collections.sort(result, new Comparator<WifiInfoProvider.AccessPoint>() {
+            @Override
+            public int compare(WifiInfoProvider.AccessPoint o1, WifiInfoProvider.AccessPoint o2) {
+                final int result = Long.compare(o1.getKey(), o2.getKey());
+                return result != 0 ? result : Integer.compare(o1.getRssi(), o2.getRssi());
+            }
+        });
+        return result;
+    }
+}
@@ -0,0 +1,77 @@
+package com.github.stevenrudenko.geofence.core;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static com.github.stevenrudenko.geofence.core.GeofenceTestConstants.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/** Tests for {@link DistanceEngine}. */
+public class DistanceEngineTest {
+    private final DistanceEngine target = new DistanceEngine(true);
+
+    @Test
+    public void isWithin_boundingBox() {
+        assertFalse(isWithin(KYIV, LVIV, GEOFENCE_RADIUS));
+        assertEquals(1, target.getBoundingBoxHits());
+        assertEquals(0, target.getEstimateHits());
+        assertEquals(0, target.getPreciseHits());
+    }
+
+    @Test
+    public void isWithin_estimate() {
+        assertTrue(isWithin(KYIV, KYIV, GEOFENCE_RADIUS));
+        assertTrue(isWithin(KYIV, KYIV_AIRPORT, GEOFENCE_RADIUS));
+        assertEquals(0, target.getBoundingBoxHits());
+        assertEquals(2, target.getEstimateHits());
+        assertEquals(0, target.getPreciseHits());
+    }
+
+    @Test
+    public void isWithin_precise() {
+        final float distance = GeofenceUtils.distance(KYIV, KYIV_AIRPORT);
+        assertTrue(isWithin(KYIV, KYIV_AIRPORT, Math.ceil(distance)));
+        assertFalse(isWithin(KYIV, KYIV_AIRPORT, Math.floor(distance)));
+        assertEquals(2, target.getPreciseHits());
+
+        target.resetCounters();
+        assertEquals(0, target.getPreciseHits());
+    }
+
+    @Test
+    public void isWithin_notCounting() {
+        final DistanceEngine engine = DistanceEngine.getDefault();
+        assertFalse(engine.isCounting());
+        engine.isWithin(KYIV.getLat(), KYIV.getLng(), LVIV.getLat(), LVIV.getLng(),
+                GEOFENCE_RADIUS);
+        assertEquals(0, engine.getBoundingBoxHits());
+    }
+
+    /** Tiered decision should always match Vincenty one. */
+    @Test
+    public void isWithin_matchesVincenty() {
+        final Random random = new Random(42);
+        for (int i = 0; i < 100000; ++i) {
+            final double lat = random.nextDouble() * 170.0 - 85.0;
+            final double lng = random.nextDouble() * 360.0 - 180.0;
+            final double radius = 10.0 + random.nextDouble() * 50000.0;
+            final double spread = radius * 2.0 / 111000.0;
+            final double pointLat = Math.max(-90.0, Math.min(90.0,
+                    lat + (random.nextDouble() * 2.0 - 1.0) * spread));
+            final double pointLng = lng + (random.nextDouble() * 2.0 - 1.0) * spread
+                    / Math.cos(Math.toRadians(Math.abs(lat)));
+            final boolean expected = GeofenceUtils.distance(lat, lng, pointLat, pointLng) <= radius;
+            assertEquals(expected, target.isWithin(lat, lng, pointLat, pointLng, radius));
+        }
+        assertTrue(target.getPreciseHits() < target.getEstimateHits() / 10);
+    }
+
+    private boolean isWithin(LocationProvider.Location center, LocationProvider.Location point,
+                             double radius) {
+        return target.isWithin(center.getLat(), center.getLng(),
+                point.getLat(), point.getLng(), radius);
+    }
+}
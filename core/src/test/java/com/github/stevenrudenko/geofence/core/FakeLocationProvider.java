@@ -0,0 +1,45 @@
+package com.github.stevenrudenko.geofence.core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import io.reactivex.Observable;
+import io.reactivex.subjects.PublishSubject;
+
+/** Location provider which emits given locations and records requested policies. */
+public class FakeLocationProvider implements LocationProvider {
+    /** Emitted locations. */
+    private final PublishSubject<Location> locations = PublishSubject.create();
+    /** Requested policies. */
+    private final List<Policy> policies = new ArrayList<>();
+
+    @Override
+    public void start() {
+    }
+
+    @Override
+    public void stop() {
+    }
+
+    @Override
+    public Observable<Location> getLocationUpdates() {
+        return locations;
+    }
+
+    @Override
+    public void setPolicy(Policy policy) {
+        policies.add(policy);
+    }
+
+    public void emit(Location location) {
+        locations.onNext(location);
+    }
+
+    public List<Policy> getPolicies() {
+        return policies;
+    }
+
+    public Policy getPolicy() {
+        return policies.isEmpty() ? null : policies.get(policies.size() - 1);
+    }
+}
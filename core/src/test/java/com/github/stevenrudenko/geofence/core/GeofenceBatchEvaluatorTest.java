@@ -0,0 +1,102 @@
+package com.github.stevenrudenko.geofence.core;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static com.github.stevenrudenko.geofence.core.GeofenceTestConstants.*;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/** Tests for {@link GeofenceBatchEvaluator}. */
+public class GeofenceBatchEvaluatorTest {
+    private final Geofence kyiv = new Geofence(KYIV, GEOFENCE_RADIUS, "Kyiv");
+    private final Geofence vyshneve = new Geofence(VYSHNEVE, GEOFENCE_RADIUS, "Vyshneve");
+    private final Geofence kbp = new Geofence(KBP_AIRPORT, GEOFENCE_RADIUS, "KBP");
+
+    @Test
+    public void evaluate() {
+        final GeofenceBatchEvaluator target = new GeofenceBatchEvaluator(
+                Arrays.asList(kyiv, vyshneve, kbp));
+        final LocationProvider.Location[] points = {LVIV, KBP_AIRPORT, KYIV_AIRPORT};
+        final String[][] result = target.evaluate(lats(points), lngs(points));
+
+        assertEquals(3, result.length);
+        assertEquals(0, result[0].length);
+        assertArrayEquals(new String[]{kbp.getUuid()}, result[1]);
+        final List<String> kyivAirport = Arrays.asList(result[2]);
+        assertEquals(2, kyivAirport.size());
+        assertTrue(kyivAirport.contains(kyiv.getUuid()));
+        assertTrue(kyivAirport.contains(vyshneve.getUuid()));
+    }
+
+    /** Parallel evaluation should give the same result as point by point one. */
+    @Test
+    public void evaluate_parallel() {
+        final Random random = new Random(42);
+        final List<Geofence> geofences = new ArrayList<>();
+        for (int i = 0; i < 1000; ++i) {
+            geofences.add(new Geofence(randomLocation(random), 1000 + random.nextInt(10000), "Test"));
+        }
+        final GeofenceBatchEvaluator target = new GeofenceBatchEvaluator(geofences);
+        final LocationProvider.Location[] points = new LocationProvider.Location[2000];
+        for (int i = 0; i < points.length; ++i) {
+            points[i] = randomLocation(random);
+        }
+        final String[][] result = target.evaluate(lats(points), lngs(points));
+
+        for (int i = 0; i < points.length; ++i) {
+            final List<String> expected = new ArrayList<>();
+            for (Geofence geofence : geofences) {
+                if (GeofenceUtils.distance(geofence.getPoint(), points[i]) <= geofence.getRadius()) {
+                    expected.add(geofence.getUuid());
+                }
+            }
+            final List<String> actual = Arrays.asList(result[i]);
+            assertEquals(expected.size(), actual.size());
+            assertTrue(actual.containsAll(expected));
+        }
+    }
+
+    /** Evaluator works on snapshot, so later evaluator changes are not seen. */
+    @Test
+    public void evaluate_snapshot() {
+        final GeofenceEvaluator evaluator = new GeofenceEvaluator(Arrays.asList(kyiv, kbp));
+        final GeofenceBatchEvaluator target = new GeofenceBatchEvaluator(evaluator);
+        evaluator.apply(GeofenceChange.removed(Collections.singletonList(kbp)));
+        final LocationProvider.Location[] points = {KBP_AIRPORT};
+        assertArrayEquals(new String[]{kbp.getUuid()},
+                target.evaluate(lats(points), lngs(points))[0]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void evaluate_mismatch() {
+        new GeofenceBatchEvaluator(Collections.<Geofence>emptyList()).evaluate(new double[2], new double[1]);
+    }
+
+    private static LocationProvider.Location randomLocation(Random random) {
+        return new LocationProvider.Location(
+                50.0 + random.nextDouble(), 30.0 + random.nextDouble());
+    }
+
+    private static double[] lats(LocationProvider.Location[] points) {
+        final double[] lats = new double[points.length];
+        for (int i = 0; i < points.length; ++i) {
+            lats[i] = points[i].getLat();
+        }
+        return lats;
+    }
+
+    private static double[] lngs(LocationProvider.Location[] points) {
+        final double[] lngs = new double[points.length];
+        for (int i = 0; i < points.length; ++i) {
+            lngs[i] = points[i].getLng();
+        }
+        return lngs;
+    }
+}
@@ -0,0 +1,42 @@
+package com.github.stevenrudenko.geofence.core;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static com.github.stevenrudenko.geofence.core.GeofenceTestConstants.*;
+import static org.junit.Assert.assertEquals;
+
+/** Tests for {@link GeofenceColumns}. */
+public class GeofenceColumnsTest {
+    private final Geofence kyiv = new Geofence(KYIV, GEOFENCE_RADIUS, "Office");
+    private final Geofence lviv = new Geofence(LVIV, 500, "Home_\\d+");
+    private final Geofence kharkiv = new Geofence(KHARKIV, GEOFENCE_RADIUS, "Office");
+
+    @Test
+    public void from() {
+        final MemoryGeofenceStorage storage = new MemoryGeofenceStorage();
+        storage.addAll(Arrays.asList(kyiv, lviv, kharkiv));
+        final GeofenceColumns target = GeofenceColumns.from(storage);
+
+        assertEquals(3, target.size());
+        for (int slot = 0; slot < target.size(); ++slot) {
+            final Geofence geofence = target.getGeofence(slot);
+            assertEquals(slot, target.indexOf(geofence.getUuid()));
+            assertEquals(geofence.getPoint().getLat(), target.lats[slot], 0);
+            assertEquals(geofence.getPoint().getLng(), target.lngs[slot], 0);
+            assertEquals(geofence.getRadius(), target.radiuses[slot], 0);
+            assertEquals(geofence.getSsid(), target.ssids[target.ssidIds[slot]]);
+        }
+        assertEquals(-1, target.indexOf("unknown"));
+    }
+
+    @Test
+    public void ssidIds() {
+        final GeofenceColumns target = new GeofenceColumns(Arrays.asList(kyiv, lviv, kharkiv));
+        assertEquals(2, target.getSsidCount());
+        assertEquals(target.ssidIds[0], target.ssidIds[2]);
+        assertEquals(1, target.ssidIds[1]);
+    }
+
+}
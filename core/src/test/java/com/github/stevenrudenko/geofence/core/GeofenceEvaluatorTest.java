@@ -0,0 +1,304 @@
+package com.github.stevenrudenko.geofence.core;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static com.github.stevenrudenko.geofence.core.GeofenceTestConstants.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/** Tests for {@link GeofenceEvaluator}. */
+public class GeofenceEvaluatorTest {
+    private final Geofence kyiv = new Geofence(KYIV, GEOFENCE_RADIUS, "Kyiv");
+    private final Geofence vyshneve = new Geofence(VYSHNEVE, GEOFENCE_RADIUS, "Home_\\d+");
+    private final Geofence kbp = new Geofence(KBP_AIRPORT, GEOFENCE_RADIUS, "KBP.*");
+    private final Geofence ukraine = new Geofence(KYIV, 1000000, "Ukraine");
+
+    private final GeofenceEvaluator target =
+            new GeofenceEvaluator(Arrays.asList(kyiv, vyshneve, kbp, ukraine));
+
+    @Test
+    public void evaluate_distance() {
+        assertEquals(set(kyiv, vyshneve, ukraine), evaluate(KYIV_AIRPORT, null));
+        assertEquals(set(ukraine), evaluate(LVIV, null));
+        assertEquals(set(), evaluate(new LocationProvider.Location(0, 0), null));
+    }
+
+    @Test
+    public void evaluate_ssid() {
+        assertEquals(set(kbp, ukraine), evaluate(LVIV, "KBP-Free"));
+        assertEquals(set(vyshneve, ukraine), evaluate(LVIV, "Home_42"));
+        assertEquals(set(kyiv, vyshneve, ukraine), evaluate(KYIV_AIRPORT, "Home_42"));
+        assertEquals(set(ukraine), evaluate(LVIV, "Unknown"));
+    }
+
+    @Test
+    public void evaluate_fingerprint() {
+        final WifiFingerprint fingerprint = new WifiFingerprint(Arrays.asList(
+                new WifiInfoProvider.AccessPoint("00:11:22:aa:bb:01", -70),
+                new WifiInfoProvider.AccessPoint("00:11:22:aa:bb:02", -70)), 2);
+        final Geofence office = new Geofence("office", KBP_AIRPORT, 100, "Office", fingerprint);
+        final Geofence hall = new Geofence("hall", KBP_AIRPORT, 50, "Hall",
+                new WifiFingerprint(Collections.singletonList(
+                        new WifiInfoProvider.AccessPoint("00:11:22:aa:bb:02", -50)), 1));
+        final GeofenceEvaluator target =
+                new GeofenceEvaluator(Arrays.asList(kyiv, office, hall));
+
+        final List<WifiInfoProvider.AccessPoint> strong = Arrays.asList(
+                new WifiInfoProvider.AccessPoint("66:77:88:99:aa:bb", -40),
+                new WifiInfoProvider.AccessPoint("00:11:22:aa:bb:01", -60),
+                new WifiInfoProvider.AccessPoint("00:11:22:aa:bb:02", -45));
+        // location is far away, but access points are visible
+        assertEquals(2, target.evaluate(LVIV.getLat(), LVIV.getLng(), null, strong));
+        assertEquals(2, target.getFingerprintMatchCount());
+        assertEquals(set(office, hall), set(target.getGeofence(target.getInbound(0)),
+                target.getGeofence(target.getInbound(1))));
+
+        final List<WifiInfoProvider.AccessPoint> weak = Arrays.asList(
+                new WifiInfoProvider.AccessPoint("00:11:22:aa:bb:01", -60),
+                new WifiInfoProvider.AccessPoint("00:11:22:aa:bb:02", -65));
+        assertEquals(1, target.evaluate(LVIV.getLat(), LVIV.getLng(), null, weak));
+        assertSame(office, target.getGeofence(target.getInbound(0)));
+        // geofence matched by SSID is not counted twice
+        assertEquals(1, target.evaluate(LVIV.getLat(), LVIV.getLng(), "Office", weak));
+        assertEquals(1, target.getSsidMatchCount());
+        assertEquals(0, target.getFingerprintMatchCount());
+        // matches are not kept between evaluations
+        assertEquals(0, target.evaluate(LVIV.getLat(), LVIV.getLng(), null,
+                weak.subList(0, 1)));
+    }
+
+    @Test
+    public void isSameFingerprintLevels() {
+        final Geofence office = new Geofence("office", KBP_AIRPORT, 100, "Office",
+                new WifiFingerprint(Arrays.asList(
+                        new WifiInfoProvider.AccessPoint("00:11:22:aa:bb:01", -70),
+                        new WifiInfoProvider.AccessPoint("00:11:22:aa:bb:02", -70)), 2));
+        final GeofenceEvaluator target = new GeofenceEvaluator(Arrays.asList(kyiv, office));
+        final List<WifiInfoProvider.AccessPoint> scan = Arrays.asList(
+                new WifiInfoProvider.AccessPoint("66:77:88:99:aa:bb", -40),
+                new WifiInfoProvider.AccessPoint("00:11:22:aa:bb:01", -60));
+        assertTrue(target.isSameFingerprintLevels(scan, scan));
+        // unknown access point noise and level change above threshold don't matter
+        assertTrue(target.isSameFingerprintLevels(scan, Arrays.asList(
+                new WifiInfoProvider.AccessPoint("00:11:22:aa:bb:01", -65),
+                new WifiInfoProvider.AccessPoint("66:77:88:99:aa:bb", -80))));
+        assertFalse(target.isSameFingerprintLevels(scan, Arrays.asList(
+                new WifiInfoProvider.AccessPoint("66:77:88:99:aa:bb", -40),
+                new WifiInfoProvider.AccessPoint("00:11:22:aa:bb:01", -75))));
+        // access point which appears below threshold is the same as missing one
+        assertTrue(target.isSameFingerprintLevels(scan, Arrays.asList(
+                new WifiInfoProvider.AccessPoint("00:11:22:aa:bb:01", -60),
+                new WifiInfoProvider.AccessPoint("00:11:22:aa:bb:02", -90))));
+        assertFalse(target.isSameFingerprintLevels(scan,
+                Collections.<WifiInfoProvider.AccessPoint>emptyList()));
+    }
+
+    /** Evaluator should give same results as checking every geofence. */
+    @Test
+    public void evaluate_sameAsFullScan() {
+        final Random random = new Random(42);
+        final List<Geofence> geofences = new ArrayList<>();
+        for (int i = 0; i < 1000; ++i) {
+            geofences.add(new Geofence(randomLocation(random), 100 + random.nextInt(5000),
+                    i % 2 == 0 ? "Office" : "Home_\\d+"));
+        }
+        final GeofenceEvaluator evaluator = new GeofenceEvaluator(geofences);
+        for (int i = 0; i < 1000; ++i) {
+            final LocationProvider.Location location = randomLocation(random);
+            final String ssid = i % 10 == 0 ? "Office" : null;
+            final Set<Geofence> expected = new HashSet<>();
+            for (Geofence geofence : geofences) {
+                if (GeofenceUtils.isInsideGeofence(geofence, location, ssid)) {
+                    expected.add(geofence);
+                }
+            }
+            final int count = evaluator.evaluate(location.getLat(), location.getLng(), ssid);
+            final Set<Geofence> actual = new HashSet<>();
+            for (int j = 0; j < count; ++j) {
+                actual.add(evaluator.getGeofence(evaluator.getInbound(j)));
+            }
+            assertEquals(expected, actual);
+        }
+        assertSame(geofences.get(0), evaluator.getGeofence(0));
+        assertEquals(1000, evaluator.size());
+    }
+
+    @Test
+    public void evaluate_polygon() {
+        final Geofence square =
+                new Geofence(GeofencePolygonTest.square(KYIV, 0.01, 0.002), "Square");
+        final GeofenceEvaluator evaluator = new GeofenceEvaluator(Arrays.asList(kyiv, square));
+        // hole is inside of enclosing circle, but outside of polygon
+        assertEquals(1, evaluator.evaluate(KYIV.getLat(), KYIV.getLng(), null));
+        assertSame(kyiv, evaluator.getGeofence(evaluator.getInbound(0)));
+        assertEquals(2, evaluator.evaluate(KYIV.getLat() + 0.005, KYIV.getLng(), null));
+        assertEquals(2, evaluator.evaluate(KYIV.getLat(), KYIV.getLng(), "Square"));
+        // outside of polygon, but inside of its enclosing circle
+        assertEquals(1, evaluator.evaluate(KYIV.getLat() + 0.0099, KYIV.getLng() + 0.0105, null));
+        assertSame(kyiv, evaluator.getGeofence(evaluator.getInbound(0)));
+        // nearest boundary is east edge of hole
+        final double expected = GeofenceUtils.distance(KYIV.getLat(), KYIV.getLng(),
+                KYIV.getLat(), KYIV.getLng() + 0.002);
+        final double margin = evaluator.boundaryDistance(KYIV.getLat(), KYIV.getLng(), 10000);
+        assertTrue(margin <= expected);
+        assertTrue(margin > expected * 0.98);
+    }
+
+    @Test
+    public void boundaryDistance() {
+        // Kyiv and Vyshneve boundaries are nearest to Kyiv airport
+        final double expected = GEOFENCE_RADIUS - Math.max(
+                GeofenceUtils.distance(KYIV_AIRPORT, KYIV),
+                GeofenceUtils.distance(KYIV_AIRPORT, VYSHNEVE));
+        final double margin = target.boundaryDistance(
+                KYIV_AIRPORT.getLat(), KYIV_AIRPORT.getLng(), 100000);
+        assertTrue(margin <= expected);
+        assertTrue(margin > expected * 0.9);
+        assertEquals(100, target.boundaryDistance(
+                KYIV_AIRPORT.getLat(), KYIV_AIRPORT.getLng(), 100), 0);
+        // on KBP airport geofence boundary
+        assertEquals(0, target.boundaryDistance(
+                KBP_AIRPORT.getLat() + BoundingBox.latitudeDelta(GEOFENCE_RADIUS) / 1.001,
+                KBP_AIRPORT.getLng(), 1000), 0);
+    }
+
+    @Test
+    public void apply() {
+        final Geofence lviv = new Geofence(LVIV, GEOFENCE_RADIUS, "Lviv");
+        assertTrue(target.apply(GeofenceChange.added(Collections.singletonList(lviv))));
+        assertEquals(5, target.size());
+        assertEquals(set(lviv, ukraine), evaluate(LVIV, null));
+        assertSame(lviv, target.getGeofence(target.indexOf(lviv.getUuid())));
+
+        final Geofence moved = new Geofence(lviv.getUuid(), ODESSA, GEOFENCE_RADIUS, "Lviv");
+        assertTrue(target.apply(GeofenceChange.updated(Collections.singletonList(moved))));
+        assertEquals(5, target.size());
+        assertEquals(set(ukraine), evaluate(LVIV, null));
+        assertEquals(set(moved, ukraine), evaluate(ODESSA, null));
+        assertEquals(set(moved, ukraine), evaluate(LVIV, "Lviv"));
+        assertEquals(0, target.boundaryDistance(ODESSA.getLat() + BoundingBox.latitudeDelta(
+                GEOFENCE_RADIUS) / 1.001, ODESSA.getLng(), 1000), 0);
+
+        assertTrue(target.apply(GeofenceChange.removed(Arrays.asList(moved, kbp))));
+        assertFalse(target.apply(GeofenceChange.removed(Collections.singletonList(moved))));
+        assertEquals(3, target.size());
+        assertEquals(-1, target.indexOf(kbp.getUuid()));
+        assertEquals(set(ukraine), evaluate(LVIV, "Lviv"));
+        assertFalse(evaluate(KBP_AIRPORT, null).contains(kbp));
+        assertEquals(set(kyiv, vyshneve, ukraine), new HashSet<>(target.getGeofences()));
+        assertEquals(5, target.getChangeCount());
+        assertEquals(set(kyiv, vyshneve, ukraine),
+                new HashSet<>(target.compact().getGeofences()));
+        assertEquals(0, target.compact().getChangeCount());
+    }
+
+    /** Changes applied in place should give same results as rebuilt evaluator. */
+    @Test
+    public void apply_sameAsRebuilt() {
+        final Random random = new Random(42);
+        final List<Geofence> geofences = new ArrayList<>();
+        for (int i = 0; i < 200; ++i) {
+            geofences.add(new Geofence(randomLocation(random), 100 + random.nextInt(5000),
+                    i % 2 == 0 ? "Office" : "Home_\\d+"));
+        }
+        final GeofenceEvaluator evaluator = new GeofenceEvaluator(geofences);
+        final GeofenceEvaluator copy = new GeofenceEvaluator(evaluator);
+        for (int i = 0; i < 100; ++i) {
+            final Geofence geofence = geofences.get(random.nextInt(geofences.size()));
+            if (i % 3 == 0) {
+                geofences.remove(geofence);
+                evaluator.apply(GeofenceChange.removed(Collections.singletonList(geofence)));
+            } else {
+                final Geofence updated = new Geofence(geofence.getUuid(),
+                        randomLocation(random), 100 + random.nextInt(5000), "Hotel");
+                geofences.set(geofences.indexOf(geofence), updated);
+                evaluator.apply(GeofenceChange.updated(Collections.singletonList(updated)));
+            }
+        }
+        final GeofenceEvaluator rebuilt = new GeofenceEvaluator(geofences);
+        for (int i = 0; i < 1000; ++i) {
+            final LocationProvider.Location location = randomLocation(random);
+            final String ssid = i % 10 == 0 ? "Hotel" : i % 10 == 1 ? "Office" : null;
+            assertEquals(evaluate(rebuilt, location, ssid), evaluate(evaluator, location, ssid));
+        }
+        assertEquals(geofences.size(), evaluator.size());
+        // copy doesn't see changes applied to evaluator it was created from
+        assertEquals(200, copy.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void apply_reset() {
+        target.apply(GeofenceChange.reset(Collections.singletonList(kbp)));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void getInbound_outOfBounds() {
+        target.evaluate(LVIV.getLat(), LVIV.getLng(), null);
+        target.getInbound(1);
+    }
+
+    @Test
+    public void evaluate_noAllocations() {
+        final java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+        final long thread = Thread.currentThread().getId();
+
+        final double[] lats = {KYIV.getLat(), KYIV_AIRPORT.getLat(), LVIV.getLat()};
+        final double[] lngs = {KYIV.getLng(), KYIV_AIRPORT.getLng(), LVIV.getLng()};
+        final String ssid = "Home_42";
+        int count = 0;
+        // first evaluation matches SSID, the rest should reuse buffers only
+        for (int i = 0; i < 10000; ++i) {
+            count += target.evaluate(lats[i % 3], lngs[i % 3], ssid);
+        }
+        // measuring itself could allocate
+        final long start = threads.getThreadAllocatedBytes(thread);
+        final long overhead = threads.getThreadAllocatedBytes(thread) - start;
+        final long before = threads.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < 10000; ++i) {
+            count += target.evaluate(lats[i % 3], lngs[i % 3], ssid);
+        }
+        final long after = threads.getThreadAllocatedBytes(thread);
+        assertEquals(0, after - before - overhead);
+        assertTrue(count > 0);
+    }
+
+    private Set<Geofence> evaluate(LocationProvider.Location location, String ssid) {
+        return evaluate(target, location, ssid);
+    }
+
+    private static Set<Geofence> evaluate(GeofenceEvaluator evaluator,
+                                          LocationProvider.Location location, String ssid) {
+        final int count = evaluator.evaluate(location.getLat(), location.getLng(), ssid);
+        final Set<Geofence> result = new HashSet<>();
+        for (int i = 0; i < count; ++i) {
+            result.add(evaluator.getGeofence(evaluator.getInbound(i)));
+        }
+        return result;
+    }
+
+    private static Set<Geofence> set(Geofence... geofences) {
+        return new HashSet<>(Arrays.asList(geofences));
+    }
+
+    private static LocationProvider.Location randomLocation(Random random) {
+        return new LocationProvider.Location(49.0 + random.nextDouble() * 3.0,
+                29.0 + random.nextDouble() * 3.0);
+    }
+
+}
@@ -0,0 +1,105 @@
+package com.github.stevenrudenko.geofence.core;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import io.reactivex.observers.TestObserver;
+
+import static com.github.stevenrudenko.geofence.core.GeofenceTestConstants.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/** Tests for {@link GeofenceFile}. */
+public class GeofenceFileTest {
+    private final List<Geofence> geofences = Arrays.asList(
+            new Geofence(KYIV, GEOFENCE_RADIUS, "Kyiv"),
+            new Geofence("custom-id", LVIV, 150, "Hotel[-_\\d]*"),
+            new Geofence(ODESSA, 1, ""),
+            new Geofence(GeofencePolygonTest.square(KHARKIV, 0.01, 0.002), "Kharkiv"),
+            new Geofence("office", KYIV_AIRPORT, 100, "Office", OFFICE_FINGERPRINT));
+
+    static final WifiFingerprint OFFICE_FINGERPRINT = new WifiFingerprint(Arrays.asList(
+            new WifiInfoProvider.AccessPoint("00:11:22:aa:bb:01", -70),
+            new WifiInfoProvider.AccessPoint("00:11:22:aa:bb:02", -75)), 1);
+
+    @Test
+    public void write_read() throws Exception {
+        final byte[] bytes = write(geofences);
+        try (GeofenceFile.Reader reader = GeofenceFile.open(new ByteArrayInputStream(bytes))) {
+            for (Geofence expected : geofences) {
+                assertGeofenceEquals(expected, reader.next());
+            }
+            assertNull(reader.next());
+            assertNull(reader.next());
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void open_wrongFormat() throws Exception {
+        GeofenceFile.open(new ByteArrayInputStream(new byte[]{1, 2, 3, 4, 5}));
+    }
+
+    @Test
+    public void importTo() throws Exception {
+        final List<Geofence> many = new ArrayList<>();
+        for (int i = 0; i < 25; ++i) {
+            many.add(new Geofence(KYIV, i + 1, "Kyiv"));
+        }
+        final MemoryGeofenceStorage storage = new MemoryGeofenceStorage();
+        final TestObserver<GeofenceChange> observer = new TestObserver<>();
+        storage.getGeofenceChanges().subscribe(observer);
+
+        final int count = GeofenceFile.importTo(new ByteArrayInputStream(write(many)), storage, 10);
+        assertEquals(25, count);
+        assertEquals(25, storage.getGeofences().size());
+        // reset + 3 batches
+        observer.assertValueCount(4);
+        assertEquals(5, observer.values().get(3).getAdded().size());
+        for (int i = 0; i < many.size(); ++i) {
+            assertGeofenceEquals(many.get(i), storage.getGeofences().get(i));
+        }
+    }
+
+    private static byte[] write(List<Geofence> geofences) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(geofences.size(), GeofenceFile.write(out, geofences));
+        return out.toByteArray();
+    }
+
+    private static void assertGeofenceEquals(Geofence expected, Geofence actual) {
+        assertEquals(expected.getUuid(), actual.getUuid());
+        assertEquals(expected.getPoint().getLat(), actual.getPoint().getLat(), 0);
+        assertEquals(expected.getPoint().getLng(), actual.getPoint().getLng(), 0);
+        assertEquals(expected.getRadius(), actual.getRadius());
+        assertEquals(expected.getSsid(), actual.getSsid());
+        if (expected.getFingerprint() == null) {
+            assertNull(actual.getFingerprint());
+        } else {
+            assertEquals(expected.getFingerprint().getAccessPoints(),
+                    actual.getFingerprint().getAccessPoints());
+            assertEquals(expected.getFingerprint().getMinMatches(),
+                    actual.getFingerprint().getMinMatches());
+        }
+        if (expected.getPolygon() == null) {
+            assertNull(actual.getPolygon());
+            return;
+        }
+        assertEquals(expected.getPolygon().getRingCount(), actual.getPolygon().getRingCount());
+        for (int ring = 0; ring < expected.getPolygon().getRingCount(); ++ring) {
+            final List<LocationProvider.Location> vertices = expected.getPolygon().getRing(ring);
+            final List<LocationProvider.Location> actualVertices =
+                    actual.getPolygon().getRing(ring);
+            assertEquals(vertices.size(), actualVertices.size());
+            for (int i = 0; i < vertices.size(); ++i) {
+                assertEquals(vertices.get(i).getLat(), actualVertices.get(i).getLat(), 0);
+                assertEquals(vertices.get(i).getLng(), actualVertices.get(i).getLng(), 0);
+            }
+        }
+    }
+}
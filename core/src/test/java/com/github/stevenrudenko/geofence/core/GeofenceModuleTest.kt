@@ -1,17 +1,23 @@
 package com.github.stevenrudenko.geofence.core
 
 import com.github.stevenrudenko.geofence.core.GeofenceTestConstants.*
+import com.nhaarman.mockito_kotlin.any
 import com.nhaarman.mockito_kotlin.doReturn
+import com.nhaarman.mockito_kotlin.doThrow
 import com.nhaarman.mockito_kotlin.mock
 import com.nhaarman.mockito_kotlin.verify
+import io.reactivex.Observable
 import io.reactivex.observers.TestObserver
 import io.reactivex.schedulers.Schedulers
+import io.reactivex.schedulers.TestScheduler
 import io.reactivex.subjects.PublishSubject
 import org.junit.Assert.assertEquals
 import org.junit.Assert.assertTrue
 import org.junit.Before
 import org.junit.Test
+import java.io.File
 import java.util.ArrayList
+import java.util.concurrent.TimeUnit
 
 /** Tests for [GeofenceModule].  */
 class GeofenceModuleTest {
@@ -105,6 +111,55 @@ class GeofenceModuleTest {
         assertEquals(list[0], kyivGeofence)
     }
 
+    @Test
+    fun getInboundGeofences_inBounds_noLocation_fingerprint() {
+        val office = WifiInfoProvider.AccessPoint("00:11:22:aa:bb:01", -60)
+        val officeGeofence = Geofence("office", ODESSA, GEOFENCE_RADIUS, "Office",
+                WifiFingerprint(listOf(office), 1))
+        geofenceStorage.add(officeGeofence)
+        val observer = TestObserver<ArrayList<Geofence>>()
+        target.start()
+        target.inboundGeofences
+                .observeOn(Schedulers.trampoline())
+                .subscribe(observer)
+        // not connected, but office access point is visible
+        locations.onNext(LVIV)
+        wifiInfos.onNext(WifiInfoProvider.WifiInfo(false, null,
+                listOf(WifiInfoProvider.AccessPoint("00:11:22:AA:BB:01", -55))))
+
+        observer.assertNoErrors()
+        observer.assertValueCount(1)
+        val list = observer.values()[0]
+        assertEquals(list.size, 1)
+        assertEquals(list[0], officeGeofence)
+    }
+
+    /** Signal noise which doesn't cross fingerprint threshold shouldn't restart evaluation. */
+    @Test
+    fun getInboundGeofences_fingerprint_noise() {
+        val officeGeofence = Geofence("office", ODESSA, GEOFENCE_RADIUS, "Office",
+                WifiFingerprint(listOf(WifiInfoProvider.AccessPoint("00:11:22:aa:bb:01", -60)), 1))
+        geofenceStorage.add(officeGeofence)
+        val metrics = MemoryGeofenceMetrics()
+        target.setMetrics(metrics)
+        val observer = TestObserver<ArrayList<Geofence>>()
+        target.start()
+        target.inboundGeofences
+                .observeOn(Schedulers.trampoline())
+                .subscribe(observer)
+        locations.onNext(LVIV)
+        for (rssi in listOf(-55, -50, -58, -65)) {
+            wifiInfos.onNext(WifiInfoProvider.WifiInfo(false, null, listOf(
+                    WifiInfoProvider.AccessPoint("00:11:22:aa:bb:01", rssi),
+                    WifiInfoProvider.AccessPoint("66:77:88:99:aa:bb", rssi - 20))))
+        }
+
+        observer.assertValueCount(4)
+        assertEquals(listOf(officeGeofence), observer.values()[2])
+        assertEquals(0, observer.values()[3].size)
+        assertEquals(2, metrics.skipped)
+    }
+
     @Test
     fun getInboundGeofences_inBounds_multiple_geofences() {
         val observer = TestObserver<ArrayList<Geofence>>()
@@ -146,6 +201,409 @@ class GeofenceModuleTest {
         assertTrue(list.contains(vyshneveGeofence))
     }
 
+    @Test(expected = IllegalStateException::class)
+    fun getTransitions_exception() {
+        target.transitions
+                .subscribeOn(Schedulers.trampoline())
+                .subscribe()
+    }
+
+    @Test
+    fun getTransitions_enter_exit() {
+        val observer = TestObserver<GeofenceTransition>()
+        target.start()
+        target.transitions
+                .observeOn(Schedulers.trampoline())
+                .subscribe(observer)
+        wifiInfos.onNext(WifiInfoProvider.WifiInfo(false))
+        locations.onNext(KHARKIV)
+        locations.onNext(KBP_AIRPORT)
+        locations.onNext(KBP_AIRPORT)
+        locations.onNext(KYIV_AIRPORT)
+
+        observer.assertNoErrors()
+        observer.assertValueCount(4)
+        val values = observer.values()
+        assertEquals(GeofenceTransition.Type.ENTER, values[0].type)
+        assertEquals(kbpGeofence, values[0].geofence)
+        val enters = values.subList(1, 3)
+        assertTrue(enters.all { it.type == GeofenceTransition.Type.ENTER })
+        assertTrue(enters.any { it.geofence == kyivGeofence })
+        assertTrue(enters.any { it.geofence == vyshneveGeofence })
+        assertEquals(GeofenceTransition.Type.EXIT, values[3].type)
+        assertEquals(kbpGeofence, values[3].geofence)
+    }
+
+    @Test
+    fun getTransitions_dwell() {
+        val observer = TestObserver<GeofenceTransition>()
+        target.setDwellTime(0)
+        target.start()
+        target.transitions
+                .observeOn(Schedulers.trampoline())
+                .subscribe(observer)
+        wifiInfos.onNext(WifiInfoProvider.WifiInfo(false))
+        locations.onNext(KBP_AIRPORT)
+        locations.onNext(KBP_AIRPORT)
+        locations.onNext(KBP_AIRPORT)
+
+        observer.assertNoErrors()
+        observer.assertValueCount(2)
+        assertEquals(GeofenceTransition.Type.ENTER, observer.values()[0].type)
+        assertEquals(GeofenceTransition.Type.DWELL, observer.values()[1].type)
+    }
+
+    @Test
+    fun getTransitions_geofence_removed() {
+        val observer = TestObserver<GeofenceTransition>()
+        target.start()
+        target.transitions
+                .observeOn(Schedulers.trampoline())
+                .subscribe(observer)
+        wifiInfos.onNext(WifiInfoProvider.WifiInfo(false))
+        locations.onNext(KBP_AIRPORT)
+        geofenceStorage.remove(kbpGeofence)
+
+        observer.assertNoErrors()
+        observer.assertValueCount(2)
+        assertEquals(GeofenceTransition.Type.EXIT, observer.values()[1].type)
+        assertEquals(kbpGeofence, observer.values()[1].geofence)
+    }
+
+    @Test
+    fun getInboundGeofences_small_move() {
+        val observer = TestObserver<ArrayList<Geofence>>()
+        target.start()
+        target.inboundGeofences
+                .observeOn(Schedulers.trampoline())
+                .subscribe(observer)
+        wifiInfos.onNext(WifiInfoProvider.WifiInfo(false))
+        locations.onNext(KBP_AIRPORT)
+        // too close to cross any boundary, so previous result is reused
+        locations.onNext(LocationProvider.Location(KBP_AIRPORT.lat + 0.0001, KBP_AIRPORT.lng))
+        wifiInfos.onNext(WifiInfoProvider.WifiInfo(true, "Kyiv"))
+
+        observer.assertNoErrors()
+        observer.assertValueCount(3)
+        assertEquals(listOf(kbpGeofence), observer.values()[1])
+        assertEquals(2, observer.values()[2].size)
+    }
+
+    @Test
+    fun getTransitions_debounce() {
+        val observer = TestObserver<GeofenceTransition>()
+        target.setDebounceFixes(3)
+        target.start()
+        target.transitions
+                .observeOn(Schedulers.trampoline())
+                .subscribe(observer)
+        wifiInfos.onNext(WifiInfoProvider.WifiInfo(false))
+        // noisy fixes around KBP airport geofence boundary
+        val inside = LocationProvider.Location(KBP_AIRPORT.lat + 0.0895, KBP_AIRPORT.lng, 500f, 0)
+        val outside = LocationProvider.Location(KBP_AIRPORT.lat + 0.0913, KBP_AIRPORT.lng, 500f, 0)
+        locations.onNext(inside)
+        locations.onNext(outside)
+        locations.onNext(inside)
+        locations.onNext(inside)
+        observer.assertValueCount(0)
+        locations.onNext(inside)
+        observer.assertValueCount(1)
+        assertEquals(GeofenceTransition.Type.ENTER, observer.values()[0].type)
+        locations.onNext(outside)
+        locations.onNext(inside)
+        locations.onNext(outside)
+        locations.onNext(outside)
+        observer.assertValueCount(1)
+        locations.onNext(outside)
+        observer.assertValueCount(2)
+        assertEquals(GeofenceTransition.Type.EXIT, observer.values()[1].type)
+        observer.assertNoErrors()
+    }
+
+    @Test
+    fun getTransitions_hysteresis() {
+        val observer = TestObserver<GeofenceTransition>()
+        target.setDebounceFixes(3)
+        target.setHysteresis(100f)
+        target.start()
+        target.transitions
+                .observeOn(Schedulers.trampoline())
+                .subscribe(observer)
+        wifiInfos.onNext(WifiInfoProvider.WifiInfo(false))
+        // accuracy circle is well inside of KBP airport geofence
+        locations.onNext(LocationProvider.Location(KBP_AIRPORT.lat, KBP_AIRPORT.lng, 50f, 0))
+        observer.assertValueCount(1)
+        assertEquals(GeofenceTransition.Type.ENTER, observer.values()[0].type)
+        // accuracy circle touches boundary, but hysteresis isn't cleared
+        locations.onNext(LocationProvider.Location(KBP_AIRPORT.lat + 0.0905, KBP_AIRPORT.lng, 50f, 0))
+        observer.assertValueCount(1)
+        locations.onNext(LVIV)
+        observer.assertValueCount(2)
+        assertEquals(GeofenceTransition.Type.EXIT, observer.values()[1].type)
+        observer.assertNoErrors()
+    }
+
+    @Test(expected = IllegalArgumentException::class)
+    fun setDebounceFixes_illegal() {
+        target.setDebounceFixes(0)
+    }
+
+    @Test
+    fun setMetrics() {
+        val metrics = MemoryGeofenceMetrics()
+        target.setMetrics(metrics)
+        target.start()
+        wifiInfos.onNext(WifiInfoProvider.WifiInfo(true, "Kyiv"))
+        locations.onNext(LocationProvider.Location(KBP_AIRPORT.lat, KBP_AIRPORT.lng, 10f,
+                System.currentTimeMillis()))
+        locations.onNext(KBP_AIRPORT)
+
+        assertEquals(2, metrics.events)
+        assertEquals(1, metrics.queueLag.count)
+        assertEquals(1, metrics.evaluations)
+        assertEquals(1, metrics.skipped)
+        assertEquals(1, metrics.ssidMatches)
+        assertEquals(1, metrics.distanceMatches)
+        assertTrue(metrics.evaluated >= 1)
+        assertEquals(2, metrics.checkLatency.count)
+    }
+
+    @Test
+    fun setPolicy() {
+        target.start()
+        wifiInfos.onNext(WifiInfoProvider.WifiInfo(false))
+        locations.onNext(LVIV)
+        verify(locationProviderMock).setPolicy(any())
+    }
+
+    @Test
+    fun setPolicy_transitions() {
+        val provider = FakeLocationProvider()
+        val module = GeofenceModule(provider, wifiInfoProviderMock, geofenceStorage,
+                Schedulers.trampoline())
+        module.start()
+        wifiInfos.onNext(WifiInfoProvider.WifiInfo(false))
+        // far from all geofences
+        provider.emit(LVIV)
+        assertEquals(LocationProvider.Policy.Priority.LOW_POWER, provider.policy.priority)
+        assertTrue(provider.policy.maxWaitTime > 0)
+        // ~3 km to the north of KBP airport geofence
+        provider.emit(LocationProvider.Location(KBP_AIRPORT.lat + 0.12, KBP_AIRPORT.lng))
+        assertEquals(LocationProvider.Policy.Priority.BALANCED, provider.policy.priority)
+        assertEquals(0, provider.policy.maxWaitTime)
+        // ~200 m to the north of KBP airport geofence
+        provider.emit(LocationProvider.Location(KBP_AIRPORT.lat + 0.092, KBP_AIRPORT.lng))
+        assertEquals(LocationProvider.Policy.Priority.HIGH_ACCURACY, provider.policy.priority)
+        // going back
+        provider.emit(LVIV)
+        assertEquals(LocationProvider.Policy.Priority.LOW_POWER, provider.policy.priority)
+        assertEquals(4, provider.policies.size)
+        module.stop()
+    }
+
+    @Test
+    fun getInboundGeofences_coalesced() {
+        val worker = TestScheduler()
+        val module = GeofenceModule(locationProviderMock, wifiInfoProviderMock, geofenceStorage,
+                worker)
+        val observer = TestObserver<ArrayList<Geofence>>()
+        module.start()
+        module.inboundGeofences.subscribe(observer)
+        wifiInfos.onNext(WifiInfoProvider.WifiInfo(false))
+        // burst of batched fixes arrives at once
+        locations.onNext(LVIV)
+        locations.onNext(KYIV)
+        locations.onNext(KBP_AIRPORT)
+        geofenceStorage.add(Geofence(KHARKIV, GEOFENCE_RADIUS, "Kharkiv"))
+        worker.triggerActions()
+
+        // first fix is checked at once, the rest are coalesced to the latest one
+        observer.assertNoErrors()
+        observer.assertValueCount(2)
+        assertEquals(0, observer.values()[0].size)
+        assertEquals(listOf(kbpGeofence), observer.values()[1])
+        module.stop()
+    }
+
+    @Test
+    fun setCoalescingWindow() {
+        val worker = TestScheduler()
+        val module = GeofenceModule(locationProviderMock, wifiInfoProviderMock, geofenceStorage,
+                worker)
+        val observer = TestObserver<ArrayList<Geofence>>()
+        module.setCoalescingWindow(1000)
+        module.start()
+        module.inboundGeofences.subscribe(observer)
+        wifiInfos.onNext(WifiInfoProvider.WifiInfo(false))
+        locations.onNext(LVIV)
+        locations.onNext(KYIV)
+        worker.advanceTimeBy(500, TimeUnit.MILLISECONDS)
+        observer.assertValueCount(0)
+        locations.onNext(KBP_AIRPORT)
+        worker.advanceTimeBy(500, TimeUnit.MILLISECONDS)
+
+        observer.assertValueCount(1)
+        assertEquals(listOf(kbpGeofence), observer.values()[0])
+        module.stop()
+    }
+
+    @Test(expected = IllegalArgumentException::class)
+    fun setCoalescingWindow_illegal() {
+        target.setCoalescingWindow(-1)
+    }
+
+    @Test
+    fun setSnapshot() {
+        val snapshot = File.createTempFile("geofences", ".snapshot")
+        snapshot.deleteOnExit()
+        GeofenceSnapshot.write(snapshot, GeofenceEvaluator(listOf(kyivGeofence)))
+        val changes = PublishSubject.create<GeofenceChange>()
+        val storageMock = mock<GeofenceStorage> {
+            on { geofenceChanges } doReturn changes
+        }
+        val module = GeofenceModule(locationProviderMock, wifiInfoProviderMock, storageMock,
+                Schedulers.trampoline())
+        val observer = TestObserver<ArrayList<Geofence>>()
+        module.setSnapshot(snapshot)
+        module.start()
+        module.inboundGeofences.subscribe(observer)
+        // storage isn't loaded yet, so snapshot answers
+        wifiInfos.onNext(WifiInfoProvider.WifiInfo(false))
+        locations.onNext(KYIV)
+        // loaded storage replaces snapshot
+        changes.onNext(GeofenceChange.reset(listOf(kbpGeofence)))
+
+        observer.assertValueCount(2)
+        assertEquals(listOf(kyivGeofence.uuid), observer.values()[0].map { it.uuid })
+        assertEquals(0, observer.values()[1].size)
+        module.stop()
+    }
+
+    /** Empty storage is authoritative too, so snapshot doesn't outlive it. */
+    @Test
+    fun setSnapshot_emptyStorage() {
+        val snapshot = File.createTempFile("geofences", ".snapshot")
+        snapshot.deleteOnExit()
+        GeofenceSnapshot.write(snapshot, GeofenceEvaluator(listOf(kyivGeofence)))
+        val changes = PublishSubject.create<GeofenceChange>()
+        val storageMock = mock<GeofenceStorage> {
+            on { geofenceChanges } doReturn changes
+        }
+        val module = GeofenceModule(locationProviderMock, wifiInfoProviderMock, storageMock,
+                Schedulers.trampoline())
+        val observer = TestObserver<ArrayList<Geofence>>()
+        module.setSnapshot(snapshot)
+        module.start()
+        module.inboundGeofences.subscribe(observer)
+        wifiInfos.onNext(WifiInfoProvider.WifiInfo(false))
+        locations.onNext(KYIV)
+        // all geofences were deleted while app wasn't running
+        changes.onNext(GeofenceChange.reset(emptyList()))
+
+        observer.assertValueCount(2)
+        assertEquals(listOf(kyivGeofence.uuid), observer.values()[0].map { it.uuid })
+        assertEquals(0, observer.values()[1].size)
+        assertEquals(0, module.createEvaluator().size())
+        module.stop()
+    }
+
+    @Test
+    fun setSnapshot_paged() {
+        val snapshot = File.createTempFile("geofences", ".snapshot")
+        snapshot.deleteOnExit()
+        GeofenceSnapshot.write(snapshot, GeofenceEvaluator(listOf(kyivGeofence)))
+        val module = GeofenceModule(locationProviderMock, wifiInfoProviderMock,
+                PagedGeofenceStorage(geofenceStorage, locations,
+                        PagedGeofenceStorage.DEFAULT_RADIUS, PagedGeofenceStorage.DEFAULT_TILE_SIZE,
+                        PagedGeofenceStorage.DEFAULT_MAX_TILES, Schedulers.trampoline()),
+                Schedulers.trampoline())
+        val observer = TestObserver<ArrayList<Geofence>>()
+        module.setSnapshot(snapshot)
+        module.start()
+        module.inboundGeofences.subscribe(observer)
+        wifiInfos.onNext(WifiInfoProvider.WifiInfo(false))
+        // paged storage is empty till location is known, so snapshot answers first check
+        locations.onNext(KYIV)
+
+        observer.assertValueCount(2)
+        assertEquals(listOf(kyivGeofence.uuid), observer.values()[0].map { it.uuid })
+        // then loaded tiles replace snapshot
+        assertEquals(listOf(kyivGeofence.uuid), observer.values()[1].map { it.uuid })
+        assertEquals(3, module.createEvaluator().size())
+        module.stop()
+    }
+
+    @Test
+    fun getErrors() {
+        val storageMock = mock<GeofenceStorage> {
+            on { geofenceChanges } doReturn Observable.error(
+                    IllegalStateException("Broken storage"))
+        }
+        val module = GeofenceModule(locationProviderMock, wifiInfoProviderMock, storageMock,
+                Schedulers.trampoline())
+        val errors = module.errors.test()
+        val observer = TestObserver<ArrayList<Geofence>>()
+        module.start()
+        module.inboundGeofences.subscribe(observer)
+        // module keeps checking without geofences
+        wifiInfos.onNext(WifiInfoProvider.WifiInfo(false))
+        locations.onNext(KYIV)
+
+        errors.assertValueCount(1)
+        observer.assertNoErrors()
+        observer.assertValueCount(1)
+        module.stop()
+    }
+
+    @Test
+    fun getErrors_check() {
+        val broken = IllegalStateException("Broken metrics")
+        target.setMetrics(mock {
+            on { onCheck(any()) } doThrow broken
+        })
+        val errors = target.errors.test()
+        target.start()
+        wifiInfos.onNext(WifiInfoProvider.WifiInfo(false))
+        locations.onNext(KYIV)
+
+        errors.assertValue(broken)
+        target.stop()
+    }
+
+    @Test
+    fun createBatchEvaluator() {
+        target.start()
+        // burst of changes is applied in place at once
+        geofenceStorage.remove(kbpGeofence)
+        val lvivGeofence = Geofence(LVIV, GEOFENCE_RADIUS, "Lviv")
+        geofenceStorage.add(lvivGeofence)
+
+        val result = target.createBatchEvaluator().evaluate(
+                doubleArrayOf(LVIV.lat, KBP_AIRPORT.lat), doubleArrayOf(LVIV.lng, KBP_AIRPORT.lng))
+        assertEquals(listOf(lvivGeofence.uuid), result[0].toList())
+        assertEquals(0, result[1].size)
+        target.stop()
+    }
+
+    @Test
+    fun createEvaluator_manyChanges() {
+        target.start()
+        val geofences = ArrayList<Geofence>()
+        for (i in 0..GeofenceEvaluator.MAX_CHANGES + 1) {
+            geofences.add(Geofence(LocationProvider.Location(LVIV.lat, LVIV.lng + i * 0.001),
+                    GEOFENCE_RADIUS, "Lviv"))
+        }
+        geofenceStorage.add(geofences[0])
+        assertEquals(4, target.createEvaluator().size())
+        // too many changes to apply in place, so evaluator is rebuilt
+        geofenceStorage.addAll(geofences.subList(1, geofences.size))
+        val evaluator = target.createEvaluator()
+        assertEquals(3 + geofences.size, evaluator.size())
+        assertEquals(0, evaluator.changeCount)
+        assertEquals(geofences.size, evaluator.evaluate(LVIV.lat, LVIV.lng, "Lviv"))
+        target.stop()
+    }
+
     @Test
     fun start() {
         target.start()
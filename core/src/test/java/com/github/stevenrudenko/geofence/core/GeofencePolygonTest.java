@@ -0,0 +1,129 @@
+package com.github.stevenrudenko.geofence.core;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static com.github.stevenrudenko.geofence.core.GeofenceTestConstants.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/** Tests for {@link GeofencePolygon}. */
+public class GeofencePolygonTest {
+    /** Square around Kyiv with square hole in the middle. */
+    private final GeofencePolygon target = square(KYIV, 0.01, 0.002);
+
+    @Test
+    public void contains() {
+        assertFalse(target.contains(KYIV.getLat(), KYIV.getLng()));
+        assertTrue(target.contains(KYIV.getLat() + 0.005, KYIV.getLng()));
+        assertTrue(target.contains(KYIV.getLat() - 0.005, KYIV.getLng() + 0.005));
+        assertFalse(target.contains(KYIV.getLat() + 0.02, KYIV.getLng()));
+        assertFalse(target.contains(LVIV.getLat(), LVIV.getLng()));
+    }
+
+    /** Banded ray casting should give the same results as plain ray casting. */
+    @Test
+    public void contains_sameAsPlainRayCasting() {
+        final Random random = new Random(42);
+        final List<LocationProvider.Location> star = new ArrayList<>();
+        final int vertices = 500;
+        for (int i = 0; i < vertices; ++i) {
+            final double angle = 2 * Math.PI * i / vertices;
+            final double distance = 0.005 + random.nextDouble() * 0.01;
+            star.add(new LocationProvider.Location(KYIV.getLat() + Math.sin(angle) * distance,
+                    KYIV.getLng() + Math.cos(angle) * distance));
+        }
+        final GeofencePolygon polygon =
+                new GeofencePolygon(star, Collections.<List<LocationProvider.Location>>emptyList());
+        for (int i = 0; i < 10000; ++i) {
+            final double lat = KYIV.getLat() + (random.nextDouble() - 0.5) * 0.04;
+            final double lng = KYIV.getLng() + (random.nextDouble() - 0.5) * 0.04;
+            assertEquals(contains(star, lat, lng), polygon.contains(lat, lng));
+        }
+    }
+
+    @Test
+    public void boundaryDistance() {
+        // 0.003 degrees of latitude to outer edge
+        final double expected = GeofenceUtils.distance(KYIV.getLat() + 0.007, KYIV.getLng(),
+                KYIV.getLat() + 0.01, KYIV.getLng());
+        final double actual = target.boundaryDistance(KYIV.getLat() + 0.007, KYIV.getLng());
+        assertTrue(actual <= expected);
+        assertTrue(actual > expected * 0.98);
+    }
+
+    @Test
+    public void geofence() {
+        final Geofence geofence = new Geofence(target, "Kyiv");
+        // enclosing circle contains every vertex
+        for (LocationProvider.Location vertex : target.getRing(0)) {
+            assertTrue(GeofenceUtils.distance(geofence.getPoint(), vertex)
+                    <= geofence.getRadius());
+        }
+        assertTrue(GeofenceUtils.isInsideGeofence(geofence,
+                new LocationProvider.Location(KYIV.getLat() + 0.005, KYIV.getLng()), null));
+        assertFalse(GeofenceUtils.isInsideGeofence(geofence, KYIV, null));
+        assertTrue(GeofenceUtils.isInsideGeofence(geofence, KYIV, "Kyiv"));
+        assertSame(target.getBoundingBox(), BoundingBox.of(geofence));
+    }
+
+    @Test
+    public void writeRead() throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        target.write(new DataOutputStream(out));
+        final GeofencePolygon actual = GeofencePolygon.read(
+                new DataInputStream(new ByteArrayInputStream(out.toByteArray())));
+        assertEquals(2, actual.getRingCount());
+        assertEquals(4, actual.getRing(1).size());
+        assertEquals(target.getRing(1).get(2).getLat(), actual.getRing(1).get(2).getLat(), 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void illegalRing() {
+        new GeofencePolygon(Arrays.asList(KYIV, LVIV),
+                Collections.<List<LocationProvider.Location>>emptyList());
+    }
+
+    /**
+     * @return square with given half size around center with square hole of given half size.
+     */
+    static GeofencePolygon square(LocationProvider.Location center, double size, double hole) {
+        return new GeofencePolygon(ring(center, size),
+                Collections.singletonList(ring(center, hole)));
+    }
+
+    private static List<LocationProvider.Location> ring(LocationProvider.Location center,
+                                                        double size) {
+        return Arrays.asList(
+                new LocationProvider.Location(center.getLat() - size, center.getLng() - size),
+                new LocationProvider.Location(center.getLat() - size, center.getLng() + size),
+                new LocationProvider.Location(center.getLat() + size, center.getLng() + size),
+                new LocationProvider.Location(center.getLat() + size, center.getLng() - size));
+    }
+
+    private static boolean contains(List<LocationProvider.Location> ring, double lat, double lng) {
+        boolean inside = false;
+        for (int i = 0, j = ring.size() - 1; i < ring.size(); j = i++) {
+            final LocationProvider.Location a = ring.get(j);
+            final LocationProvider.Location b = ring.get(i);
+            if ((a.getLat() > lat) != (b.getLat() > lat) && lng < a.getLng()
+                    + (lat - a.getLat()) * (b.getLng() - a.getLng()) / (b.getLat() - a.getLat())) {
+                inside = !inside;
+            }
+        }
+        return inside;
+    }
+
+}
@@ -0,0 +1,92 @@
+package com.github.stevenrudenko.geofence.core;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static com.github.stevenrudenko.geofence.core.GeofenceTestConstants.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/** Tests for {@link GeofenceRegistry}. */
+public class GeofenceRegistryTest {
+    private final Geofence kyiv = new Geofence(KYIV, GEOFENCE_RADIUS, "Kyiv");
+    private final Geofence lviv = new Geofence(LVIV, GEOFENCE_RADIUS, "Lviv");
+    private final Geofence kharkiv = new Geofence(KHARKIV, GEOFENCE_RADIUS, "Kharkiv");
+
+    private final GeofenceRegistry target = new GeofenceRegistry();
+
+    @Test
+    public void addAll() {
+        GeofenceChange change = target.addAll(Arrays.asList(kyiv, lviv));
+        assertEquals(Arrays.asList(kyiv, lviv), change.getAdded());
+        assertTrue(change.getUpdated().isEmpty());
+
+        final Geofence moved = new Geofence(kyiv.getUuid(), KHARKIV, GEOFENCE_RADIUS, "Kyiv");
+        change = target.addAll(Collections.singletonList(moved));
+        assertTrue(change.getAdded().isEmpty());
+        assertEquals(Collections.singletonList(moved), change.getUpdated());
+        // updated geofence keeps its place
+        assertEquals(Arrays.asList(moved, lviv), target.getSnapshot().getGeofences());
+        assertSame(moved, target.getSnapshot().get(kyiv.getUuid()));
+        assertEquals(2, target.getSnapshot().getVersion());
+    }
+
+    @Test
+    public void removeAll() {
+        target.addAll(Arrays.asList(kyiv, lviv, kharkiv));
+        final GeofenceChange change = target.removeAll(Arrays.asList(
+                new Geofence(lviv.getUuid(), LVIV, 1, "Other"), lviv));
+        assertEquals(Collections.singletonList(lviv), change.getRemoved());
+        assertEquals(Arrays.asList(kyiv, kharkiv), target.getSnapshot().getGeofences());
+        assertNull(target.getSnapshot().get(lviv.getUuid()));
+        assertSame(kharkiv, target.getSnapshot().get(kharkiv.getUuid()));
+
+        final long version = target.getSnapshot().getVersion();
+        assertTrue(target.removeAll(Collections.singletonList(lviv)).isEmpty());
+        assertEquals(version, target.getSnapshot().getVersion());
+    }
+
+    @Test
+    public void replaceAll() {
+        target.addAll(Collections.singletonList(kyiv));
+        final GeofenceChange change = target.replaceAll(Arrays.asList(lviv, kharkiv, lviv));
+        assertTrue(change.isReset());
+        assertEquals(Arrays.asList(lviv, kharkiv), change.getAdded());
+        assertEquals(2, target.getSnapshot().size());
+        assertNull(target.getSnapshot().get(kyiv.getUuid()));
+    }
+
+    /** Published snapshot should never change. */
+    @Test
+    public void getSnapshot_immutable() {
+        target.addAll(Collections.singletonList(kyiv));
+        final GeofenceRegistry.Snapshot snapshot = target.getSnapshot();
+        final List<Geofence> geofences = snapshot.getGeofences();
+        target.addAll(Collections.singletonList(lviv));
+        target.removeAll(Collections.singletonList(kyiv));
+
+        assertEquals(Collections.singletonList(kyiv), geofences);
+        assertSame(kyiv, snapshot.get(kyiv.getUuid()));
+        assertSame(geofences, snapshot.getGeofences());
+        assertEquals(Collections.singletonList(lviv), target.getSnapshot().getGeofences());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void getSnapshot_readOnly() {
+        target.addAll(Collections.singletonList(kyiv));
+        target.getSnapshot().getGeofences().add(lviv);
+    }
+
+    @Test
+    public void getGeofences_box() {
+        target.addAll(Arrays.asList(kyiv, lviv, kharkiv));
+        assertEquals(Collections.singletonList(lviv), target.getSnapshot().getGeofences(
+                BoundingBox.around(LVIV.getLat(), LVIV.getLng(), 1000)));
+    }
+
+}
@@ -0,0 +1,179 @@
+package com.github.stevenrudenko.geofence.core;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static com.github.stevenrudenko.geofence.core.GeofenceTestConstants.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/** Tests for {@link GeofenceSnapshot}. */
+public class GeofenceSnapshotTest {
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<Geofence> geofences = Arrays.asList(
+            new Geofence(KYIV, GEOFENCE_RADIUS, "Kyiv"),
+            new Geofence(KYIV_AIRPORT, 2000, "Kyiv"),
+            new Geofence("custom-id", LVIV, 150, "Hotel[-_\\d]*"),
+            new Geofence(ODESSA, 1, ""),
+            new Geofence(GeofencePolygonTest.square(KHARKIV, 0.01, 0.002), "Kharkiv"),
+            new Geofence("office", VYSHNEVE, 100, "Office", GeofenceFileTest.OFFICE_FINGERPRINT));
+
+    @Test
+    public void write_read() throws Exception {
+        final GeofenceEvaluator expected = new GeofenceEvaluator(geofences);
+        final File file = folder.newFile();
+        GeofenceSnapshot.write(file, expected);
+        final GeofenceEvaluator actual = GeofenceSnapshot.read(file);
+
+        final GeofenceColumns columns = actual.getColumns();
+        assertEquals(geofences.size(), columns.size());
+        assertEquals(expected.getColumns().getSsidCount(), columns.getSsidCount());
+        // equal SSIDs share compiled pattern
+        assertSame(columns.getGeofence(0).getSsidPattern(),
+                columns.getGeofence(1).getSsidPattern());
+        for (int slot = 0; slot < geofences.size(); ++slot) {
+            final Geofence geofence = geofences.get(slot);
+            final Geofence restored = columns.getGeofence(slot);
+            assertEquals(geofence.getUuid(), restored.getUuid());
+            assertEquals(geofence.getSsid(), restored.getSsid());
+            assertEquals(geofence.getRadius(), restored.getRadius());
+            assertEquals(slot, columns.indexOf(geofence.getUuid()));
+            if (geofence.getFingerprint() == null) {
+                assertNull(restored.getFingerprint());
+            } else {
+                assertEquals(geofence.getFingerprint().getAccessPoints(),
+                        restored.getFingerprint().getAccessPoints());
+            }
+            if (geofence.getPolygon() == null) {
+                assertNull(restored.getPolygon());
+            } else {
+                assertEquals(geofence.getPolygon().getRingCount(),
+                        restored.getPolygon().getRingCount());
+            }
+        }
+
+        final List<LocationProvider.Location> points = Arrays.asList(KYIV, KYIV_AIRPORT,
+                KBP_AIRPORT, VYSHNEVE, LVIV, ODESSA, KHARKIV, SIMFEROPOL,
+                new LocationProvider.Location(KHARKIV.getLat() + 0.004, KHARKIV.getLng()));
+        final List<WifiInfoProvider.AccessPoint> accessPoints = Collections.singletonList(
+                new WifiInfoProvider.AccessPoint("00:11:22:aa:bb:01", -50));
+        for (LocationProvider.Location point : points) {
+            for (String ssid : Arrays.asList(null, "Kyiv", "Hotel-12", "Kharkiv")) {
+                assertEquals(inbounds(expected, point, ssid, accessPoints),
+                        inbounds(actual, point, ssid, accessPoints));
+            }
+        }
+        assertEquals(Collections.singletonList("office"),
+                inbounds(actual, SIMFEROPOL, null, accessPoints));
+    }
+
+    @Test
+    public void write_read_empty() throws Exception {
+        final File file = folder.newFile();
+        GeofenceSnapshot.write(file, new GeofenceEvaluator(new ArrayList<Geofence>()));
+        final GeofenceEvaluator actual = GeofenceSnapshot.read(file);
+        assertEquals(0, actual.getColumns().size());
+        assertEquals(0, actual.evaluate(KYIV.getLat(), KYIV.getLng(), "Kyiv"));
+    }
+
+    @Test(expected = IOException.class)
+    public void read_wrongFormat() throws Exception {
+        final File file = folder.newFile();
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(new byte[]{1, 2, 3, 4, 5});
+        }
+        GeofenceSnapshot.read(file);
+    }
+
+    @Test(expected = IOException.class)
+    public void read_truncated() throws Exception {
+        final File file = folder.newFile();
+        GeofenceSnapshot.write(file, new GeofenceEvaluator(geofences));
+        try (RandomAccessFile data = new RandomAccessFile(file, "rw")) {
+            data.setLength(data.length() / 2);
+        }
+        GeofenceSnapshot.read(file);
+    }
+
+    @Test(expected = IOException.class)
+    public void read_wrongCount() throws Exception {
+        final File file = folder.newFile();
+        GeofenceSnapshot.write(file, new GeofenceEvaluator(geofences));
+        try (RandomAccessFile data = new RandomAccessFile(file, "rw")) {
+            // geofences count follows signature and version
+            data.seek(5);
+            data.writeInt(Integer.MAX_VALUE);
+        }
+        GeofenceSnapshot.read(file);
+    }
+
+    @Test(expected = IOException.class)
+    public void read_wrongCellSize() throws Exception {
+        final File file = folder.newFile();
+        GeofenceSnapshot.write(file, new GeofenceEvaluator(geofences));
+        try (RandomAccessFile data = new RandomAccessFile(file, "rw")) {
+            // cell size follows geofences count
+            data.seek(9);
+            data.writeDouble(Double.NaN);
+        }
+        GeofenceSnapshot.read(file);
+    }
+
+    @Test(expected = IOException.class)
+    public void read_wrongCellSlot() throws Exception {
+        final File file = folder.newFile();
+        GeofenceSnapshot.write(file, new GeofenceEvaluator(geofences));
+        try (RandomAccessFile data = new RandomAccessFile(file, "rw")) {
+            data.seek(17);
+            final int capacity = data.readInt();
+            // cell slots follow header, geofence columns, cell keys, starts and counts
+            data.seek(33 + geofences.size() * GeofenceSnapshot.SLOT_BYTES + capacity * 16);
+            data.writeInt(geofences.size());
+        }
+        GeofenceSnapshot.read(file);
+    }
+
+    @Test(expected = IOException.class)
+    public void read_wrongCellRange() throws Exception {
+        final File file = folder.newFile();
+        GeofenceSnapshot.write(file, new GeofenceEvaluator(geofences));
+        try (RandomAccessFile data = new RandomAccessFile(file, "rw")) {
+            data.seek(17);
+            final int capacity = data.readInt();
+            final long keys = 33 + geofences.size() * GeofenceSnapshot.SLOT_BYTES;
+            int position = 0;
+            data.seek(keys);
+            while (data.readLong() == -1L) {
+                ++position;
+            }
+            // count of first occupied cell
+            data.seek(keys + capacity * 12 + position * 4);
+            data.writeInt(Integer.MAX_VALUE);
+        }
+        GeofenceSnapshot.read(file);
+    }
+
+    private static List<String> inbounds(GeofenceEvaluator evaluator,
+                                         LocationProvider.Location point, String ssid,
+                                         List<WifiInfoProvider.AccessPoint> accessPoints) {
+        final int count = evaluator.evaluate(point.getLat(), point.getLng(), ssid, accessPoints);
+        final List<String> result = new ArrayList<>(count);
+        for (int i = 0; i < count; ++i) {
+            result.add(evaluator.getGeofence(evaluator.getInbound(i)).getUuid());
+        }
+        return result;
+    }
+}
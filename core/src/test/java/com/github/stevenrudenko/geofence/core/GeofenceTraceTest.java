@@ -0,0 +1,77 @@
+package com.github.stevenrudenko.geofence.core;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.github.stevenrudenko.geofence.core.GeofenceTestConstants.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+/** Tests for {@link GeofenceTrace}. */
+public class GeofenceTraceTest {
+
+    @Test
+    public void writeRead() throws IOException {
+        final List<GeofenceTrace.Record> records = new ArrayList<>();
+        // long enough to be read with several buffers
+        for (int i = 0; i < 5000; ++i) {
+            records.add(new GeofenceTrace.Record(
+                    new LocationProvider.Location(KYIV.getLat() + i * 1e-5, KYIV.getLng(),
+                            i % 50, 1500000000000L + i * 1000L),
+                    i % 3 == 0
+                            ? new WifiInfoProvider.WifiInfo(false)
+                            : new WifiInfoProvider.WifiInfo(true, "Cafe, free #" + i)));
+        }
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(records.size(), GeofenceTrace.write(out, records));
+
+        final List<GeofenceTrace.Record> actual = read(out.toByteArray());
+        assertEquals(records.size(), actual.size());
+        for (int i = 0; i < records.size(); ++i) {
+            final LocationProvider.Location expected = records.get(i).getLocation();
+            final LocationProvider.Location location = actual.get(i).getLocation();
+            assertEquals(expected.getLat(), location.getLat(), 0);
+            assertEquals(expected.getLng(), location.getLng(), 0);
+            assertEquals(expected.getAccuracy(), location.getAccuracy(), 0);
+            assertEquals(expected.getTime(), location.getTime());
+            assertEquals(records.get(i).getWifiInfo(), actual.get(i).getWifiInfo());
+        }
+    }
+
+    @Test
+    public void read_lines() throws IOException {
+        final List<GeofenceTrace.Record> records = read(
+                "# comment\r\n\r\n1,50.1,30.2,5,Home\r\n\n2,50.3,30.4,0,".getBytes("UTF-8"));
+        assertEquals(2, records.size());
+        assertEquals("Home", records.get(0).getWifiInfo().getSsid());
+        assertEquals(2, records.get(1).getLocation().getTime());
+        assertFalse(records.get(1).getWifiInfo().isConnected());
+        assertNull(records.get(1).getWifiInfo().getSsid());
+    }
+
+    @Test(expected = IOException.class)
+    public void read_wrongFormat() throws IOException {
+        read("1,50.1,30.2,5,Home\n2,50.3,Kyiv,0,\n".getBytes("UTF-8"));
+    }
+
+    static List<GeofenceTrace.Record> read(byte[] bytes) throws IOException {
+        final List<GeofenceTrace.Record> result = new ArrayList<>();
+        try (GeofenceTrace.Reader reader = GeofenceTrace.open(
+                Channels.newChannel(new ByteArrayInputStream(bytes)))) {
+            GeofenceTrace.Record record;
+            while ((record = reader.next()) != null) {
+                result.add(record);
+            }
+        }
+        return result;
+    }
+
+}
@@ -0,0 +1,145 @@
+package com.github.stevenrudenko.geofence.core;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.reactivex.Observable;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.schedulers.Schedulers;
+
+import static com.github.stevenrudenko.geofence.core.GeofenceTestConstants.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/** Tests for {@link GeofenceTracker}. */
+public class GeofenceTrackerTest {
+    private final Geofence kyiv = new Geofence(KYIV, GEOFENCE_RADIUS, "Kyiv");
+    private final Geofence kbp = new Geofence(KBP_AIRPORT, GEOFENCE_RADIUS, "KBP");
+
+    private final MemoryGeofenceStorage storage = new MemoryGeofenceStorage();
+    private final TestObserver<DeviceTransition> observer = new TestObserver<>();
+    private GeofenceTracker target = new GeofenceTracker(storage, 4, Schedulers.trampoline());
+
+    @After
+    public void tearDown() {
+        target.stop();
+    }
+
+    @Test
+    public void track() {
+        storage.add(kyiv);
+        storage.add(kbp);
+        target.start();
+        target.getTransitions().subscribe(observer);
+
+        target.track("first", KBP_AIRPORT, null);
+        target.track("second", LVIV, "Kyiv");
+        target.track("first", LVIV, null);
+        target.track("second", LVIV, null);
+
+        observer.assertValueCount(4);
+        assertTransition("first", GeofenceTransition.Type.ENTER, kbp, observer.values().get(0));
+        assertTransition("second", GeofenceTransition.Type.ENTER, kyiv, observer.values().get(1));
+        assertTransition("first", GeofenceTransition.Type.EXIT, kbp, observer.values().get(2));
+        assertTransition("second", GeofenceTransition.Type.EXIT, kyiv, observer.values().get(3));
+    }
+
+    @Test
+    public void track_geofencesChanged() {
+        storage.add(kyiv);
+        storage.add(kbp);
+        target.start();
+        target.getTransitions().subscribe(observer);
+
+        target.track("device", KBP_AIRPORT, "Kyiv");
+        observer.assertValueCount(2);
+        // removed geofence slot is skipped, remaining one keeps its slot
+        storage.remove(kyiv);
+        target.track("device", KBP_AIRPORT, "Kyiv");
+        observer.assertValueCount(3);
+        assertTransition("device", GeofenceTransition.Type.EXIT, kyiv, observer.values().get(2));
+        storage.add(new Geofence(kbp.getUuid(), KBP_AIRPORT, 1, "KBP"));
+        target.track("device", KBP_AIRPORT, null);
+        observer.assertValueCount(3);
+    }
+
+    @Test
+    public void track_storageError() {
+        final GeofenceStorage broken = new MemoryGeofenceStorage() {
+            @Override
+            public Observable<GeofenceChange> getGeofenceChanges() {
+                return Observable.just(GeofenceChange.reset(Collections.singletonList(kbp)))
+                        .concatWith(Observable.<GeofenceChange>error(
+                                new IllegalStateException("Broken storage")));
+            }
+        };
+        target = new GeofenceTracker(broken, 4, Schedulers.trampoline());
+        final TestObserver<Throwable> errors = target.getErrors().test();
+        target.start();
+        target.getTransitions().subscribe(observer);
+
+        // geofences loaded before error are still tracked
+        target.track("device", KBP_AIRPORT, null);
+        errors.assertValueCount(1);
+        observer.assertValueCount(1);
+        assertTransition("device", GeofenceTransition.Type.ENTER, kbp, observer.values().get(0));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void track_notStarted() {
+        target.track("device", KYIV, null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void illegalShards() {
+        new GeofenceTracker(storage, 0, Schedulers.trampoline());
+    }
+
+    /** Transitions of every device should follow its updates order. */
+    @Test
+    public void track_concurrent() {
+        storage.add(kbp);
+        target = new GeofenceTracker(storage, 4, Schedulers.computation());
+        target.start();
+        target.getTransitions().subscribe(observer);
+        final int devices = 100;
+        final int moves = 50;
+        for (int move = 0; move < moves; ++move) {
+            for (int device = 0; device < devices; ++device) {
+                target.track("device-" + device, move % 2 == 0 ? KBP_AIRPORT : LVIV, null);
+            }
+        }
+        observer.awaitCount(devices * moves);
+        observer.assertValueCount(devices * moves);
+        final Map<String, List<GeofenceTransition.Type>> types = new HashMap<>();
+        for (DeviceTransition transition : observer.values()) {
+            List<GeofenceTransition.Type> list = types.get(transition.getDeviceId());
+            if (list == null) {
+                list = new ArrayList<>();
+                types.put(transition.getDeviceId(), list);
+            }
+            list.add(transition.getType());
+        }
+        assertEquals(devices, types.size());
+        for (List<GeofenceTransition.Type> list : types.values()) {
+            for (int i = 0; i < list.size(); ++i) {
+                assertEquals(i % 2 == 0
+                        ? GeofenceTransition.Type.ENTER : GeofenceTransition.Type.EXIT, list.get(i));
+            }
+        }
+    }
+
+    private static void assertTransition(String deviceId, GeofenceTransition.Type type,
+                                         Geofence geofence, DeviceTransition transition) {
+        assertEquals(deviceId, transition.getDeviceId());
+        assertEquals(type, transition.getType());
+        assertSame(geofence, transition.getGeofence());
+    }
+
+}
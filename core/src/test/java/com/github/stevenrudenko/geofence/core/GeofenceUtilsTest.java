@@ -106,4 +106,13 @@ public class GeofenceUtilsTest {
         }
     }
 
-}
\ No newline at end of file
+    /** Tests SSID patterns validation. */
+    @Test
+    public void isSsidValid() {
+        assertTrue(GeofenceUtils.isSsidValid("Office"));
+        assertTrue(GeofenceUtils.isSsidValid("Hotel.*"));
+        assertTrue(GeofenceUtils.isSsidValid("Home_\\d+"));
+        assertFalse(GeofenceUtils.isSsidValid("Hotel["));
+    }
+
+}
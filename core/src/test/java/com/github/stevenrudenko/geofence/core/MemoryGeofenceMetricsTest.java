@@ -0,0 +1,52 @@
+package com.github.stevenrudenko.geofence.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/** Tests for {@link MemoryGeofenceMetrics}. */
+public class MemoryGeofenceMetricsTest {
+    private final MemoryGeofenceMetrics target = new MemoryGeofenceMetrics();
+
+    @Test
+    public void histogram() {
+        final MemoryGeofenceMetrics.Histogram histogram = new MemoryGeofenceMetrics.Histogram();
+        assertEquals(0, histogram.getPercentile(50));
+        for (int i = 1; i <= 100; ++i) {
+            histogram.record(i);
+        }
+        assertEquals(100, histogram.getCount());
+        assertEquals(100, histogram.getMax());
+        assertEquals(50.5, histogram.getMean(), 0);
+        // values are reported with bucket upper bound
+        assertEquals(63, histogram.getPercentile(50));
+        assertEquals(100, histogram.getPercentile(99));
+        assertEquals(1, histogram.getPercentile(0));
+        histogram.record(0);
+        assertEquals(0, histogram.getPercentile(0));
+    }
+
+    @Test
+    public void counters() {
+        target.onEvent(10);
+        target.onEvent(-1);
+        target.onEvaluation(1000, 5, 1, 2);
+        target.onSkipped();
+        target.onCheck(2000);
+        assertEquals(2, target.getEvents());
+        assertEquals(1, target.getQueueLag().getCount());
+        assertEquals(1, target.getEvaluations());
+        assertEquals(1, target.getSkipped());
+        assertEquals(5, target.getEvaluated());
+        assertEquals(1, target.getSsidMatches());
+        assertEquals(2, target.getDistanceMatches());
+        assertEquals(1, target.getCheckLatency().getCount());
+        assertTrue(target.dump().contains("events=2"));
+
+        target.reset();
+        assertEquals(0, target.getEvents());
+        assertEquals(0, target.getCheckLatency().getCount());
+    }
+
+}
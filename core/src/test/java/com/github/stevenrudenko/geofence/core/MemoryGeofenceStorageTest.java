@@ -2,13 +2,19 @@ package com.github.stevenrudenko.geofence.core;
 
 import org.junit.Test;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import io.reactivex.observers.TestObserver;
 
 import static com.github.stevenrudenko.geofence.core.GeofenceTestConstants.GEOFENCE_RADIUS;
 import static com.github.stevenrudenko.geofence.core.GeofenceTestConstants.KYIV;
+import static com.github.stevenrudenko.geofence.core.GeofenceTestConstants.LVIV;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 /** Test for {@link GeofenceStorage}. */
 public class MemoryGeofenceStorageTest {
@@ -57,6 +63,35 @@ public class MemoryGeofenceStorageTest {
         assertEquals(observer.values().get(1).size(), 0);
     }
 
+    @Test
+    public void getGeofenceChanges() throws Exception {
+        Geofence kyiv = new Geofence(KYIV, GEOFENCE_RADIUS, "Kyiv");
+        target.add(kyiv);
+
+        final TestObserver<GeofenceChange> observer = new TestObserver<>();
+        target.getGeofenceChanges().subscribe(observer);
+        observer.assertNoErrors();
+        observer.assertValueCount(1);
+        final GeofenceChange reset = observer.values().get(0);
+        assertTrue(reset.isReset());
+        assertEquals(1, reset.getAdded().size());
+
+        Geofence lviv = new Geofence(LVIV, GEOFENCE_RADIUS, "Lviv");
+        target.add(lviv);
+        Geofence kyivUpdate = new Geofence(kyiv.getUuid(), KYIV, GEOFENCE_RADIUS * 2, "Kyiv");
+        target.add(kyivUpdate);
+        target.remove(lviv);
+
+        observer.assertNoErrors();
+        observer.assertValueCount(4);
+        final GeofenceChange added = observer.values().get(1);
+        assertFalse(added.isReset());
+        assertSame(lviv, added.getAdded().get(0));
+        assertSame(kyivUpdate, observer.values().get(2).getUpdated().get(0));
+        assertSame(lviv, observer.values().get(3).getRemoved().get(0));
+        assertEquals(1, target.getGeofences().size());
+    }
+
     @Test
     public void add() throws Exception {
         assertEquals(target.getGeofences().size(), 0);
@@ -74,4 +109,53 @@ public class MemoryGeofenceStorageTest {
         assertEquals(target.getGeofences().size(), 0);
     }
 
-}
\ No newline at end of file
+    @Test
+    public void addAll_removeAll() throws Exception {
+        Geofence kyiv = new Geofence(KYIV, GEOFENCE_RADIUS, "Kyiv");
+        Geofence lviv = new Geofence(LVIV, GEOFENCE_RADIUS, "Lviv");
+        final TestObserver<GeofenceChange> observer = new TestObserver<>();
+        target.getGeofenceChanges().subscribe(observer);
+
+        target.addAll(Arrays.asList(kyiv, lviv));
+        assertEquals(2, target.getGeofences().size());
+        observer.assertValueCount(2);
+        assertEquals(2, observer.values().get(1).getAdded().size());
+
+        target.removeAll(Arrays.asList(kyiv, lviv));
+        assertEquals(0, target.getGeofences().size());
+        observer.assertValueCount(3);
+        assertEquals(2, observer.values().get(2).getRemoved().size());
+    }
+
+    @Test
+    public void replaceAll() throws Exception {
+        Geofence kyiv = new Geofence(KYIV, GEOFENCE_RADIUS, "Kyiv");
+        Geofence lviv = new Geofence(LVIV, GEOFENCE_RADIUS, "Lviv");
+        target.add(kyiv);
+        final TestObserver<GeofenceChange> observer = new TestObserver<>();
+        target.getGeofenceChanges().subscribe(observer);
+
+        target.replaceAll(Collections.singletonList(lviv));
+        assertEquals(1, target.getGeofences().size());
+        assertSame(lviv, target.getGeofences().get(0));
+        observer.assertValueCount(2);
+        assertTrue(observer.values().get(1).isReset());
+        assertEquals(Collections.singletonList(lviv), observer.values().get(1).getAdded());
+    }
+
+    @Test
+    public void getGeofences_box() throws Exception {
+        Geofence kyiv = new Geofence(KYIV, GEOFENCE_RADIUS, "Kyiv");
+        Geofence lviv = new Geofence(LVIV, GEOFENCE_RADIUS, "Lviv");
+        target.addAll(Arrays.asList(kyiv, lviv));
+
+        final BoundingBox aroundKyiv = BoundingBox.around(KYIV.getLat(), KYIV.getLng(), 1000);
+        assertEquals(Collections.singletonList(kyiv), target.getGeofences(aroundKyiv));
+        // box touches geofence area, but not its center
+        final BoundingBox nearLviv = BoundingBox.around(LVIV.getLat() + 0.095, LVIV.getLng(), 1000);
+        assertEquals(Collections.singletonList(lviv), target.getGeofences(nearLviv));
+        final BoundingBox ukraine = new BoundingBox(44, 53, 22, 41);
+        assertEquals(2, target.getGeofences(ukraine).size());
+    }
+
+}
@@ -0,0 +1,83 @@
+package com.github.stevenrudenko.geofence.core;
+
+import org.junit.Test;
+
+import static com.github.stevenrudenko.geofence.core.GeofenceTestConstants.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/** Tests for {@link MotionScheduler}. */
+public class MotionSchedulerTest {
+    private final MotionScheduler target = new MotionScheduler();
+
+    @Test
+    public void onLocation_skipWithinMargin() {
+        assertTrue(target.onLocation(KYIV.getLat(), KYIV.getLng(), 0));
+        target.onEvaluated(KYIV.getLat(), KYIV.getLng(), 1000);
+        // ~110 m to the north
+        assertFalse(target.onLocation(KYIV.getLat() + 0.001, KYIV.getLng(), 1000));
+        // ~1.1 km to the north
+        assertTrue(target.onLocation(KYIV.getLat() + 0.01, KYIV.getLng(), 2000));
+    }
+
+    @Test
+    public void invalidate() {
+        target.onLocation(KYIV.getLat(), KYIV.getLng(), 0);
+        target.onEvaluated(KYIV.getLat(), KYIV.getLng(), 1000);
+        assertFalse(target.onLocation(KYIV.getLat(), KYIV.getLng(), 1000));
+        target.invalidate();
+        assertTrue(target.onLocation(KYIV.getLat(), KYIV.getLng(), 2000));
+    }
+
+    @Test
+    public void onLocation_boundary() {
+        target.onLocation(KYIV.getLat(), KYIV.getLng(), 0);
+        target.onEvaluated(KYIV.getLat(), KYIV.getLng(), 0);
+        assertTrue(target.onLocation(KYIV.getLat(), KYIV.getLng(), 1000));
+    }
+
+    @Test
+    public void getUpdateInterval() {
+        assertEquals(MotionScheduler.MIN_INTERVAL, target.getUpdateInterval());
+        // still device far from any boundary
+        target.onLocation(KYIV.getLat(), KYIV.getLng(), 0);
+        target.onEvaluated(KYIV.getLat(), KYIV.getLng(), MotionScheduler.SEARCH_DISTANCE);
+        target.onLocation(KYIV.getLat(), KYIV.getLng(), 10000);
+        final long still = target.getUpdateInterval();
+        assertTrue(still > MotionScheduler.MIN_INTERVAL);
+        assertTrue(still <= MotionScheduler.MAX_INTERVAL);
+        // ~110 m per second
+        target.onLocation(KYIV.getLat() + 0.001, KYIV.getLng(), 11000);
+        target.onLocation(KYIV.getLat() + 0.002, KYIV.getLng(), 12000);
+        assertTrue(target.getUpdateInterval() < still);
+    }
+
+    @Test
+    public void getPolicy() {
+        assertEquals(LocationProvider.Policy.DEFAULT, target.getPolicy());
+        target.onLocation(KYIV.getLat(), KYIV.getLng(), 0);
+        target.onEvaluated(KYIV.getLat(), KYIV.getLng(), MotionScheduler.SEARCH_DISTANCE);
+        assertEquals(LocationProvider.Policy.Priority.LOW_POWER, target.getPolicy().getPriority());
+        target.onEvaluated(KYIV.getLat(), KYIV.getLng(), 1000);
+        assertEquals(LocationProvider.Policy.Priority.BALANCED, target.getPolicy().getPriority());
+        assertEquals(0, target.getPolicy().getMaxWaitTime());
+        target.onEvaluated(KYIV.getLat(), KYIV.getLng(), 100);
+        assertEquals(LocationProvider.Policy.Priority.HIGH_ACCURACY,
+                target.getPolicy().getPriority());
+        assertEquals(target.getUpdateInterval(), target.getPolicy().getInterval());
+    }
+
+    @Test
+    public void getPolicy_recognized() {
+        target.onLocation(KYIV.getLat(), KYIV.getLng(), 0);
+        // boundary is close, but WiFi decides
+        target.onEvaluated(KYIV.getLat(), KYIV.getLng(), 100, true);
+        assertEquals(LocationProvider.Policy.Priority.LOW_POWER, target.getPolicy().getPriority());
+        assertEquals(MotionScheduler.MAX_INTERVAL, target.getPolicy().getInterval());
+        target.onEvaluated(KYIV.getLat(), KYIV.getLng(), 100, false);
+        assertEquals(LocationProvider.Policy.Priority.HIGH_ACCURACY,
+                target.getPolicy().getPriority());
+    }
+
+}
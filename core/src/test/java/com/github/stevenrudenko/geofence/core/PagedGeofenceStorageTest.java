@@ -0,0 +1,172 @@
+package com.github.stevenrudenko.geofence.core;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.reactivex.observers.TestObserver;
+import io.reactivex.schedulers.Schedulers;
+import io.reactivex.schedulers.TestScheduler;
+import io.reactivex.subjects.PublishSubject;
+
+import static com.github.stevenrudenko.geofence.core.GeofenceTestConstants.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/** Tests for {@link PagedGeofenceStorage}. */
+public class PagedGeofenceStorageTest {
+    private final Geofence kyiv = new Geofence(KYIV, GEOFENCE_RADIUS, "Kyiv");
+    private final Geofence lviv = new Geofence(LVIV, GEOFENCE_RADIUS, "Lviv");
+    private final Geofence kharkiv = new Geofence(KHARKIV, GEOFENCE_RADIUS, "Kharkiv");
+
+    private final AtomicInteger tileQueries = new AtomicInteger();
+    private final MemoryGeofenceStorage backing = new MemoryGeofenceStorage() {
+        @Override
+        public List<Geofence> getGeofences(BoundingBox box) {
+            tileQueries.incrementAndGet();
+            return super.getGeofences(box);
+        }
+    };
+    private final PublishSubject<LocationProvider.Location> locations = PublishSubject.create();
+    private final PagedGeofenceStorage target = new PagedGeofenceStorage(
+            backing, locations, 20000, 0.1, 50, Schedulers.trampoline());
+
+    public PagedGeofenceStorageTest() {
+        backing.addAll(Arrays.asList(kyiv, lviv, kharkiv));
+    }
+
+    @Test
+    public void getGeofenceChanges_page() {
+        final TestObserver<GeofenceChange> observer = new TestObserver<>();
+        target.getGeofenceChanges().subscribe(observer);
+        // nothing is known till location is paged
+        observer.assertValueCount(0);
+
+        locations.onNext(KYIV);
+        observer.assertValueCount(1);
+        assertTrue(observer.values().get(0).isReset());
+        assertEquals(Collections.singletonList(kyiv), observer.values().get(0).getAdded());
+        assertEquals(Collections.singletonList(kyiv), target.getGeofences());
+
+        // close location doesn't load anything new
+        locations.onNext(KYIV_AIRPORT);
+        observer.assertValueCount(1);
+
+        // tiles around Kyiv are evicted to fit Lviv ones
+        locations.onNext(LVIV);
+        observer.assertValueCount(2);
+        final GeofenceChange moved = observer.values().get(1);
+        assertEquals(Collections.singletonList(lviv), moved.getAdded());
+        assertEquals(Collections.singletonList(kyiv), moved.getRemoved());
+        assertEquals(Collections.singletonList(lviv), target.getGeofences());
+        observer.assertNoErrors();
+    }
+
+    /** Limit is raised to tiles around location, so they aren't reloaded on every location. */
+    /** Empty reset is emitted once empty area is paged, backing changes are waited for. */
+    @Test
+    public void getGeofenceChanges_notLoaded() {
+        final TestObserver<GeofenceChange> observer = new TestObserver<>();
+        target.getGeofenceChanges().subscribe(observer);
+        backing.replaceAll(Collections.singletonList(lviv));
+        observer.assertValueCount(0);
+
+        locations.onNext(ODESSA);
+        observer.assertValueCount(1);
+        assertTrue(observer.values().get(0).isReset());
+        assertEquals(0, observer.values().get(0).getAdded().size());
+
+        // late subscriber gets resident geofences at once
+        final TestObserver<GeofenceChange> late = new TestObserver<>();
+        target.getGeofenceChanges().subscribe(late);
+        late.assertValueCount(1);
+        assertTrue(late.values().get(0).isReset());
+        observer.assertNoErrors();
+    }
+
+    @Test
+    public void getGeofenceChanges_highLatitude() {
+        final LocationProvider.Location helsinki = new LocationProvider.Location(60.17, 24.94);
+        final PagedGeofenceStorage target = new PagedGeofenceStorage(backing, locations,
+                PagedGeofenceStorage.DEFAULT_RADIUS, PagedGeofenceStorage.DEFAULT_TILE_SIZE,
+                PagedGeofenceStorage.DEFAULT_MAX_TILES, Schedulers.trampoline());
+        target.getGeofenceChanges().subscribe();
+        locations.onNext(helsinki);
+        final int loaded = tileQueries.get();
+        assertTrue(loaded > PagedGeofenceStorage.DEFAULT_MAX_TILES);
+        assertEquals(loaded, target.getTileCount());
+
+        locations.onNext(helsinki);
+        assertEquals(loaded, tileQueries.get());
+    }
+
+    @Test
+    public void getGeofenceChanges_pageOn() {
+        final TestScheduler scheduler = new TestScheduler();
+        final PagedGeofenceStorage target = new PagedGeofenceStorage(
+                backing, locations, 20000, 0.1, 50, scheduler);
+        final TestObserver<GeofenceChange> observer = new TestObserver<>();
+        target.getGeofenceChanges().subscribe(observer);
+        locations.onNext(KYIV);
+        // tiles aren't loaded on thread location came on
+        assertEquals(0, tileQueries.get());
+        observer.assertValueCount(0);
+
+        scheduler.triggerActions();
+        assertTrue(tileQueries.get() > 0);
+        observer.assertValueCount(1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void create_illegalMaxTiles() {
+        new PagedGeofenceStorage(backing, locations, 20000, 0.1, 0);
+    }
+
+    @Test
+    public void getGeofenceChanges_backing() {
+        final TestObserver<GeofenceChange> observer = new TestObserver<>();
+        target.getGeofenceChanges().subscribe(observer);
+        locations.onNext(KYIV);
+        observer.assertValueCount(1);
+
+        final Geofence airport = new Geofence(KYIV_AIRPORT, GEOFENCE_RADIUS, "KBP");
+        final Geofence odessa = new Geofence(ODESSA, GEOFENCE_RADIUS, "Odessa");
+        backing.addAll(Arrays.asList(airport, odessa));
+        observer.assertValueCount(2);
+        assertEquals(Collections.singletonList(airport), observer.values().get(1).getAdded());
+
+        // moved out of resident area
+        backing.add(new Geofence(airport.getUuid(), ODESSA, GEOFENCE_RADIUS, "KBP"));
+        observer.assertValueCount(3);
+        assertEquals(Collections.singletonList(airport), observer.values().get(2).getRemoved());
+
+        backing.remove(odessa);
+        observer.assertValueCount(3);
+        backing.remove(kyiv);
+        observer.assertValueCount(4);
+        assertEquals(Collections.singletonList(kyiv), observer.values().get(3).getRemoved());
+        assertEquals(0, target.getGeofences().size());
+        observer.assertNoErrors();
+    }
+
+    @Test
+    public void getGeofenceChanges_shared() {
+        final TestObserver<GeofenceChange> first = new TestObserver<>();
+        final TestObserver<GeofenceChange> second = new TestObserver<>();
+        target.getGeofenceChanges().subscribe(first);
+        target.getGeofenceChanges().subscribe(second);
+        locations.onNext(KYIV);
+        first.assertValueCount(1);
+        second.assertValueCount(1);
+        assertEquals(1, target.getGeofences().size());
+
+        first.dispose();
+        second.dispose();
+        assertFalse(locations.hasObservers());
+    }
+
+}
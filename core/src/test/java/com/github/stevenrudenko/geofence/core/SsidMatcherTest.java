@@ -0,0 +1,125 @@
+package com.github.stevenrudenko.geofence.core;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.github.stevenrudenko.geofence.core.GeofenceTestConstants.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/** Tests for {@link SsidMatcher}. */
+public class SsidMatcherTest {
+    private final Geofence office = new Geofence(KYIV, GEOFENCE_RADIUS, "Office");
+    private final Geofence officeCopy = new Geofence(LVIV, GEOFENCE_RADIUS, "Office");
+    private final Geofence hotelPrefix = new Geofence(KYIV, GEOFENCE_RADIUS, "Hotel.*");
+    private final Geofence hotelRegex = new Geofence(KYIV, GEOFENCE_RADIUS, "Hotel[-_\\d]*");
+    private final Geofence repeated = new Geofence(KYIV, GEOFENCE_RADIUS, "(ab)\\1");
+    private final Geofence empty = new Geofence(KYIV, GEOFENCE_RADIUS, "");
+
+    private final List<Geofence> all = Arrays.asList(
+            office, officeCopy, hotelPrefix, hotelRegex, repeated, empty);
+
+    private SsidMatcher<Geofence> target = new SsidMatcher<>();
+
+    @Before
+    public void setUp() {
+        for (Geofence geofence : all) {
+            target.add(geofence.getSsid(), geofence);
+        }
+        target.commit();
+    }
+
+    @Test
+    public void classify() {
+        assertTrue(SsidMatcher.isLiteral("Office"));
+        assertTrue(SsidMatcher.isLiteral("Hotel-05"));
+        assertTrue(SsidMatcher.isLiteral(""));
+        assertFalse(SsidMatcher.isLiteral("Hotel.*"));
+        assertTrue(SsidMatcher.isPrefix("Hotel.*"));
+        assertTrue(SsidMatcher.isPrefix(".*"));
+        assertFalse(SsidMatcher.isPrefix("Hotel[-_\\d]*"));
+        assertFalse(SsidMatcher.isPrefix("Ho.el.*"));
+    }
+
+    @Test
+    public void match_literal() {
+        final List<Geofence> result = match("Office");
+        assertEquals(2, result.size());
+        assertTrue(result.contains(office));
+        assertTrue(result.contains(officeCopy));
+    }
+
+    @Test
+    public void match_prefixAndRegex() {
+        final List<Geofence> result = match("Hotel_200");
+        assertEquals(2, result.size());
+        assertTrue(result.contains(hotelPrefix));
+        assertTrue(result.contains(hotelRegex));
+
+        assertEquals(Arrays.asList(hotelPrefix), match("Hotel Lobby"));
+    }
+
+    @Test
+    public void match_backReference() {
+        assertEquals(Arrays.asList(repeated), match("abab"));
+        assertEquals(0, match("abba").size());
+    }
+
+    /** Matcher should give the same result as patterns. */
+    @Test
+    public void match_sameAsPattern() {
+        for (String ssid : Arrays.asList("", "Office", "office", "Hotel", "Hotel\nLobby",
+                "Hotel-05", "Hotel_200-230", "abab", "Unknown")) {
+            final List<Geofence> expected = new ArrayList<>();
+            for (Geofence geofence : all) {
+                if (GeofenceUtils.isSsidMatches(geofence, ssid)) {
+                    expected.add(geofence);
+                }
+            }
+            final List<Geofence> actual = match(ssid);
+            assertEquals(ssid, expected.size(), actual.size());
+            assertTrue(ssid, actual.containsAll(expected));
+        }
+    }
+
+    /** Patterns which can't be joined shouldn't break other ones. */
+    @Test
+    public void match_notJoinable() {
+        final SsidMatcher<String> matcher = new SsidMatcher<>();
+        matcher.add("(?<id>Hotel)-\\d+", "hotel");
+        matcher.add("(?<id>Cafe)-\\d+", "cafe");
+        matcher.add("Shop[", "invalid");
+        matcher.add("Shop[0-9]", "shop");
+        matcher.commit();
+        assertFalse(SsidMatcher.isJoinable("(?<id>Hotel)"));
+        assertTrue(SsidMatcher.isJoinable("(?<=Hotel)-\\d+"));
+
+        final List<String> result = new ArrayList<>();
+        matcher.match("Hotel-12", result);
+        matcher.match("Cafe-3", result);
+        matcher.match("Shop1", result);
+        matcher.match("Shop[", result);
+        assertEquals(Arrays.asList("hotel", "cafe", "shop"), result);
+    }
+
+    @Test
+    public void remove() {
+        target.remove(office.getSsid(), office);
+        target.remove(hotelPrefix.getSsid(), hotelPrefix);
+        target.remove(hotelRegex.getSsid(), hotelRegex);
+        target.commit();
+        assertEquals(Arrays.asList(officeCopy), match("Office"));
+        assertEquals(0, match("Hotel_200").size());
+    }
+
+    private List<Geofence> match(String ssid) {
+        final List<Geofence> result = new ArrayList<>();
+        target.match(ssid, result);
+        return result;
+    }
+}
@@ -0,0 +1,91 @@
+package com.github.stevenrudenko.geofence.core;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import static com.github.stevenrudenko.geofence.core.GeofenceTestConstants.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/** Tests for {@link SsidPatternCache}. */
+public class SsidPatternCacheTest {
+
+    @Test
+    public void compile() {
+        final SsidPatternCache target = new SsidPatternCache(10);
+        final Pattern office = target.compile("Office");
+        assertSame(office, target.compile(new String("Office")));
+        assertSame(office, target.compile("Office"));
+        target.compile("Hotel.*");
+
+        assertEquals(2, target.size());
+        assertEquals(2, target.getCompileCount());
+        assertEquals(2, target.getHitCount());
+        assertEquals(0.5, target.getHitRate(), 0);
+    }
+
+    @Test
+    public void compile_evicted() {
+        final SsidPatternCache target = new SsidPatternCache(2);
+        final Pattern office = target.compile("Office");
+        target.compile("Home");
+        // recently used pattern is kept
+        target.compile("Office");
+        target.compile("Hotel.*");
+
+        assertEquals(2, target.size());
+        assertSame(office, target.compile("Office"));
+        assertEquals(3, target.getCompileCount());
+        // evicted pattern is compiled again
+        target.compile("Home");
+        assertEquals(4, target.getCompileCount());
+    }
+
+    @Test
+    public void getHitRate_empty() {
+        assertEquals(0, new SsidPatternCache(1).getHitRate(), 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void create_illegal() {
+        new SsidPatternCache(0);
+    }
+
+    @Test
+    public void geofence_lazy() {
+        final SsidPatternCache cache = SsidPatternCache.getDefault();
+        final String ssid = "Lazy_" + System.nanoTime();
+        final long compiled = cache.getCompileCount();
+        final Geofence first = new Geofence(KYIV, GEOFENCE_RADIUS, ssid);
+        final Geofence second = new Geofence(LVIV, GEOFENCE_RADIUS, ssid);
+        assertEquals(compiled, cache.getCompileCount());
+
+        assertSame(first.getSsidPattern(), second.getSsidPattern());
+        assertEquals(ssid, first.getSsidPattern().pattern());
+        assertEquals(compiled + 1, cache.getCompileCount());
+    }
+
+    @Test(expected = PatternSyntaxException.class)
+    public void geofence_invalid() {
+        new Geofence(KYIV, GEOFENCE_RADIUS, "Hotel[");
+    }
+
+    @Test
+    public void evaluator_lazy() {
+        final SsidPatternCache cache = SsidPatternCache.getDefault();
+        final String ssid = "Lazy_" + System.nanoTime() + "_\\d+";
+        final List<Geofence> geofences = Arrays.asList(
+                new Geofence(KYIV, GEOFENCE_RADIUS, ssid),
+                new Geofence(LVIV, GEOFENCE_RADIUS, "Hotel.*"));
+        final long compiled = cache.getCompileCount();
+        final GeofenceEvaluator evaluator = new GeofenceEvaluator(geofences);
+        assertEquals(compiled, cache.getCompileCount());
+
+        evaluator.evaluate(KYIV.getLat(), KYIV.getLng(), "Hotel_1");
+        assertEquals(compiled, cache.getCompileCount());
+    }
+}
@@ -0,0 +1,85 @@
+package com.github.stevenrudenko.geofence.core;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.util.Arrays;
+import java.util.List;
+
+import io.reactivex.observers.TestObserver;
+import io.reactivex.schedulers.Schedulers;
+
+import static com.github.stevenrudenko.geofence.core.GeofenceTestConstants.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/** Tests for {@link TraceReplay}. */
+public class TraceReplayTest {
+    private static final long START = 1500000000000L;
+
+    private final List<GeofenceTrace.Record> records = Arrays.asList(
+            record(LVIV, 0, null),
+            record(KBP_AIRPORT, 1000, null),
+            record(KBP_AIRPORT, 2000, "Kyiv"),
+            record(LVIV, 3000, null));
+
+    @Test
+    public void run() throws IOException {
+        final MemoryGeofenceStorage storage = new MemoryGeofenceStorage();
+        storage.add(new Geofence(KBP_AIRPORT, GEOFENCE_RADIUS, "KBP"));
+        storage.add(new Geofence(KYIV, GEOFENCE_RADIUS, "Kyiv"));
+
+        final TraceReplay.Report report = replay(0).run(storage);
+        assertEquals(4, report.getRecords());
+        assertEquals(2, report.getTransitions(GeofenceTransition.Type.ENTER));
+        assertEquals(2, report.getTransitions(GeofenceTransition.Type.EXIT));
+        assertEquals(0, report.getTransitions(GeofenceTransition.Type.DWELL));
+        // every record is checked, WiFi changes are checked with previous location as well
+        assertEquals(6, report.getMetrics().getCheckLatency().getCount());
+        assertTrue(report.getEventsPerSecond() > 0);
+        assertTrue(report.toString().contains("records=4"));
+    }
+
+    @Test
+    public void replay_speed() throws IOException {
+        final TraceReplay target = replay(10);
+        final TestObserver<LocationProvider.Location> locations = new TestObserver<>();
+        final TestObserver<WifiInfoProvider.WifiInfo> wifiInfos = new TestObserver<>();
+        target.getLocationProvider().getLocationUpdates().subscribe(locations);
+        target.getWifiInfoProvider().getWiFiInfoUpdates().subscribe(wifiInfos);
+
+        final long start = System.nanoTime();
+        assertEquals(4, target.replay());
+        // recorded 3 seconds are replayed 10 times faster
+        assertTrue(System.nanoTime() - start >= 300000000L);
+        locations.assertValueCount(4);
+        assertEquals(START + 3000, locations.values().get(3).getTime());
+        // unchanged WiFi state is not repeated
+        wifiInfos.assertValueCount(3);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void illegalSpeed() {
+        replay(-1);
+    }
+
+    private TraceReplay replay(double speed) {
+        return new TraceReplay(() -> {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            GeofenceTrace.write(out, records);
+            return Channels.newChannel(new ByteArrayInputStream(out.toByteArray()));
+        }, speed, Schedulers.computation());
+    }
+
+    private static GeofenceTrace.Record record(LocationProvider.Location location, long time,
+                                               String ssid) {
+        return new GeofenceTrace.Record(
+                new LocationProvider.Location(location.getLat(), location.getLng(), 10,
+                        START + time),
+                new WifiInfoProvider.WifiInfo(ssid != null, ssid));
+    }
+
+}
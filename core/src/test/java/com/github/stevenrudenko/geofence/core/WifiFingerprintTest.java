@@ -0,0 +1,99 @@
+package com.github.stevenrudenko.geofence.core;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/** Tests for {@link WifiFingerprint}. */
+public class WifiFingerprintTest {
+    private static final String OFFICE_1 = "00:11:22:aa:bb:01";
+    private static final String OFFICE_2 = "00:11:22:aa:bb:02";
+    private static final String OFFICE_3 = "00:11:22:aa:bb:03";
+    private static final String STREET = "66:77:88:99:aa:bb";
+
+    private final WifiFingerprint target = new WifiFingerprint(Arrays.asList(
+            accessPoint(OFFICE_1, -60), accessPoint(OFFICE_2, -70), accessPoint(OFFICE_3, -80)),
+            2);
+
+    @Test
+    public void parseBssid() {
+        assertEquals(0x001122aabb01L, WifiFingerprint.parseBssid(OFFICE_1));
+        assertEquals(0x001122aabb01L, WifiFingerprint.parseBssid("00-11-22-AA-BB-01"));
+        assertEquals(-1, WifiFingerprint.parseBssid(null));
+        assertEquals(-1, WifiFingerprint.parseBssid("<unknown ssid>"));
+        assertEquals(-1, WifiFingerprint.parseBssid("00:11:22:aa:bb:0g"));
+        assertEquals(OFFICE_1, WifiFingerprint.formatBssid(WifiFingerprint.parseBssid(OFFICE_1)));
+    }
+
+    @Test
+    public void matches() {
+        assertTrue(target.matches(Arrays.asList(
+                accessPoint(STREET, -40), accessPoint(OFFICE_1, -50), accessPoint(OFFICE_3, -80))));
+        // the second access point is too weak
+        assertFalse(target.matches(Arrays.asList(
+                accessPoint(OFFICE_1, -50), accessPoint(OFFICE_2, -90))));
+        assertFalse(target.matches(Collections.singletonList(accessPoint(OFFICE_1, -50))));
+        assertFalse(target.matches(Collections.<WifiInfoProvider.AccessPoint>emptyList()));
+    }
+
+    @Test
+    public void create_duplicates() {
+        final WifiFingerprint fingerprint = new WifiFingerprint(Arrays.asList(
+                accessPoint(OFFICE_2, -60), accessPoint(OFFICE_1, -70), accessPoint(OFFICE_2, -75)),
+                2);
+        assertEquals(2, fingerprint.size());
+        assertEquals(Arrays.asList(accessPoint(OFFICE_1, -70), accessPoint(OFFICE_2, -75)),
+                fingerprint.getAccessPoints());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void create_illegalBssid() {
+        new WifiFingerprint(Collections.singletonList(accessPoint("office", -60)), 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void create_illegalMatches() {
+        new WifiFingerprint(Collections.singletonList(accessPoint(OFFICE_1, -60)), 2);
+    }
+
+    @Test
+    public void capture() {
+        final WifiFingerprint fingerprint = WifiFingerprint.capture(Arrays.asList(
+                accessPoint(OFFICE_1, -50), accessPoint("office", -30), accessPoint(STREET, -90),
+                accessPoint(OFFICE_2, -60), accessPoint(OFFICE_1, -55), accessPoint(OFFICE_3, -70)),
+                3);
+        final List<WifiInfoProvider.AccessPoint> expected = Arrays.asList(
+                accessPoint(OFFICE_1, -50 - WifiFingerprint.RSSI_TOLERANCE),
+                accessPoint(OFFICE_2, -60 - WifiFingerprint.RSSI_TOLERANCE),
+                accessPoint(OFFICE_3, -70 - WifiFingerprint.RSSI_TOLERANCE));
+        assertEquals(expected, fingerprint.getAccessPoints());
+        assertEquals(2, fingerprint.getMinMatches());
+        assertNull(WifiFingerprint.capture(
+                Collections.<WifiInfoProvider.AccessPoint>emptyList(), 3));
+    }
+
+    @Test
+    public void write_read() throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        target.write(new DataOutputStream(out));
+        final WifiFingerprint actual = WifiFingerprint.read(
+                new DataInputStream(new ByteArrayInputStream(out.toByteArray())));
+        assertEquals(target.getAccessPoints(), actual.getAccessPoints());
+        assertEquals(target.getMinMatches(), actual.getMinMatches());
+    }
+
+    static WifiInfoProvider.AccessPoint accessPoint(String bssid, int rssi) {
+        return new WifiInfoProvider.AccessPoint(bssid, rssi);
+    }
+}
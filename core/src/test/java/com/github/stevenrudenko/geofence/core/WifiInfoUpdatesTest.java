@@ -0,0 +1,131 @@
+package com.github.stevenrudenko.geofence.core;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import io.reactivex.Observable;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.schedulers.TestScheduler;
+import io.reactivex.subjects.PublishSubject;
+
+import static com.github.stevenrudenko.geofence.core.GeofenceTestConstants.*;
+import static com.github.stevenrudenko.geofence.core.WifiFingerprintTest.accessPoint;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/** Tests for {@link WifiInfoUpdates}. */
+public class WifiInfoUpdatesTest {
+    private static final String OFFICE_1 = "00:11:22:aa:bb:01";
+    private static final String OFFICE_2 = "00:11:22:aa:bb:02";
+
+    private final TestScheduler scheduler = new TestScheduler();
+    private final PublishSubject<Object> events = PublishSubject.create();
+    private final AtomicInteger reads = new AtomicInteger();
+    private final AtomicReference<WifiInfoProvider.WifiInfo> state = new AtomicReference<>(
+            new WifiInfoProvider.WifiInfo(false));
+
+    @Test
+    public void read_burst() {
+        final TestObserver<WifiInfoProvider.WifiInfo> observer = read().test();
+        for (int i = 0; i < 10; ++i) {
+            events.onNext(i);
+            scheduler.advanceTimeBy(100, TimeUnit.MILLISECONDS);
+        }
+        observer.assertNoValues();
+        assertEquals(0, reads.get());
+
+        scheduler.advanceTimeBy(WifiInfoUpdates.DEFAULT_WINDOW, TimeUnit.MILLISECONDS);
+        observer.assertValues(state.get());
+        assertEquals(1, reads.get());
+    }
+
+    @Test
+    public void read_duplicates() {
+        final TestObserver<WifiInfoProvider.WifiInfo> observer = read().test();
+        state.set(new WifiInfoProvider.WifiInfo(true, "Office", OFFICE_1,
+                Arrays.asList(accessPoint(OFFICE_1, -50), accessPoint(OFFICE_2, -70))));
+        fire();
+        // read again without new scan
+        state.set(new WifiInfoProvider.WifiInfo(true, "Office", OFFICE_1,
+                Arrays.asList(accessPoint(OFFICE_2, -70), accessPoint(OFFICE_1, -50))));
+        fire();
+        // roamed to another access point of the same network
+        final WifiInfoProvider.WifiInfo roamed = new WifiInfoProvider.WifiInfo(true, "Office",
+                OFFICE_2, Arrays.asList(accessPoint(OFFICE_1, -70), accessPoint(OFFICE_2, -50)));
+        state.set(roamed);
+        fire();
+
+        observer.assertValueCount(2);
+        assertEquals(roamed, observer.values().get(1));
+        assertEquals(3, reads.get());
+    }
+
+    /** Signal level changes which leave tolerance bucket should reach fingerprint matching. */
+    @Test
+    public void read_fingerprint() {
+        final List<WifiInfoProvider.AccessPoint> site =
+                Arrays.asList(accessPoint(OFFICE_1, -50), accessPoint(OFFICE_2, -60));
+        final GeofenceEvaluator evaluator = new GeofenceEvaluator(Collections.singletonList(
+                new Geofence("office", KYIV, GEOFENCE_RADIUS, "Office",
+                        WifiFingerprint.capture(site, 2))));
+        final List<Integer> inbounds = new ArrayList<>();
+        read().subscribe(wifiInfo -> inbounds.add(evaluator.evaluate(
+                LVIV.getLat(), LVIV.getLng(), null, wifiInfo.getAccessPoints())));
+
+        state.set(new WifiInfoProvider.WifiInfo(false, null, site));
+        fire();
+        // every step is within tolerance, but device leaves site
+        for (int rssi = -55; rssi >= -75; rssi -= 5) {
+            state.set(new WifiInfoProvider.WifiInfo(false, null,
+                    Arrays.asList(accessPoint(OFFICE_1, rssi), accessPoint(OFFICE_2, rssi - 10))));
+            fire();
+        }
+        // steps within bucket are skipped, but exit is still seen
+        assertEquals(Arrays.asList(1, 1, 0, 0), inbounds);
+        assertEquals(6, reads.get());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void read_illegalWindow() {
+        WifiInfoUpdates.read(events, state::get, -1, TimeUnit.MILLISECONDS, scheduler);
+    }
+
+    @Test
+    public void isSame() {
+        final WifiInfoProvider.WifiInfo office = new WifiInfoProvider.WifiInfo(true, "Office",
+                OFFICE_1, Collections.singletonList(accessPoint(OFFICE_1, -52)));
+        assertTrue(WifiInfoUpdates.isSame(office, new WifiInfoProvider.WifiInfo(true, "Office",
+                "00:11:22:AA:BB:01", Collections.singletonList(accessPoint(OFFICE_1, -52)))));
+        // signal noise within bucket
+        assertTrue(WifiInfoUpdates.isSame(office, new WifiInfoProvider.WifiInfo(true, "Office",
+                OFFICE_1, Collections.singletonList(accessPoint(OFFICE_1, -58)))));
+        assertFalse(WifiInfoUpdates.isSame(office, new WifiInfoProvider.WifiInfo(true, "Office",
+                OFFICE_1, Collections.singletonList(accessPoint(OFFICE_1, -61)))));
+        assertFalse(WifiInfoUpdates.isSame(office, new WifiInfoProvider.WifiInfo(true, "Home",
+                OFFICE_1, Collections.singletonList(accessPoint(OFFICE_1, -50)))));
+        assertFalse(WifiInfoUpdates.isSame(office, new WifiInfoProvider.WifiInfo(false, null,
+                null, Collections.singletonList(accessPoint(OFFICE_1, -50)))));
+        assertFalse(WifiInfoUpdates.isSame(office, new WifiInfoProvider.WifiInfo(true, "Office",
+                OFFICE_1, Arrays.asList(accessPoint(OFFICE_1, -50), accessPoint(OFFICE_2, -90)))));
+    }
+
+    private Observable<WifiInfoProvider.WifiInfo> read() {
+        return WifiInfoUpdates.read(events, () -> {
+            reads.incrementAndGet();
+            return state.get();
+        }, WifiInfoUpdates.DEFAULT_WINDOW, TimeUnit.MILLISECONDS, scheduler);
+    }
+
+    private void fire() {
+        events.onNext(new Object());
+        scheduler.advanceTimeBy(WifiInfoUpdates.DEFAULT_WINDOW, TimeUnit.MILLISECONDS);
+    }
+}